@@ -0,0 +1,9 @@
+package com.yinxiang.bench.thrift;
+
+/**
+ * The top level interface of {@link BenchService}, the makers load the services from the top level interfaces.
+ * @author Huiyuan Fu
+ * @since 1.0.0
+ */
+public interface BenchServiceIface extends BenchService.Iface {
+}
@@ -0,0 +1,65 @@
+/**
+ * The sample IDL of the marshaller benchmarks, every struct is one shape of the generated marshallers.
+ */
+namespace java com.yinxiang.bench.thrift
+
+enum Status {
+  UNKNOWN = 0,
+  ACTIVE = 1,
+  DISABLED = 2
+}
+
+/** The flat struct of all primitive types. */
+struct Flat {
+  1: i32 id,
+  2: i64 time,
+  3: string name,
+  4: bool active,
+  5: double score,
+  6: i16 level,
+  7: i8 flag
+}
+
+struct Point {
+  1: i32 x,
+  2: i32 y
+}
+
+/** The nested structs and enum. */
+struct Nested {
+  1: Flat flat,
+  2: Point point,
+  3: Status status,
+  4: string description
+}
+
+/** The list, set and map of primitive types and structs. */
+struct Containers {
+  1: list<string> tags,
+  2: set<i32> ids,
+  3: map<string, i64> counts,
+  4: list<Point> points,
+  5: map<string, Point> pointMap,
+  6: list<Status> statuses
+}
+
+/** The map which key is a struct, it is a list of entry in gRPC. */
+struct StructKeyed {
+  1: map<Point, string> labels
+}
+
+/** The binary field. */
+struct Binary {
+  1: string name,
+  2: binary data
+}
+
+/** The service of the generated stub and services, every rpc is one shape of request and response. */
+service BenchService {
+  Flat echo(1: Flat flat),
+  Nested find(1: i32 id, 2: string name),
+  list<Point> points(1: set<i32> ids),
+  i64 count(1: Status status),
+  list<string> names(),
+  void touch(1: Point point)
+}
@@ -0,0 +1,24 @@
+package com.yinxiang.utils.thrift.grpc.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * The main of benchmarks.jar, run JMH with the GC profiler, so 'gc.alloc.rate.norm' is the bytes allocated per op.
+ * <p>The arguments are JMH command line options, e.g. a regexp to select benchmarks, '-h' to print all.</p>
+ * @author Huiyuan Fu
+ * @since 1.0.0
+ * @see MarshallerBenchmark
+ */
+public class BenchmarkMain {
+  public static void main(String[] args) throws Exception {
+    CommandLineOptions commandLine = new CommandLineOptions(args);
+    if (commandLine.shouldHelp()) {
+      commandLine.showHelp();
+      return;
+    }
+    new Runner(new OptionsBuilder().parent(commandLine).addProfiler(GCProfiler.class).build()).run();
+  }
+}
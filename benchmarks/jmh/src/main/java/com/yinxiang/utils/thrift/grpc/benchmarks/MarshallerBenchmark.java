@@ -0,0 +1,183 @@
+package com.yinxiang.utils.thrift.grpc.benchmarks;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.yinxiang.bench.marshaller.grpc.com_yinxiang_bench_thriftGrpcMarshaller;
+import com.yinxiang.bench.marshaller.thrift.com_yinxiang_bench_thriftThriftMarshaller;
+import com.yinxiang.bench.thrift.Binary;
+import com.yinxiang.bench.thrift.Containers;
+import com.yinxiang.bench.thrift.Flat;
+import com.yinxiang.bench.thrift.Nested;
+import com.yinxiang.bench.thrift.Point;
+import com.yinxiang.bench.thrift.Status;
+import com.yinxiang.bench.thrift.StructKeyed;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The benchmarks of the generated marshallers, every shape of the benchmark IDL is marshalled in both directions.
+ * <p>
+ *   The thrift objects are created once by a fixed seed, the gRPC objects are marshalled from them,
+ *   so both directions marshal same data. Run with the GC profiler to get the bytes allocated per operation.
+ * </p>
+ * @author Huiyuan Fu
+ * @since 1.0.0
+ * @see BenchmarkMain
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MarshallerBenchmark {
+  /** The size of containers. */
+  @Param({"16"})
+  int size;
+
+  private Flat flat;
+  private com.yinxiang.bench.grpc.Flat grpcFlat;
+  private Nested nested;
+  private com.yinxiang.bench.grpc.Nested grpcNested;
+  private Containers containers;
+  private com.yinxiang.bench.grpc.Containers grpcContainers;
+  private StructKeyed structKeyed;
+  private com.yinxiang.bench.grpc.StructKeyed grpcStructKeyed;
+
+  @Setup
+  public void setup() {
+    Random random = new Random(size);
+    // flat
+    flat = createFlat(random);
+    grpcFlat = com_yinxiang_bench_thriftGrpcMarshaller.toGrpc(flat);
+    // nested
+    nested = new Nested()
+            .setFlat(createFlat(random))
+            .setPoint(createPoint(random))
+            .setStatus(Status.ACTIVE)
+            .setDescription("nested-" + random.nextInt());
+    grpcNested = com_yinxiang_bench_thriftGrpcMarshaller.toGrpc(nested);
+    // containers
+    List<String> tags = Lists.newArrayListWithCapacity(size);
+    Set<Integer> ids = Sets.newHashSetWithExpectedSize(size);
+    Map<String, Long> counts = Maps.newHashMapWithExpectedSize(size);
+    List<Point> points = Lists.newArrayListWithCapacity(size);
+    Map<String, Point> pointMap = Maps.newHashMapWithExpectedSize(size);
+    List<Status> statuses = Lists.newArrayListWithCapacity(size);
+    Map<Point, String> labels = Maps.newHashMapWithExpectedSize(size);
+    for (int i = 0;i < size;i++) {
+      tags.add("tag-" + i);
+      ids.add(i);
+      counts.put("count-" + i, random.nextLong());
+      points.add(createPoint(random));
+      pointMap.put("point-" + i, createPoint(random));
+      statuses.add(Status.values()[i % Status.values().length]);
+      labels.put(new Point().setX(i).setY(-i), "label-" + i);
+    }
+    containers = new Containers()
+            .setTags(tags)
+            .setIds(ids)
+            .setCounts(counts)
+            .setPoints(points)
+            .setPointMap(pointMap)
+            .setStatuses(statuses);
+    grpcContainers = com_yinxiang_bench_thriftGrpcMarshaller.toGrpc(containers);
+    // struct keyed map
+    structKeyed = new StructKeyed().setLabels(labels);
+    grpcStructKeyed = com_yinxiang_bench_thriftGrpcMarshaller.toGrpc(structKeyed);
+  }
+
+  @Benchmark
+  public com.yinxiang.bench.grpc.Flat flatToGrpc() {
+    return com_yinxiang_bench_thriftGrpcMarshaller.toGrpc(flat);
+  }
+
+  @Benchmark
+  public Flat flatToThrift() {
+    return com_yinxiang_bench_thriftThriftMarshaller.toThrift(grpcFlat);
+  }
+
+  @Benchmark
+  public com.yinxiang.bench.grpc.Nested nestedToGrpc() {
+    return com_yinxiang_bench_thriftGrpcMarshaller.toGrpc(nested);
+  }
+
+  @Benchmark
+  public Nested nestedToThrift() {
+    return com_yinxiang_bench_thriftThriftMarshaller.toThrift(grpcNested);
+  }
+
+  @Benchmark
+  public com.yinxiang.bench.grpc.Containers containersToGrpc() {
+    return com_yinxiang_bench_thriftGrpcMarshaller.toGrpc(containers);
+  }
+
+  @Benchmark
+  public Containers containersToThrift() {
+    return com_yinxiang_bench_thriftThriftMarshaller.toThrift(grpcContainers);
+  }
+
+  @Benchmark
+  public com.yinxiang.bench.grpc.StructKeyed structKeyedToGrpc() {
+    return com_yinxiang_bench_thriftGrpcMarshaller.toGrpc(structKeyed);
+  }
+
+  @Benchmark
+  public StructKeyed structKeyedToThrift() {
+    return com_yinxiang_bench_thriftThriftMarshaller.toThrift(grpcStructKeyed);
+  }
+
+  @Benchmark
+  public com.yinxiang.bench.grpc.Binary binaryToGrpc(BinaryState state) {
+    return com_yinxiang_bench_thriftGrpcMarshaller.toGrpc(state.binary);
+  }
+
+  @Benchmark
+  public Binary binaryToThrift(BinaryState state) {
+    return com_yinxiang_bench_thriftThriftMarshaller.toThrift(state.grpcBinary);
+  }
+
+  private static Flat createFlat(Random random) {
+    return new Flat()
+            .setId(random.nextInt())
+            .setTime(random.nextLong())
+            .setName("flat-" + random.nextInt())
+            .setActive(random.nextBoolean())
+            .setScore(random.nextDouble())
+            .setLevel((short) random.nextInt(Short.MAX_VALUE))
+            .setFlag((byte) random.nextInt(Byte.MAX_VALUE));
+  }
+
+  private static Point createPoint(Random random) {
+    return new Point().setX(random.nextInt()).setY(random.nextInt());
+  }
+
+  /**
+   * The state of binary shape, the size of binary is a separate parameter.
+   * @author Huiyuan Fu
+   * @since 1.0.0
+   */
+  @State(Scope.Benchmark)
+  public static class BinaryState {
+    /** The size of binary data. */
+    @Param({"1024", "1048576"})
+    int binarySize;
+
+    private Binary binary;
+    private com.yinxiang.bench.grpc.Binary grpcBinary;
+
+    @Setup
+    public void setup() {
+      byte[] data = new byte[binarySize];
+      new Random(binarySize).nextBytes(data);
+      binary = new Binary().setName("binary").setData(data);
+      grpcBinary = com_yinxiang_bench_thriftGrpcMarshaller.toGrpc(binary);
+    }
+  }
+}
@@ -0,0 +1,135 @@
+package com.yinxiang.utils.thrift.grpc.benchmarks;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.yinxiang.bench.marshaller.grpc.com_yinxiang_bench_thriftGrpcMarshaller;
+import com.yinxiang.bench.marshaller.thrift.com_yinxiang_bench_thriftThriftMarshaller;
+import com.yinxiang.bench.thrift.Containers;
+import com.yinxiang.bench.thrift.Flat;
+import com.yinxiang.bench.thrift.Nested;
+import com.yinxiang.bench.thrift.Point;
+import com.yinxiang.bench.thrift.Status;
+import com.yinxiang.utils.thrift.grpc.entrances.RuntimeMaker;
+import com.yinxiang.utils.thrift.grpc.operations.generators.Marshallers;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * The benchmarks of the runtime marshallers against the generated marshallers.
+ * <p>
+ *   The runtime marshallers are compiled by {@link RuntimeMaker} from the loaded thrift classes at setup, the results
+ *   are checked equal to the generated marshallers before measured.
+ * </p>
+ * @author Huiyuan Fu
+ * @since 1.0.0
+ * @see BenchmarkMain
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RuntimeMarshallerBenchmark {
+  /** The size of containers. */
+  @Param({"16"})
+  int size;
+
+  private Nested nested;
+  private com.yinxiang.bench.grpc.Nested grpcNested;
+  private Containers containers;
+  private com.yinxiang.bench.grpc.Containers grpcContainers;
+  private Function<Nested, com.yinxiang.bench.grpc.Nested> nestedToGrpc;
+  private Function<com.yinxiang.bench.grpc.Nested, Nested> nestedToThrift;
+  private Function<Containers, com.yinxiang.bench.grpc.Containers> containersToGrpc;
+  private Function<com.yinxiang.bench.grpc.Containers, Containers> containersToThrift;
+
+  @Setup
+  public void setup() throws Exception {
+    RuntimeMaker maker = new RuntimeMaker("com.yinxiang.bench.thrift", "", "", "com/yinxiang/bench/grpc",
+            RuntimeMarshallerBenchmark.class.getClassLoader());
+    maker.execute(Maps.newLinkedHashMap());
+    Marshallers marshallers = maker.getMarshallers();
+    nestedToGrpc = marshallers.toGrpc(Nested.class);
+    nestedToThrift = marshallers.toThrift(com.yinxiang.bench.grpc.Nested.class);
+    containersToGrpc = marshallers.toGrpc(Containers.class);
+    containersToThrift = marshallers.toThrift(com.yinxiang.bench.grpc.Containers.class);
+    Random random = new Random(size);
+    // nested
+    nested = new Nested()
+            .setFlat(new Flat().setId(random.nextInt()).setName("flat-" + random.nextInt()))
+            .setPoint(new Point().setX(random.nextInt()).setY(random.nextInt()))
+            .setStatus(Status.ACTIVE)
+            .setDescription("nested-" + random.nextInt());
+    grpcNested = com_yinxiang_bench_thriftGrpcMarshaller.toGrpc(nested);
+    // containers
+    List<String> tags = Lists.newArrayListWithCapacity(size);
+    Set<Integer> ids = Sets.newHashSetWithExpectedSize(size);
+    Map<String, Long> counts = Maps.newHashMapWithExpectedSize(size);
+    List<Point> points = Lists.newArrayListWithCapacity(size);
+    for (int i = 0;i < size;i++) {
+      tags.add("tag-" + i);
+      ids.add(i);
+      counts.put("count-" + i, random.nextLong());
+      points.add(new Point().setX(random.nextInt()).setY(random.nextInt()));
+    }
+    containers = new Containers().setTags(tags).setIds(ids).setCounts(counts).setPoints(points);
+    grpcContainers = com_yinxiang_bench_thriftGrpcMarshaller.toGrpc(containers);
+    // check
+    checkState(grpcNested.equals(nestedToGrpc.apply(nested)), "Different gRPC of nested");
+    checkState(com_yinxiang_bench_thriftThriftMarshaller.toThrift(grpcNested).equals(
+            nestedToThrift.apply(grpcNested)), "Different thrift of nested");
+    checkState(grpcContainers.equals(containersToGrpc.apply(containers)), "Different gRPC of containers");
+    checkState(com_yinxiang_bench_thriftThriftMarshaller.toThrift(grpcContainers).equals(
+            containersToThrift.apply(grpcContainers)), "Different thrift of containers");
+  }
+
+  @Benchmark
+  public com.yinxiang.bench.grpc.Nested generatedNestedToGrpc() {
+    return com_yinxiang_bench_thriftGrpcMarshaller.toGrpc(nested);
+  }
+
+  @Benchmark
+  public com.yinxiang.bench.grpc.Nested runtimeNestedToGrpc() {
+    return nestedToGrpc.apply(nested);
+  }
+
+  @Benchmark
+  public Nested generatedNestedToThrift() {
+    return com_yinxiang_bench_thriftThriftMarshaller.toThrift(grpcNested);
+  }
+
+  @Benchmark
+  public Nested runtimeNestedToThrift() {
+    return nestedToThrift.apply(grpcNested);
+  }
+
+  @Benchmark
+  public com.yinxiang.bench.grpc.Containers generatedContainersToGrpc() {
+    return com_yinxiang_bench_thriftGrpcMarshaller.toGrpc(containers);
+  }
+
+  @Benchmark
+  public com.yinxiang.bench.grpc.Containers runtimeContainersToGrpc() {
+    return containersToGrpc.apply(containers);
+  }
+
+  @Benchmark
+  public Containers generatedContainersToThrift() {
+    return com_yinxiang_bench_thriftThriftMarshaller.toThrift(grpcContainers);
+  }
+
+  @Benchmark
+  public Containers runtimeContainersToThrift() {
+    return containersToThrift.apply(grpcContainers);
+  }
+}
@@ -0,0 +1,241 @@
+package com.yinxiang.utils.thrift.grpc.benchmarks;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.Message;
+import com.yinxiang.bench.marshaller.grpc.com_yinxiang_bench_thriftGrpcMarshaller;
+import com.yinxiang.bench.marshaller.thrift.com_yinxiang_bench_thriftThriftMarshaller;
+import com.yinxiang.bench.thrift.Containers;
+import com.yinxiang.bench.thrift.Flat;
+import com.yinxiang.bench.thrift.Nested;
+import com.yinxiang.bench.thrift.Point;
+import com.yinxiang.bench.thrift.Status;
+import com.yinxiang.bench.transcoder.Transcoders;
+import com.yinxiang.bench.transcoder.com_yinxiang_bench_thriftTranscoder;
+import org.apache.thrift.TBase;
+import org.apache.thrift.TByteArrayOutputStream;
+import org.apache.thrift.TDeserializer;
+import org.apache.thrift.TException;
+import org.apache.thrift.TSerializer;
+import org.apache.thrift.protocol.TBinaryProtocol;
+import org.apache.thrift.transport.TIOStreamTransport;
+import org.apache.thrift.transport.TMemoryInputTransport;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * The benchmarks of the generated transcoders, the thrift binary protocol bytes are converted to the gRPC bytes,
+ * and the gRPC bytes are converted back.
+ * <p>
+ *   The baselines deserialize the thrift object, marshal it to gRPC and write the gRPC message, the transcoders
+ *   read the protocol and write the gRPC fields directly. Both write to a reused buffer, and the output of
+ *   transcoder is checked to parse to the same gRPC message with the marshaller in setup. The reverse baselines
+ *   parse the gRPC message, marshal it to thrift and write the thrift object, the reverse transcoders read the
+ *   gRPC fields and write the protocol directly, the output is checked to deserialize to the same thrift object.
+ * </p>
+ * @author Huiyuan Fu
+ * @since 1.0.0
+ * @see BenchmarkMain
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TranscoderBenchmark {
+  /** The size of containers. */
+  @Param({"16"})
+  int size;
+
+  private final TDeserializer deserializer = new TDeserializer(new TBinaryProtocol.Factory());
+  private final TMemoryInputTransport transport = new TMemoryInputTransport();
+  private final TBinaryProtocol protocol = new TBinaryProtocol(transport);
+  private final TByteArrayOutputStream output = new TByteArrayOutputStream();
+  private final TBinaryProtocol outputProtocol = new TBinaryProtocol(new TIOStreamTransport(output));
+  private byte[] buffer;
+  private byte[] nested;
+  private byte[] containers;
+  private byte[] grpcNestedBytes;
+  private byte[] grpcContainersBytes;
+
+  @Setup
+  public void setup() throws Exception {
+    Random random = new Random(size);
+    TSerializer serializer = new TSerializer(new TBinaryProtocol.Factory());
+    // nested
+    Nested nestedThrift = new Nested()
+            .setFlat(new Flat().setId(random.nextInt()).setTime(random.nextLong()).setName("flat-" + random.nextInt())
+                    .setActive(true).setScore(random.nextDouble()).setLevel((short) 7).setFlag((byte) 1))
+            .setPoint(new Point().setX(random.nextInt()).setY(random.nextInt()))
+            .setStatus(Status.ACTIVE)
+            .setDescription("nested-" + random.nextInt());
+    nested = serializer.serialize(nestedThrift);
+    // containers
+    List<String> tags = Lists.newArrayListWithCapacity(size);
+    Set<Integer> ids = Sets.newHashSetWithExpectedSize(size);
+    Map<String, Long> counts = Maps.newHashMapWithExpectedSize(size);
+    List<Point> points = Lists.newArrayListWithCapacity(size);
+    Map<String, Point> pointMap = Maps.newHashMapWithExpectedSize(size);
+    List<Status> statuses = Lists.newArrayListWithCapacity(size);
+    for (int i = 0;i < size;i++) {
+      tags.add("tag-" + i);
+      ids.add(i);
+      counts.put("count-" + i, random.nextLong());
+      points.add(new Point().setX(random.nextInt()).setY(random.nextInt()));
+      pointMap.put("point-" + i, new Point().setX(i).setY(-i));
+      statuses.add(Status.values()[i % Status.values().length]);
+    }
+    Containers containersThrift = new Containers()
+            .setTags(tags)
+            .setIds(ids)
+            .setCounts(counts)
+            .setPoints(points)
+            .setPointMap(pointMap)
+            .setStatuses(statuses);
+    containers = serializer.serialize(containersThrift);
+    // check the transcoders
+    com.yinxiang.bench.grpc.Nested grpcNested = com_yinxiang_bench_thriftGrpcMarshaller.toGrpc(nestedThrift);
+    com.yinxiang.bench.grpc.Containers grpcContainers =
+            com_yinxiang_bench_thriftGrpcMarshaller.toGrpc(containersThrift);
+    buffer = new byte[Math.max(grpcNested.getSerializedSize(), grpcContainers.getSerializedSize()) * 2];
+    checkState(grpcNested.equals(com.yinxiang.bench.grpc.Nested.parseFrom(copy(transcode(nested,
+            com_yinxiang_bench_thriftTranscoder::toGrpcNested)))), "The nested transcoder is not match.");
+    checkState(grpcContainers.equals(com.yinxiang.bench.grpc.Containers.parseFrom(copy(transcode(containers,
+            com_yinxiang_bench_thriftTranscoder::toGrpcContainers)))), "The containers transcoder is not match.");
+    // check the reverse transcoders
+    grpcNestedBytes = grpcNested.toByteArray();
+    grpcContainersBytes = grpcContainers.toByteArray();
+    Nested reverseNested = new Nested();
+    transcode(grpcNestedBytes, com_yinxiang_bench_thriftTranscoder::toThriftNested);
+    deserializer.deserialize(reverseNested, output.toByteArray());
+    checkState(nestedThrift.equals(reverseNested), "The nested reverse transcoder is not match.");
+    Containers reverseContainers = new Containers();
+    transcode(grpcContainersBytes, com_yinxiang_bench_thriftTranscoder::toThriftContainers);
+    deserializer.deserialize(reverseContainers, output.toByteArray());
+    checkState(containersThrift.equals(reverseContainers), "The containers reverse transcoder is not match.");
+  }
+
+  @Benchmark
+  public int nestedDeserializeToGrpc() throws TException, IOException {
+    Nested thrift = new Nested();
+    deserializer.deserialize(thrift, nested);
+    return write(com_yinxiang_bench_thriftGrpcMarshaller.toGrpc(thrift));
+  }
+
+  @Benchmark
+  public int nestedTranscode() throws TException, IOException {
+    return transcode(nested, com_yinxiang_bench_thriftTranscoder::toGrpcNested);
+  }
+
+  @Benchmark
+  public int containersDeserializeToGrpc() throws TException, IOException {
+    Containers thrift = new Containers();
+    deserializer.deserialize(thrift, containers);
+    return write(com_yinxiang_bench_thriftGrpcMarshaller.toGrpc(thrift));
+  }
+
+  @Benchmark
+  public int containersTranscode() throws TException, IOException {
+    return transcode(containers, com_yinxiang_bench_thriftTranscoder::toGrpcContainers);
+  }
+
+  @Benchmark
+  public int nestedParseToThrift() throws TException, IOException {
+    com.yinxiang.bench.grpc.Nested grpc = com.yinxiang.bench.grpc.Nested.parseFrom(grpcNestedBytes);
+    return write(com_yinxiang_bench_thriftThriftMarshaller.toThrift(grpc));
+  }
+
+  @Benchmark
+  public int nestedReverseTranscode() throws TException, IOException {
+    return transcode(grpcNestedBytes, com_yinxiang_bench_thriftTranscoder::toThriftNested);
+  }
+
+  @Benchmark
+  public int containersParseToThrift() throws TException, IOException {
+    com.yinxiang.bench.grpc.Containers grpc = com.yinxiang.bench.grpc.Containers.parseFrom(grpcContainersBytes);
+    return write(com_yinxiang_bench_thriftThriftMarshaller.toThrift(grpc));
+  }
+
+  @Benchmark
+  public int containersReverseTranscode() throws TException, IOException {
+    return transcode(grpcContainersBytes, com_yinxiang_bench_thriftTranscoder::toThriftContainers);
+  }
+
+  /**
+   * Write a gRPC message to the buffer.
+   * @param message gRPC message
+   * @return  the count of written bytes
+   * @throws IOException  IOException
+   */
+  private int write(Message message) throws IOException {
+    CodedOutputStream out = CodedOutputStream.newInstance(buffer);
+    message.writeTo(out);
+    return out.getTotalBytesWritten();
+  }
+
+  /**
+   * Transcode the thrift bytes to the buffer.
+   * @param bytes   the bytes of a {@link TBase}
+   * @param toGrpc  transcoder
+   * @return  the count of written bytes
+   * @throws TException   TException
+   * @throws IOException  IOException
+   */
+  private int transcode(byte[] bytes, Transcoders.ToGrpc toGrpc) throws TException, IOException {
+    transport.reset(bytes);
+    CodedOutputStream out = CodedOutputStream.newInstance(buffer);
+    toGrpc.transcode(protocol, out);
+    return out.getTotalBytesWritten();
+  }
+
+  /**
+   * Write a thrift object to the reused output.
+   * @param thrift  thrift object
+   * @return  the count of written bytes
+   * @throws TException TException
+   */
+  private int write(TBase<?, ?> thrift) throws TException {
+    output.reset();
+    thrift.write(outputProtocol);
+    return output.len();
+  }
+
+  /**
+   * Transcode the gRPC bytes to the reused output.
+   * @param bytes     the bytes of a gRPC message
+   * @param toThrift  transcoder
+   * @return  the count of written bytes
+   * @throws TException   TException
+   * @throws IOException  IOException
+   */
+  private int transcode(byte[] bytes, Transcoders.ToThrift toThrift) throws TException, IOException {
+    output.reset();
+    CodedInputStream in = CodedInputStream.newInstance(bytes);
+    in.enableAliasing(true);
+    toThrift.transcode(in, outputProtocol);
+    return output.len();
+  }
+
+  /**
+   * Copy the written bytes of the buffer.
+   * @param length  the count of written bytes
+   * @return  bytes
+   */
+  private byte[] copy(int length) {
+    byte[] bytes = new byte[length];
+    System.arraycopy(buffer, 0, bytes, 0, length);
+    return bytes;
+  }
+}
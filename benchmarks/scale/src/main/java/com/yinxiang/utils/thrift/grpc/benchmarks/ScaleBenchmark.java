@@ -0,0 +1,173 @@
+package com.yinxiang.utils.thrift.grpc.benchmarks;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.MoreFiles;
+import com.google.common.io.RecursiveDeleteOption;
+import com.yinxiang.utils.thrift.grpc.entrances.Maker;
+import com.yinxiang.utils.thrift.grpc.operations.FilesOperations;
+import com.yinxiang.utils.thrift.grpc.operations.generators.GrpcMarshallerGenerator;
+import com.yinxiang.utils.thrift.grpc.operations.generators.ProtoGenerator;
+import com.yinxiang.utils.thrift.grpc.operations.generators.ThriftMarshallerGenerator;
+
+import javax.tools.*;
+import java.io.File;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * The scalability benchmark of the generation pipeline over a synthetic thrift model.
+ * <p>
+ *   The sources of {@link SyntheticModel} are compiled by the system java compiler to a temporary direction and
+ *   loaded by a {@link URLClassLoader}, then the maker collects, resolves and generates the protos and marshallers
+ *   of them, the time and allocated bytes of every phase are written to the report of {@link Maker#REPORT}.
+ * </p>
+ * <p>
+ *   The arguments are 'key=value': <code>scenario</code> is one of {@link #SCENARIOS} and the other keys override
+ *   the sizes of it, <code>out</code> is the direction of outputs, default a temporary direction which is deleted
+ *   after run. The options of maker are system properties, e.g. <code>-Dthrift2grpc.threads=4</code>.
+ * </p>
+ * @author Huiyuan Fu
+ * @since 1.0.0
+ * @see SyntheticModel
+ */
+public class ScaleBenchmark {
+  /** The default sizes. */
+  private static final ImmutableMap<String, Integer> DEFAULTS = ImmutableMap.<String, Integer>builder()
+          .put("packages", 20)
+          .put("structs", 50)
+          .put("cycleRefs", 0)
+          .put("services", 2)
+          .put("rpcs", 10)
+          .put("collisions", 0)
+          .put("nesting", 0)
+          .build();
+  /** The sizes of scenarios, override the defaults. */
+  private static final ImmutableMap<String, ImmutableMap<String, Integer>> SCENARIOS =
+          ImmutableMap.<String, ImmutableMap<String, Integer>>builder()
+                  .put("default", ImmutableMap.of())
+                  .put("large", ImmutableMap.of("packages", 200, "structs", 100, "services", 5, "rpcs", 20))
+                  .put("collisions", ImmutableMap.of("packages", 0, "collisions", 10000))
+                  .put("nesting", ImmutableMap.of("packages", 0, "nesting", 24))
+                  .put("cycles", ImmutableMap.of("packages", 50, "structs", 40, "cycleRefs", 4))
+                  .build();
+  /** The base package of gRPC. */
+  private static final String GRPC_PKG = "com/synthetic/grpc";
+
+  public static void main(String[] args) throws Exception {
+    // configuration
+    Map<String, String> arguments = Maps.newHashMap();
+    for (String arg : args) {
+      List<String> pair = Splitter.on('=').limit(2).splitToList(arg);
+      checkArgument(pair.size() == 2, "Argument must be key=value: " + arg);
+      arguments.put(pair.get(0), pair.get(1));
+    }
+    String scenario = arguments.getOrDefault("scenario", "default");
+    checkArgument(SCENARIOS.containsKey(scenario), "Unknown scenario: " + scenario + ", " + SCENARIOS.keySet());
+    Map<String, Integer> config = Maps.newLinkedHashMap(DEFAULTS);
+    config.putAll(SCENARIOS.get(scenario));
+    config.keySet().forEach(key -> {
+      if (arguments.containsKey(key)) {
+        config.put(key, Integer.parseInt(arguments.get(key)));
+      }
+    });
+    System.out.println("Scenario: " + scenario + " " + config);
+    // directions
+    Path tmp = Files.createTempDirectory("thrift2grpc-scale");
+    Path out = arguments.containsKey("out") ? Paths.get(arguments.get("out")) : tmp.resolve("out");
+    Path classes = Files.createDirectories(tmp.resolve("classes"));
+    if (System.getProperty(Maker.REPORT) == null) {
+      System.setProperty(Maker.REPORT, out.resolve("report.json").toString());
+    }
+    try {
+      // synthesize and compile
+      long start = System.nanoTime();
+      Map<String, String> sources = new SyntheticModel(config).sources();
+      compile(sources, classes);
+      System.out.println("Compile classes: " + sources.size() + ", " + (System.nanoTime() - start) / 1000000 + "ms");
+      // generate
+      try (URLClassLoader classLoader = new URLClassLoader(
+              new URL[] {classes.toUri().toURL()}, ScaleBenchmark.class.getClassLoader())) {
+        Thread.currentThread().setContextClassLoader(classLoader);
+        new ScaleMaker(out.toString() + File.separator).execute(Maps.newLinkedHashMap());
+      }
+      byte[] report = Files.readAllBytes(Paths.get(System.getProperty(Maker.REPORT)));
+      System.out.println(new String(report, StandardCharsets.UTF_8));
+    } finally {
+      MoreFiles.deleteRecursively(tmp, RecursiveDeleteOption.ALLOW_INSECURE);
+    }
+  }
+
+  /**
+   * Compile the sources by the system java compiler.
+   * @param sources the map of sources, key is the binary name of class
+   * @param classes the output direction of classes
+   */
+  private static void compile(Map<String, String> sources, Path classes) {
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    checkState(compiler != null, "The system java compiler is not found, run by a JDK.");
+    List<JavaFileObject> files = Lists.newArrayListWithCapacity(sources.size());
+    sources.forEach((name, source) -> files.add(new Source(name, source)));
+    DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+    List<String> options = Lists.newArrayList("-d", classes.toString(), "-nowarn", "-proc:none");
+    Boolean success = compiler.getTask(null, null, diagnostics, options, null, files).call();
+    checkState(success, "Compile failed: " + diagnostics.getDiagnostics());
+  }
+
+  /**
+   * A source in memory.
+   * @author Huiyuan Fu
+   * @since 1.0.0
+   */
+  private static class Source extends SimpleJavaFileObject {
+    private final String source;
+
+    private Source(String name, String source) {
+      super(URI.create("string:///" + name.replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+      this.source = source;
+    }
+
+    @Override
+    public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+      return source;
+    }
+  }
+
+  /**
+   * The maker of protos and marshallers of the synthetic model.
+   * @author Huiyuan Fu
+   * @since 1.0.0
+   */
+  private static class ScaleMaker extends Maker {
+    /** The base path of outputs. */
+    private final String out;
+
+    private ScaleMaker(String out) {
+      super(SyntheticModel.PACKAGE, "", "");
+      this.out = out;
+    }
+
+    @Override
+    protected void addFilesOperations(FilesOperations filesOperations) {
+      String protoPath = out + "proto" + File.separator, marshallerPath = out + "marshaller" + File.separator;
+      filesOperations.addFilesOperation(
+              new ProtoGenerator(protoPath, GRPC_PKG, symbols, threads, shardMessages, shardBytes));
+      filesOperations.addFilesOperation(new ThriftMarshallerGenerator(marshallerPath, "com/synthetic/marshaller/thrift",
+              GRPC_PKG, symbols, threads, loopMarshaller, zeroCopyBinary));
+      filesOperations.addFilesOperation(new GrpcMarshallerGenerator(marshallerPath, "com/synthetic/marshaller/grpc",
+              GRPC_PKG, symbols, threads, loopMarshaller, zeroCopyBinary));
+    }
+  }
+}
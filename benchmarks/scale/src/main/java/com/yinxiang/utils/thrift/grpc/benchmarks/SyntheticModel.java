@@ -0,0 +1,181 @@
+package com.yinxiang.utils.thrift.grpc.benchmarks;
+
+import com.google.common.collect.Maps;
+
+import java.util.Map;
+
+/**
+ * The sources of a synthetic thrift model, the classes have the shape of thrift compiler's, no thrift is needed.
+ * <p>
+ *   1. <code>packages</code> * <code>structs</code> structs, every struct has primitive, container, enum fields,
+ *      and references the next struct of same package.
+ *   2. <code>cycleRefs</code> references from every struct to the structs of next packages, they make import cycles
+ *      of all packages, more references make denser cycles.
+ *   3. <code>services</code> services of every package, every service has <code>rpcs</code> rpc of 0, 1 and 2 args.
+ *   4. <code>collisions</code> structs which have same name 'Item' in different packages, every one references the
+ *      first one.
+ *   5. <code>nesting</code> fields of struct 'Deep', the field N is a container of N levels.
+ * </p>
+ * @author Huiyuan Fu
+ * @since 1.0.0
+ */
+final class SyntheticModel {
+  /** The base package of all synthetic classes. */
+  static final String PACKAGE = "com.synthetic";
+
+  private final int packages;
+  private final int structs;
+  private final int cycleRefs;
+  private final int services;
+  private final int rpcs;
+  private final int collisions;
+  private final int nesting;
+
+  SyntheticModel(Map<String, Integer> config) {
+    packages = config.get("packages");
+    structs = config.get("structs");
+    cycleRefs = config.get("cycleRefs");
+    services = config.get("services");
+    rpcs = config.get("rpcs");
+    collisions = config.get("collisions");
+    nesting = config.get("nesting");
+  }
+
+  /**
+   * Make all sources.
+   * @return  the map of sources, key is the binary name of class
+   */
+  Map<String, String> sources() {
+    Map<String, String> sources = Maps.newLinkedHashMap();
+    // the thrift interfaces, so the thrift jar is not need
+    sources.put("org.apache.thrift.TBase", "package org.apache.thrift;\n"
+            + "public interface TBase<T, F> extends java.io.Serializable {}\n");
+    sources.put("org.apache.thrift.TEnum", "package org.apache.thrift;\n"
+            + "public interface TEnum {\n  int getValue();\n}\n");
+    // packages
+    for (int i = 0;i < packages;i++) {
+      String pkg = PACKAGE + ".p" + i;
+      sources.put(pkg + ".Kind" + i, makeEnum(pkg, "Kind" + i));
+      for (int j = 0;j < structs;j++) {
+        sources.put(pkg + "." + structName(i, j), makeStruct(pkg, i, j));
+      }
+      for (int v = 0;v < services;v++) {
+        String service = "P" + i + "Service" + v;
+        sources.put(pkg + "." + service + "Iface", makeIface(pkg, service, i));
+        sources.put(pkg + "." + service, makeServiceClass(pkg, service, i));
+      }
+    }
+    // same name structs
+    for (int k = 0;k < collisions;k++) {
+      String pkg = PACKAGE + ".c" + k;
+      StringBuilder builder = classHeader(pkg, "Item");
+      builder.append("  public int id;\n  public String name;\n");
+      if (k > 0) {
+        builder.append("  public ").append(PACKAGE).append(".c0.Item first;\n");
+      }
+      sources.put(pkg + ".Item", builder.append("}\n").toString());
+    }
+    // deep containers
+    if (nesting > 0) {
+      String pkg = PACKAGE + ".deep";
+      sources.put(pkg + ".Leaf", classHeader(pkg, "Leaf").append("  public int id;\n}\n").toString());
+      StringBuilder builder = classHeader(pkg, "Deep");
+      for (int d = 1;d <= nesting;d++) {
+        builder.append("  public ").append(nestedType(d, "Leaf")).append(" level").append(d).append(";\n");
+      }
+      sources.put(pkg + ".Deep", builder.append("}\n").toString());
+    }
+    return sources;
+  }
+
+  private static String structName(int pkg, int index) {
+    return "P" + pkg + "S" + index;
+  }
+
+  private static StringBuilder classHeader(String pkg, String name) {
+    return new StringBuilder(256).append("package ").append(pkg).append(";\n")
+            .append("public class ").append(name).append(" implements org.apache.thrift.TBase<")
+            .append(name).append(", Object>, Cloneable {\n");
+  }
+
+  private static String makeEnum(String pkg, String name) {
+    return "package " + pkg + ";\n"
+            + "public enum " + name + " implements org.apache.thrift.TEnum {\n"
+            + "  NONE(0), SOME(1), ALL(2);\n"
+            + "  private final int value;\n"
+            + "  " + name + "(int value) { this.value = value; }\n"
+            + "  public int getValue() { return value; }\n"
+            + "}\n";
+  }
+
+  private String makeStruct(String pkg, int i, int j) {
+    StringBuilder builder = classHeader(pkg, structName(i, j));
+    builder.append("  public int id;\n")
+            .append("  public String name;\n")
+            .append("  public java.util.List<String> tags;\n")
+            .append("  public java.util.Map<String, Long> counts;\n")
+            .append("  public Kind").append(i).append(" kind;\n");
+    if (j + 1 < structs) {
+      builder.append("  public ").append(structName(i, j + 1)).append(" next;\n");
+    }
+    for (int r = 1;r <= cycleRefs && r < packages;r++) {
+      int to = (i + r) % packages;
+      builder.append("  public ").append(PACKAGE).append(".p").append(to).append('.').append(structName(to, j))
+              .append(" ref").append(r).append(";\n");
+    }
+    return builder.append("}\n").toString();
+  }
+
+  private String makeIface(String pkg, String service, int i) {
+    StringBuilder builder = new StringBuilder(256).append("package ").append(pkg).append(";\n")
+            .append("public interface ").append(service).append("Iface {\n");
+    for (int m = 0;m < rpcs;m++) {
+      String struct = structName(i, m % Math.max(structs, 1));
+      switch (m % 3) {
+        case 0:
+          builder.append("  ").append(struct).append(" rpc").append(m).append("(").append(struct).append(" arg)");
+          break;
+        case 1:
+          builder.append("  java.util.List<String> rpc").append(m).append("(int id, String name)");
+          break;
+        default:
+          builder.append("  void rpc").append(m).append("()");
+      }
+      builder.append(" throws Exception;\n");
+    }
+    return builder.append("}\n").toString();
+  }
+
+  private String makeServiceClass(String pkg, String service, int i) {
+    StringBuilder builder = new StringBuilder(256).append("package ").append(pkg).append(";\n")
+            .append("public class ").append(service).append(" {\n");
+    for (int m = 0;m < rpcs;m++) {
+      builder.append("  public static class rpc").append(m).append("_args {");
+      switch (m % 3) {
+        case 0:
+          builder.append(" public ").append(structName(i, m % Math.max(structs, 1))).append(" arg;");
+          break;
+        case 1:
+          builder.append(" public int id; public String name;");
+          break;
+        default:
+      }
+      builder.append(" }\n");
+    }
+    return builder.append("}\n").toString();
+  }
+
+  /**
+   * Make a container type of levels, list and map by turns.
+   * @param levels  the count of levels
+   * @param element the element type
+   * @return  type
+   */
+  private static String nestedType(int levels, String element) {
+    String type = element;
+    for (int l = 0;l < levels;l++) {
+      type = l % 2 == 0 ? "java.util.List<" + type + ">" : "java.util.Map<String, " + type + ">";
+    }
+    return type;
+  }
+}
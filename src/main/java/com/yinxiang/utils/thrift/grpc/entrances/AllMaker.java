@@ -0,0 +1,135 @@
+package com.yinxiang.utils.thrift.grpc.entrances;
+
+import com.google.common.collect.Maps;
+import com.yinxiang.utils.thrift.grpc.operations.FilesOperations;
+import com.yinxiang.utils.thrift.grpc.operations.generators.*;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Strings.isNullOrEmpty;
+
+/**
+ * The maker of all files in one pass.
+ * <p>
+ *   Read a properties file, scan and resolve the thrift classes once, then generate the protos, marshallers,
+ *   services, thrift stub and transcoders which base path is configured, the unconfigured files are skipped.
+ *   The keys start with {@link #OPTION_PREFIX} are set to system properties if not set.
+ * </p>
+ * <pre>
+ * thriftPackage=com.test
+ * scans=
+ * skips=
+ * grpcPkg=com/test/grpc
+ * protoPath=proto/
+ * marshallerPath=marshaller/target/generated-sources/java/
+ * thriftMarshallerPkg=com/test/marshaller/thrift
+ * grpcMarshallerPkg=com/test/marshaller/grpc
+ * stubPath=server/target/generated-sources/java/
+ * stubPkg=com/test/stub
+ * servicePath=server/target/generated-sources/java/
+ * servicePkg=com/test/services
+ * transcoderPath=marshaller/target/generated-sources/java/
+ * transcoderPkg=com/test/transcoder
+ * </pre>
+ * @author Huiyuan Fu
+ * @since 1.0.0
+ */
+public class AllMaker extends Maker {
+  /** The configuration. */
+  private final Properties properties;
+
+  private AllMaker(Properties properties) {
+    super(getRequired(properties, "thriftPackage"), properties.getProperty("scans"), properties.getProperty("skips"));
+    this.properties = properties;
+  }
+
+  @Override
+  protected void addFilesOperations(FilesOperations filesOperations) {
+    String grpcPkg = getRequired(properties, "grpcPkg");
+    // proto
+    String protoPath = properties.getProperty("protoPath");
+    if (!isNullOrEmpty(protoPath)) {
+      filesOperations.addFilesOperation(
+              new ProtoGenerator(protoPath, grpcPkg, symbols, threads, shardMessages, shardBytes));
+    }
+    // stub
+    String stubPath = properties.getProperty("stubPath");
+    if (!isNullOrEmpty(stubPath)) {
+      filesOperations.addFilesOperation(
+              new ThriftStubGenerator(stubPath, getRequired(properties, "stubPkg"), serviceMode, pooledStub,
+                      pooledStubRetries, symbols.getFiles()));
+    }
+    // transcoders
+    String transcoderPath = properties.getProperty("transcoderPath");
+    if (!isNullOrEmpty(transcoderPath)) {
+      filesOperations.addFilesOperation(
+              new TranscoderGenerator(transcoderPath, getRequired(properties, "transcoderPkg"), symbols, threads));
+    }
+    // marshallers, the service generator also need them
+    String marshallerPath = properties.getProperty("marshallerPath");
+    String servicePath = properties.getProperty("servicePath");
+    if (isNullOrEmpty(marshallerPath) && isNullOrEmpty(servicePath)) {
+      return;
+    }
+    String thriftMarshallerPkg = getRequired(properties, "thriftMarshallerPkg");
+    String grpcMarshallerPkg = getRequired(properties, "grpcMarshallerPkg");
+    ThriftMarshallerGenerator thriftMarshallerCreator =
+            new ThriftMarshallerGenerator(
+                    marshallerPath, thriftMarshallerPkg, grpcPkg, symbols, threads, loopMarshaller, zeroCopyBinary);
+    GrpcMarshallerGenerator grpcMarshallerCreator =
+            new GrpcMarshallerGenerator(
+                    marshallerPath, grpcMarshallerPkg, grpcPkg, symbols, threads, loopMarshaller, zeroCopyBinary);
+    if (!isNullOrEmpty(marshallerPath)) {
+      filesOperations.addFilesOperation(thriftMarshallerCreator);
+      filesOperations.addFilesOperation(grpcMarshallerCreator);
+    }
+    // services
+    if (!isNullOrEmpty(servicePath)) {
+      String servicePkg = getRequired(properties, "servicePkg");
+      String stubPkg = getRequired(properties, "stubPkg");
+      filesOperations.addFilesOperation(new GrpcServiceGenerator(
+              servicePath, servicePkg, stubPkg, thriftMarshallerCreator, grpcMarshallerCreator, threads, serviceMode,
+              singleFlights, responseCache, rpcMetrics));
+    }
+  }
+
+  /**
+   * Get a required property.
+   * @param properties  the configuration
+   * @param key         property key
+   * @return  property value
+   */
+  private static String getRequired(Properties properties, String key) {
+    String value = properties.getProperty(key);
+    checkArgument(!isNullOrEmpty(value), key + " is required.");
+    return value;
+  }
+
+  /**
+   * Load the configuration and set the options to system properties.
+   * @param path  the path of properties file
+   * @return  the configuration
+   * @throws IOException  IOException
+   */
+  private static Properties load(String path) throws IOException {
+    Properties properties = new Properties();
+    try (InputStream in = new FileInputStream(path)) {
+      properties.load(in);
+    }
+    // options
+    properties.stringPropertyNames().stream().filter(key -> key.startsWith(OPTION_PREFIX)).forEach(key -> {
+      if (System.getProperty(key) == null) {
+        System.setProperty(key, properties.getProperty(key));
+      }
+    });
+    return properties;
+  }
+
+  public static void main(String[] args) throws Exception {
+    new AllMaker(load(args[0])).execute(Maps.newLinkedHashMap());
+  }
+}
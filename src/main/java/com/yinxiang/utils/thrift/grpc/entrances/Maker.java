@@ -1,12 +1,25 @@
 package com.yinxiang.utils.thrift.grpc.entrances;
 
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableSet;
 import com.yinxiang.utils.thrift.grpc.infos.FileInfo;
+import com.yinxiang.utils.thrift.grpc.infos.SymbolTable;
 import com.yinxiang.utils.thrift.grpc.operations.CircleDependenciesResolver;
+import com.yinxiang.utils.thrift.grpc.operations.FileInfosCacheOperation;
 import com.yinxiang.utils.thrift.grpc.operations.ThriftClassesCollector;
 import com.yinxiang.utils.thrift.grpc.operations.FilesOperation;
 import com.yinxiang.utils.thrift.grpc.operations.FilesOperations;
+import com.yinxiang.utils.thrift.grpc.operations.generators.ResponseCacheOptions;
+import com.yinxiang.utils.thrift.grpc.operations.generators.ServiceMode;
+import com.yinxiang.utils.thrift.grpc.utils.ConcurrentUtils;
+import com.yinxiang.utils.thrift.grpc.utils.FileCommitter;
+import com.yinxiang.utils.thrift.grpc.utils.Metrics;
 
+import java.io.File;
 import java.util.Map;
+import java.util.Set;
+
+import static com.google.common.base.Strings.isNullOrEmpty;
 
 /**
  * Base maker of files.
@@ -18,14 +31,106 @@ import java.util.Map;
  * @since 1.0.0
  */
 public abstract class Maker implements FilesOperation {
+  /** The prefix of all maker options, options are set by system properties. */
+  public static final String OPTION_PREFIX = "thrift2grpc.";
+  /** Option: scan the thrift classes in parallel, default false. */
+  public static final String PARALLEL_SCAN = OPTION_PREFIX + "parallelScan";
+  /** Option: do not rewrite the generated files which content is unchanged, default false. */
+  public static final String SKIP_UNCHANGED = OPTION_PREFIX + "skipUnchanged";
+  /** Option: the direction to cache the resolved model for the makers of one build, default not cache. */
+  public static final String CACHE_DIR = OPTION_PREFIX + "cacheDir";
+  /** Option: the count of threads to generate files, less than 1 means the count of processors, default 1. */
+  public static final String THREADS = OPTION_PREFIX + "threads";
+  /** Option: the max count of messages in one proto file, the larger file is split to shards, default not split. */
+  public static final String SHARD_MESSAGES = OPTION_PREFIX + "shardMessages";
+  /** Option: the max estimated descriptor size of one proto file, the larger file is split, default not split. */
+  public static final String SHARD_BYTES = OPTION_PREFIX + "shardBytes";
+  /** Option: generate the container fields of marshallers by presized collections and loops, default false. */
+  public static final String LOOP_MARSHALLER = OPTION_PREFIX + "loopMarshaller";
+  /** Option: share the binary between thrift and gRPC in marshallers instead of copy it, default false. */
+  public static final String ZERO_COPY_BINARY = OPTION_PREFIX + "zeroCopyBinary";
+  /** Option: the mode of generated gRPC services and thrift stub, sync, async or virtual, default sync. */
+  public static final String SERVICE_MODE = OPTION_PREFIX + "serviceMode";
+  /** Option: the rpc which concurrent calls of equal requests share one thrift call, [service].[rpc] split by ",". */
+  public static final String SINGLE_FLIGHT = OPTION_PREFIX + "singleFlight";
+  /** Option: the rpc which responses are cached by the generated gRPC services, [service].[rpc] split by ",". */
+  public static final String RESPONSE_CACHE = OPTION_PREFIX + "responseCache";
+  /** Option: the max count of responses in the cache of one rpc, default 10000. */
+  public static final String RESPONSE_CACHE_SIZE = OPTION_PREFIX + "responseCacheSize";
+  /** Option: the seconds to expire a cached response after it is written, default 60. */
+  public static final String RESPONSE_CACHE_TTL = OPTION_PREFIX + "responseCacheTtl";
+  /** Option: the write rpc which invalidates the response caches of its service, [service].[rpc] split by ",". */
+  public static final String RESPONSE_CACHE_INVALIDATORS = OPTION_PREFIX + "responseCacheInvalidators";
+  /** Option: generate the pooled thrift stub which leases a client from a bounded pool per call, default false. */
+  public static final String POOLED_STUB = OPTION_PREFIX + "pooledStub";
+  /** Option: the idempotent rpc which the pooled stub retries on a new connection, [service].[rpc] split by ",". */
+  public static final String POOLED_STUB_RETRIES = OPTION_PREFIX + "pooledStubRetries";
+  /** Option: record the latencies of phases, the calls in flight and the errors of rpc in services, default false. */
+  public static final String RPC_METRICS = OPTION_PREFIX + "rpcMetrics";
+  /** Option: the json file to write the time and memory report of all phases, default not report. */
+  public static final String REPORT = OPTION_PREFIX + "report";
+
   /** The collections of {@link FilesOperation}. */
   private final FilesOperations filesOperations = new FilesOperations();
   /** The init size of {@link #filesOperations}. */
   private final int size;
+  /** The count of threads to generate files. */
+  protected final int threads;
+  /** The max count of messages in one proto file, less than 1 means not limit. */
+  protected final int shardMessages;
+  /** The max estimated descriptor size of one proto file, less than 1 means not limit. */
+  protected final int shardBytes;
+  /** Generate the container fields of marshallers by loops instead of streams. */
+  protected final boolean loopMarshaller;
+  /** Share the binary between thrift and gRPC in marshallers, the shared binary must not be modified. */
+  protected final boolean zeroCopyBinary;
+  /** The mode of generated gRPC services and thrift stub. */
+  protected final ServiceMode serviceMode;
+  /** The rpc which calls are coalesced in generated gRPC services, <code>[service].[rpc]</code>. */
+  protected final Set<String> singleFlights;
+  /** The options of response caches in generated gRPC services. */
+  protected final ResponseCacheOptions responseCache;
+  /** Generate the pooled thrift stub. */
+  protected final boolean pooledStub;
+  /** The idempotent rpc which the pooled thrift stub retries, <code>[service].[rpc]</code>. */
+  protected final Set<String> pooledStubRetries;
+  /** Record the metrics of rpc in generated gRPC services. */
+  protected final boolean rpcMetrics;
+  /** The symbol table of structs and the committer of files, shared by all operations of this maker. */
+  protected final SymbolTable symbols = new SymbolTable(new FileCommitter(Boolean.getBoolean(SKIP_UNCHANGED)));
+  /** The json file of report, null if not report. */
+  private final String report;
 
   public Maker(String thriftPackage, String scans, String drops) {
-    filesOperations.addFilesOperation(new ThriftClassesCollector(thriftPackage, scans, drops));
-    filesOperations.addFilesOperation(new CircleDependenciesResolver());
+    boolean parallelScan = Boolean.getBoolean(PARALLEL_SCAN);
+    threads = ConcurrentUtils.formatThreads(Integer.getInteger(THREADS, 1));
+    shardMessages = Integer.getInteger(SHARD_MESSAGES, 0);
+    shardBytes = Integer.getInteger(SHARD_BYTES, 0);
+    loopMarshaller = Boolean.getBoolean(LOOP_MARSHALLER);
+    zeroCopyBinary = Boolean.getBoolean(ZERO_COPY_BINARY);
+    serviceMode = ServiceMode.parse(System.getProperty(SERVICE_MODE));
+    singleFlights = getRpcs(SINGLE_FLIGHT);
+    responseCache = new ResponseCacheOptions(
+            getRpcs(RESPONSE_CACHE),
+            getRpcs(RESPONSE_CACHE_INVALIDATORS),
+            Long.getLong(RESPONSE_CACHE_SIZE, 10000),
+            Long.getLong(RESPONSE_CACHE_TTL, 60));
+    pooledStub = Boolean.getBoolean(POOLED_STUB);
+    pooledStubRetries = getRpcs(POOLED_STUB_RETRIES);
+    rpcMetrics = Boolean.getBoolean(RPC_METRICS);
+    report = System.getProperty(REPORT);
+    Metrics.setEnabled(!isNullOrEmpty(report));
+    // collect and resolve the model
+    FilesOperations modelOperations = new FilesOperations();
+    modelOperations.addFilesOperation(new ThriftClassesCollector(thriftPackage, scans, drops, symbols, parallelScan));
+    modelOperations.addFilesOperation(new CircleDependenciesResolver(symbols));
+    String cacheDir = System.getProperty(CACHE_DIR);
+    if (isNullOrEmpty(cacheDir)) {
+      filesOperations.addFilesOperation(modelOperations);
+    } else {
+      filesOperations.addFilesOperation(
+              new FileInfosCacheOperation(cacheDir, thriftPackage, scans, drops, modelOperations, symbols));
+    }
     size = filesOperations.size();
   }
 
@@ -39,14 +144,30 @@ public abstract class Maker implements FilesOperation {
     // add all extend operations
     addFilesOperations(filesOperations);
     // execute all
-    filesOperations.execute(fileInfos);
+    try (Metrics.Phase phase = Metrics.start(getClass().getSimpleName())) {
+      filesOperations.execute(fileInfos);
+      phase.put("files", fileInfos.size());
+    }
     // log
     outputLog();
+    if (!isNullOrEmpty(report)) {
+      Metrics.writeReport(new File(report), getClass().getName());
+    }
   }
 
   @Override
   public void outputLog() {
     filesOperations.outputLog();
+    symbols.getFiles().outputLog();
+  }
+
+  /**
+   * Get the rpc of an option.
+   * @param key option key
+   * @return  the set of <code>[service].[rpc]</code>
+   */
+  private static Set<String> getRpcs(String key) {
+    return ImmutableSet.copyOf(Splitter.on(',').trimResults().omitEmptyStrings().split(System.getProperty(key, "")));
   }
 
   /**
@@ -41,8 +41,12 @@ public class MarshallerMaker extends Maker {
 
   @Override
   protected void addFilesOperations(FilesOperations filesOperations) {
-    filesOperations.addFilesOperation(new ThriftMarshallerGenerator(marshallerPath, thriftMarshallerPkg, grpcPkg));
-    filesOperations.addFilesOperation(new GrpcMarshallerGenerator(marshallerPath, grpcMarshallerPkg, grpcPkg));
+    filesOperations.addFilesOperation(
+            new ThriftMarshallerGenerator(
+                    marshallerPath, thriftMarshallerPkg, grpcPkg, symbols, threads, loopMarshaller, zeroCopyBinary));
+    filesOperations.addFilesOperation(
+            new GrpcMarshallerGenerator(
+                    marshallerPath, grpcMarshallerPkg, grpcPkg, symbols, threads, loopMarshaller, zeroCopyBinary));
   }
 
   public static void main(String[] args) throws Exception {
@@ -27,6 +27,6 @@ public class ProtoMaker extends Maker {
 
   @Override
   protected void addFilesOperations(FilesOperations filesOperations) {
-    filesOperations.addFilesOperation(new ProtoGenerator(path, pkg));
+    filesOperations.addFilesOperation(new ProtoGenerator(path, pkg, symbols, threads, shardMessages, shardBytes));
   }
 }
@@ -0,0 +1,52 @@
+package com.yinxiang.utils.thrift.grpc.entrances;
+
+import com.yinxiang.utils.thrift.grpc.operations.FilesOperations;
+import com.yinxiang.utils.thrift.grpc.operations.generators.MarshallerCompiler;
+import com.yinxiang.utils.thrift.grpc.operations.generators.Marshallers;
+
+/**
+ * The maker of runtime marshallers.
+ * <p>
+ *   The {@link MarshallerCompiler} will compile the marshallers of the loaded thrift classes and the generated gRPC
+ *   classes at runtime, execute it at startup and get the {@link Marshallers}, no marshaller module is needed.
+ *   The options of {@link Maker} are supported too, e.g. the model is loaded from cache by {@link #CACHE_DIR}.
+ * </p>
+ * @author Huiyuan Fu
+ * @since 1.0.0
+ */
+public class RuntimeMaker extends Maker {
+  /** The package of gRPC. */
+  private final String grpcPkg;
+  /** The class loader of thrift and gRPC classes. */
+  private final ClassLoader classLoader;
+  /** The compiler, null before execute. */
+  private MarshallerCompiler compiler;
+
+  public RuntimeMaker(String thriftPackage, String scans, String drops, String grpcPkg) {
+    this(thriftPackage, scans, drops, grpcPkg, Thread.currentThread().getContextClassLoader());
+  }
+
+  public RuntimeMaker(String thriftPackage, String scans, String drops, String grpcPkg, ClassLoader classLoader) {
+    super(thriftPackage, scans, drops);
+    this.grpcPkg = grpcPkg;
+    this.classLoader = classLoader;
+  }
+
+  @Override
+  protected void addFilesOperations(FilesOperations filesOperations) {
+    compiler = new MarshallerCompiler(
+            grpcPkg, grpcPkg + "/runtime", symbols, threads, loopMarshaller, zeroCopyBinary, classLoader);
+    filesOperations.addFilesOperation(compiler);
+  }
+
+  /**
+   * @return  the compiled marshallers
+   * @see MarshallerCompiler#getMarshallers()
+   */
+  public Marshallers getMarshallers() {
+    if (compiler == null) {
+      throw new IllegalStateException("The maker is not executed.");
+    }
+    return compiler.getMarshallers();
+  }
+}
@@ -52,11 +52,14 @@ public class ServiceMaker extends Maker {
   @Override
   protected void addFilesOperations(FilesOperations filesOperations) {
     AbstractMarshallerGenerator thriftMarshallerCreator =
-            new ThriftMarshallerGenerator(marshallerPath, thriftMarshallerPkg, grpcPkg);
+            new ThriftMarshallerGenerator(
+                    marshallerPath, thriftMarshallerPkg, grpcPkg, symbols, threads, loopMarshaller, zeroCopyBinary);
     GrpcMarshallerGenerator grpcMarshallerCreator =
-            new GrpcMarshallerGenerator(marshallerPath, grpcMarshallerPkg, grpcPkg);
-    filesOperations.addFilesOperation(
-            new GrpcServiceGenerator(servicePath, servicePkg, stubPkg, thriftMarshallerCreator, grpcMarshallerCreator));
+            new GrpcMarshallerGenerator(
+                    marshallerPath, grpcMarshallerPkg, grpcPkg, symbols, threads, loopMarshaller, zeroCopyBinary);
+    filesOperations.addFilesOperation(new GrpcServiceGenerator(
+            servicePath, servicePkg, stubPkg, thriftMarshallerCreator, grpcMarshallerCreator, threads, serviceMode,
+            singleFlights, responseCache, rpcMetrics));
   }
 
   public static void main(String[] args) throws Exception {
@@ -30,6 +30,7 @@ public class StubMaker extends Maker {
 
   @Override
   protected void addFilesOperations(FilesOperations filesOperations) {
-    filesOperations.addFilesOperation(new ThriftStubGenerator(path, pkg));
+    filesOperations.addFilesOperation(
+            new ThriftStubGenerator(path, pkg, serviceMode, pooledStub, pooledStubRetries, symbols.getFiles()));
   }
 }
@@ -0,0 +1,33 @@
+package com.yinxiang.utils.thrift.grpc.entrances;
+
+import com.google.common.collect.Maps;
+import com.yinxiang.utils.thrift.grpc.operations.FilesOperations;
+import com.yinxiang.utils.thrift.grpc.operations.generators.TranscoderGenerator;
+
+/**
+ * The maker of transcoder.
+ * <p>The {@link TranscoderGenerator} will generate some thrift protocol to gRPC stream method.</p>
+ * @author Huiyuan Fu
+ * @since 1.0.0
+ */
+public class TranscoderMaker extends Maker {
+  /** The base path of transcoder module. */
+  private final String path;
+  /** The package of transcoder. */
+  private final String pkg;
+
+  private TranscoderMaker(String thriftPackage, String scans, String drops, String path, String pkg) {
+    super(thriftPackage, scans, drops);
+    this.path = path;
+    this.pkg = pkg;
+  }
+
+  public static void main(String[] args) throws Exception {
+    new TranscoderMaker(args[0], args[1], args[2], args[3], args[4]).execute(Maps.newLinkedHashMap());
+  }
+
+  @Override
+  protected void addFilesOperations(FilesOperations filesOperations) {
+    filesOperations.addFilesOperation(new TranscoderGenerator(path, pkg, symbols, threads));
+  }
+}
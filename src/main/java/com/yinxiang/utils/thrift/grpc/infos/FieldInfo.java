@@ -26,6 +26,12 @@ public class FieldInfo {
    * 2. Ref info: full class name.
    */
   private String defaultValue;
+  /** The {@link #defaultValue} without quotes. */
+  private String refThriftType;
+  /** The field id of thrift, 0 if the field is not a field of thrift struct. */
+  private short thriftId;
+  /** True if the field of thrift class is public, then it can be accessed directly. */
+  private boolean publicField;
 
   /** @see #secondType */
   public FieldType getSecondType() {
@@ -86,13 +92,14 @@ public class FieldInfo {
   /** @see #defaultValue */
   public void setDefaultValue(String defaultValue) {
     this.defaultValue = defaultValue;
+    this.refThriftType = defaultValue == null ? null : defaultValue.replace("\"", "");
   }
 
   /**
    * @return  the format of thrift type reference.
    */
   public String getRefThriftType() {
-    return getDefaultValue().replaceAll("\"", "");
+    return refThriftType;
   }
 
   /** @see #containerType */
@@ -104,4 +111,24 @@ public class FieldInfo {
   public void setContainerType(FieldType containerType) {
     this.containerType = containerType;
   }
+
+  /** @see #thriftId */
+  public short getThriftId() {
+    return thriftId;
+  }
+
+  /** @see #thriftId */
+  public void setThriftId(short thriftId) {
+    this.thriftId = thriftId;
+  }
+
+  /** @see #publicField */
+  public boolean isPublicField() {
+    return publicField;
+  }
+
+  /** @see #publicField */
+  public void setPublicField(boolean publicField) {
+    this.publicField = publicField;
+  }
 }
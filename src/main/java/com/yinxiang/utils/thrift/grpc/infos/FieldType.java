@@ -1,11 +1,28 @@
 package com.yinxiang.utils.thrift.grpc.infos;
 
+import com.yinxiang.utils.thrift.grpc.TType;
+
 /**
  * Record a field type.
+ * <p>The field type is immutable, the primitive and container types are shared constants, use {@link #of}.</p>
  * @author Huiyuan Fu
  * @since 1.0.0
  */
 public class FieldType {
+  public static final FieldType BOOL = new FieldType("bool", TType.BOOL);
+  public static final FieldType BYTE = new FieldType("int", TType.BYTE);
+  public static final FieldType I16 = new FieldType("int", TType.I16);
+  public static final FieldType I32 = new FieldType("int", TType.I32);
+  public static final FieldType I64 = new FieldType("long", TType.I64);
+  public static final FieldType DOUBLE = new FieldType("double", TType.DOUBLE);
+  public static final FieldType STRING = new FieldType("string", TType.STRING);
+  public static final FieldType BYTES = new FieldType("bytes", TType.STRUCT);
+  /** The binary which java type is {@link java.nio.ByteBuffer}, the others are byte[]. */
+  public static final FieldType BUFFER = new FieldType("bytes", TType.STRING);
+  public static final FieldType LIST = new FieldType("List", TType.LIST);
+  public static final FieldType SET = new FieldType("Set", TType.SET);
+  public static final FieldType MAP = new FieldType("Map", TType.MAP);
+
   /** The simple name of thrift class. */
   public final String type;
   /** {@link com.yinxiang.utils.thrift.grpc.TType} */
@@ -15,4 +32,37 @@ public class FieldType {
     this.type = type;
     this.thriftType = thriftType;
   }
+
+  /**
+   * Get a field type, the constant is returned if exists.
+   * @param type        {@link #type}
+   * @param thriftType  {@link #thriftType}
+   * @return  {@link FieldType}
+   */
+  public static FieldType of(String type, byte thriftType) {
+    switch (thriftType) {
+      case TType.BOOL:
+        return BOOL;
+      case TType.BYTE:
+        return BYTE;
+      case TType.I16:
+        return I16;
+      case TType.I32:
+        return I32;
+      case TType.I64:
+        return I64;
+      case TType.DOUBLE:
+        return DOUBLE;
+      case TType.STRING:
+        return BUFFER.type.equals(type) ? BUFFER : STRING;
+      case TType.LIST:
+        return LIST;
+      case TType.SET:
+        return SET;
+      case TType.MAP:
+        return MAP;
+      default:
+        return BYTES.type.equals(type) && thriftType == TType.STRUCT ? BYTES : new FieldType(type, thriftType);
+    }
+  }
 }
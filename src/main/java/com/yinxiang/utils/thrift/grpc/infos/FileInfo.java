@@ -4,7 +4,9 @@ import com.google.common.collect.*;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * Record a proto file infos.
@@ -17,7 +19,7 @@ public class FileInfo {
   /** The map of this proto's all struct, key is {@link StructInfo#getName()}. */
   private Map<String, StructInfo> structInfos = Maps.newLinkedHashMap();
   /** The list of this proto's all services. */
-  private List<ServiceInfo> serviceInfos = Lists.newLinkedList();
+  private List<ServiceInfo> serviceInfos = Lists.newArrayList();
   /** The set of this proto's all import. */
   private Set<String> imports = Sets.newHashSet();
   /** The proto version, default 3. */
@@ -91,12 +93,15 @@ public class FileInfo {
   }
 
   /**
-   * Record a struct.
-   * @param structInfo  struct
+   * Iterate the names of structs which referenced by the structs and rpc of this file.
+   * @param consumer  struct name consumer
+   * @see StructInfo#forEachReference(Consumer)
    */
-  public void saveStruct(StructInfo structInfo) {
-    structInfos.put(structInfo.getName(), structInfo);
-    originNames.add(structInfo.getOriginName());
-    structInfo.setFileInfo(this);
+  public void forEachReference(Consumer<String> consumer) {
+    structInfos.values().forEach(structInfo -> structInfo.forEachReference(consumer));
+    serviceInfos.forEach(serviceInfo -> serviceInfo.getRpcInfos().forEach(rpcInfo -> {
+      Optional.ofNullable(rpcInfo.getRequest()).map(StructInfo::getName).ifPresent(consumer);
+      Optional.ofNullable(rpcInfo.getResponse()).map(StructInfo::getName).ifPresent(consumer);
+    }));
   }
 }
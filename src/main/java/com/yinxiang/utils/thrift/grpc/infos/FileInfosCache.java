@@ -0,0 +1,303 @@
+package com.yinxiang.utils.thrift.grpc.infos;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.yinxiang.utils.thrift.grpc.infos.StructInfo.EMPTY;
+
+/**
+ * The binary cache of the resolved {@link FileInfo} model.
+ * <p>
+ *   The structs are written once in a table and referenced by index, so a struct shared by files and rpc is still
+ *   one instance after read. The iteration order of all maps and sets is kept, and the struct names and parents of
+ *   {@link SymbolTable} are restored too, so the generators output same files with the model which is loaded from
+ *   thrift classes. The transient infos of {@link FileInfo} are only used by loaders and resolver, they are skipped.
+ * </p>
+ * @author Huiyuan Fu
+ * @since 1.0.0
+ */
+public class FileInfosCache {
+  /** The magic of cache file. */
+  private static final int MAGIC = 0x54324743;
+  /** The version of cache format, increase it when the model changed. */
+  public static final int VERSION = 11;
+
+  /**
+   * Write the model to a cache file, the file is replaced after all written.
+   * @param fileInfos the map of {@link FileInfo}
+   * @param symbols   {@link SymbolTable}
+   * @param file      cache file
+   * @throws IOException  IOException
+   */
+  public static void write(Map<String, FileInfo> fileInfos, SymbolTable symbols, File file) throws IOException {
+    File tmp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      // collect all structs
+      Map<StructInfo, Integer> structIds = new IdentityHashMap<>();
+      List<StructInfo> structs = Lists.newArrayList();
+      fileInfos.values().forEach(fileInfo -> {
+        fileInfo.getStructInfos().values().forEach(struct -> addStruct(structIds, structs, struct));
+        fileInfo.getServiceInfos().forEach(service -> service.getRpcInfos().forEach(rpc -> {
+          addStruct(structIds, structs, rpc.getRequest());
+          addStruct(structIds, structs, rpc.getResponse());
+        }));
+      });
+      // structs
+      out.writeInt(structs.size());
+      for (StructInfo struct : structs) {
+        writeStruct(out, struct);
+      }
+      // files
+      out.writeInt(fileInfos.size());
+      for (FileInfo fileInfo : fileInfos.values()) {
+        writeFile(out, fileInfo, structIds);
+      }
+      // struct names and parents
+      writeStrings(out, symbols.getNames());
+      out.writeInt(symbols.getParents().size());
+      for (Map.Entry<String, FileInfo> entry : symbols.getParents().entrySet()) {
+        out.writeUTF(entry.getKey());
+        out.writeUTF(entry.getValue().getName());
+      }
+    } catch (IOException | RuntimeException e) {
+      Files.deleteIfExists(tmp.toPath());
+      throw e;
+    }
+    Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  /**
+   * Read the model from a cache file.
+   * <p>The struct names and parents are restored to the {@link SymbolTable} only if whole file is read.</p>
+   * @param file    cache file
+   * @param symbols {@link SymbolTable}
+   * @return  the map of {@link FileInfo}
+   * @throws IOException  if the file is broken or the version is not match
+   */
+  public static Map<String, FileInfo> read(File file, SymbolTable symbols) throws IOException {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        throw new IOException("Not a cache file or version not match: " + file);
+      }
+      // structs
+      List<StructInfo> structs = Lists.newArrayList();
+      for (int i = in.readInt();i > 0;i--) {
+        structs.add(readStruct(in));
+      }
+      // files
+      Map<String, FileInfo> fileInfos = Maps.newLinkedHashMap();
+      for (int i = in.readInt();i > 0;i--) {
+        FileInfo fileInfo = readFile(in, structs);
+        fileInfos.put(fileInfo.getName(), fileInfo);
+      }
+      // struct names and parents
+      Set<String> names = readStrings(in);
+      Map<String, FileInfo> parents = Maps.newLinkedHashMap();
+      for (int i = in.readInt();i > 0;i--) {
+        String name = in.readUTF();
+        parents.put(name, fileInfos.get(in.readUTF()));
+      }
+      symbols.getNames().addAll(names);
+      symbols.getParents().putAll(parents);
+      return fileInfos;
+    } catch (ClassNotFoundException | RuntimeException e) {
+      throw new IOException("Broken cache file: " + file, e);
+    }
+  }
+
+  /**
+   * Add a struct to table if absent.
+   * @param structIds the map of struct index
+   * @param structs   the struct table
+   * @param struct    struct, can be null
+   */
+  private static void addStruct(Map<StructInfo, Integer> structIds, List<StructInfo> structs, StructInfo struct) {
+    if (struct != null && !structIds.containsKey(struct)) {
+      structIds.put(struct, structs.size());
+      structs.add(struct);
+    }
+  }
+
+  private static void writeFile(DataOutputStream out, FileInfo fileInfo, Map<StructInfo, Integer> structIds)
+          throws IOException {
+    out.writeUTF(fileInfo.getName());
+    out.writeByte(fileInfo.getVersion());
+    // structs
+    out.writeInt(fileInfo.getStructInfos().size());
+    for (Map.Entry<String, StructInfo> entry : fileInfo.getStructInfos().entrySet()) {
+      out.writeUTF(entry.getKey());
+      out.writeInt(structIds.get(entry.getValue()));
+    }
+    // services
+    out.writeInt(fileInfo.getServiceInfos().size());
+    for (ServiceInfo serviceInfo : fileInfo.getServiceInfos()) {
+      out.writeUTF(serviceInfo.getName());
+      writeString(out, serviceInfo.getClz() == null ? null : serviceInfo.getClz().getName());
+      out.writeInt(serviceInfo.getRpcInfos().size());
+      for (RpcInfo rpcInfo : serviceInfo.getRpcInfos()) {
+        out.writeUTF(rpcInfo.getRpc());
+        out.writeInt(rpcInfo.getRequest() == null ? -1 : structIds.get(rpcInfo.getRequest()));
+        out.writeInt(rpcInfo.getResponse() == null ? -1 : structIds.get(rpcInfo.getResponse()));
+        writeString(out, rpcInfo.getReturnType());
+        out.writeInt(rpcInfo.getParameterTypes().size());
+        for (String parameterType : rpcInfo.getParameterTypes()) {
+          out.writeUTF(parameterType);
+        }
+      }
+    }
+    // imports
+    writeStrings(out, fileInfo.getImports());
+  }
+
+  private static FileInfo readFile(DataInputStream in, List<StructInfo> structs)
+          throws IOException, ClassNotFoundException {
+    FileInfo fileInfo = new FileInfo(in.readUTF());
+    fileInfo.setVersion(in.readByte());
+    // structs
+    for (int i = in.readInt();i > 0;i--) {
+      String name = in.readUTF();
+      fileInfo.getStructInfos().put(name, structs.get(in.readInt()));
+    }
+    // services
+    ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+    for (int i = in.readInt();i > 0;i--) {
+      ServiceInfo serviceInfo = new ServiceInfo(in.readUTF());
+      String clz = readString(in);
+      if (clz != null) {
+        serviceInfo.setClz(Class.forName(clz, false, classLoader));
+      }
+      for (int j = in.readInt();j > 0;j--) {
+        RpcInfo rpcInfo = new RpcInfo(in.readUTF());
+        int request = in.readInt(), response = in.readInt();
+        rpcInfo.setRequest(request == -1 ? null : structs.get(request));
+        rpcInfo.setResponse(response == -1 ? null : structs.get(response));
+        rpcInfo.setReturnType(readString(in));
+        List<String> parameterTypes = Lists.newArrayList();
+        for (int k = in.readInt();k > 0;k--) {
+          parameterTypes.add(in.readUTF());
+        }
+        rpcInfo.setParameterTypes(parameterTypes);
+        serviceInfo.getRpcInfos().add(rpcInfo);
+      }
+      fileInfo.getServiceInfos().add(serviceInfo);
+    }
+    // imports
+    fileInfo.setImports(readStrings(in));
+    return fileInfo;
+  }
+
+  private static void writeStruct(DataOutputStream out, StructInfo struct) throws IOException {
+    out.writeBoolean(struct == EMPTY);
+    if (struct == EMPTY) {
+      return;
+    }
+    out.writeUTF(struct.getOriginName());
+    out.writeUTF(struct.getName());
+    out.writeBoolean(struct.isEnum());
+    out.writeInt(struct.getFieldInfos().size());
+    for (FieldInfo fieldInfo : struct.getFieldInfos()) {
+      writeField(out, fieldInfo);
+    }
+    out.writeBoolean(struct.getRefInfo() != null);
+    if (struct.getRefInfo() != null) {
+      writeField(out, struct.getRefInfo());
+    }
+  }
+
+  private static StructInfo readStruct(DataInputStream in) throws IOException {
+    if (in.readBoolean()) {
+      return EMPTY;
+    }
+    StructInfo struct = new StructInfo(in.readUTF(), in.readUTF(), in.readBoolean());
+    for (int i = in.readInt();i > 0;i--) {
+      struct.getFieldInfos().add(readField(in));
+    }
+    if (in.readBoolean()) {
+      struct.setRefInfo(readField(in));
+    }
+    return struct;
+  }
+
+  private static void writeField(DataOutputStream out, FieldInfo fieldInfo) throws IOException {
+    writeString(out, fieldInfo.getName());
+    writeType(out, fieldInfo.getFirstType());
+    writeType(out, fieldInfo.getSecondType());
+    writeType(out, fieldInfo.getContainerType());
+    writeString(out, fieldInfo.getDefaultValue());
+    out.writeShort(fieldInfo.getThriftId());
+    out.writeBoolean(fieldInfo.isPublicField());
+  }
+
+  private static FieldInfo readField(DataInputStream in) throws IOException {
+    FieldInfo fieldInfo = new FieldInfo();
+    fieldInfo.setName(readString(in));
+    fieldInfo.setFirstType(readType(in));
+    fieldInfo.setSecondType(readType(in));
+    fieldInfo.setContainerType(readType(in));
+    fieldInfo.setDefaultValue(readString(in));
+    fieldInfo.setThriftId(in.readShort());
+    fieldInfo.setPublicField(in.readBoolean());
+    return fieldInfo;
+  }
+
+  private static void writeType(DataOutputStream out, FieldType fieldType) throws IOException {
+    out.writeBoolean(fieldType != null);
+    if (fieldType != null) {
+      writeString(out, fieldType.type);
+      out.writeByte(fieldType.thriftType);
+    }
+  }
+
+  private static FieldType readType(DataInputStream in) throws IOException {
+    return in.readBoolean() ? FieldType.of(readString(in), in.readByte()) : null;
+  }
+
+  /**
+   * Write a set of string in iteration order.
+   * @param out     {@link DataOutputStream}
+   * @param strings a set of string
+   * @throws IOException  IOException
+   */
+  private static void writeStrings(DataOutputStream out, Set<String> strings) throws IOException {
+    out.writeInt(strings.size());
+    for (String string : strings) {
+      out.writeUTF(string);
+    }
+  }
+
+  /**
+   * Read a set of string, the iteration order is same with written.
+   * @param in  {@link DataInputStream}
+   * @return  a set of string
+   * @throws IOException  IOException
+   */
+  private static Set<String> readStrings(DataInputStream in) throws IOException {
+    Set<String> strings = Sets.newLinkedHashSet();
+    for (int i = in.readInt();i > 0;i--) {
+      strings.add(in.readUTF());
+    }
+    return strings;
+  }
+
+  private static void writeString(DataOutputStream out, String string) throws IOException {
+    out.writeBoolean(string != null);
+    if (string != null) {
+      out.writeUTF(string);
+    }
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    return in.readBoolean() ? in.readUTF() : null;
+  }
+}
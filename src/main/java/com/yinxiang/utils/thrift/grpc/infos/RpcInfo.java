@@ -1,5 +1,8 @@
 package com.yinxiang.utils.thrift.grpc.infos;
 
+import java.util.Collections;
+import java.util.List;
+
 /**
  * Record a rpc infos of gRPC.
  * @author Huiyuan Fu
@@ -12,6 +15,10 @@ public class RpcInfo {
   private StructInfo request;
   /** The response of rpc. */
   private StructInfo response;
+  /** The java type of thrift return, primitive is boxed and void is <code>java.lang.Void</code>. */
+  private String returnType;
+  /** The java types of thrift parameters. */
+  private List<String> parameterTypes = Collections.emptyList();
 
   public RpcInfo(String rpc) {
     this.rpc = rpc;
@@ -37,6 +44,26 @@ public class RpcInfo {
     this.response = response;
   }
 
+  /** @see #returnType */
+  public String getReturnType() {
+    return returnType;
+  }
+
+  /** @see #returnType */
+  public void setReturnType(String returnType) {
+    this.returnType = returnType;
+  }
+
+  /** @see #parameterTypes */
+  public List<String> getParameterTypes() {
+    return parameterTypes;
+  }
+
+  /** @see #parameterTypes */
+  public void setParameterTypes(List<String> parameterTypes) {
+    this.parameterTypes = parameterTypes;
+  }
+
   /** @see #rpc */
   public String getRpc() {
     return rpc;
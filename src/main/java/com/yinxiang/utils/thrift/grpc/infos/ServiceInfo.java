@@ -11,7 +11,7 @@ import java.util.List;
  */
 public class ServiceInfo {
   /** The list of rpc. */
-  private List<RpcInfo> rpcInfos = Lists.newLinkedList();
+  private List<RpcInfo> rpcInfos = Lists.newArrayList();
   /** Service name. */
   private String name;
   /** The thrift interface. */
@@ -1,13 +1,10 @@
 package com.yinxiang.utils.thrift.grpc.infos;
 
 import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
-import com.google.common.collect.Sets;
 import com.yinxiang.utils.thrift.grpc.TType;
 
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * Record a message infos of gRPC.
@@ -15,13 +12,8 @@ import java.util.Set;
  * @since 1.0.0
  */
 public class StructInfo {
-  /** The set of struct name, use to make alias name. */
-  private static final Set<String> NAMES = Sets.newHashSet();
-  /** The map of all proto, key is {@link FieldInfo#getName()}. */
-  private static final Map<String, FileInfo> PARENTS = Maps.newHashMap();
-
   /** The default empty struct. */
-  public static final StructInfo EMPTY = new StructInfo("Empty");
+  public static final StructInfo EMPTY = new StructInfo("Empty", "Empty", false);
 
   /** The origin name of struct. */
   private String originName;
@@ -30,12 +22,29 @@ public class StructInfo {
   /** Note if a enum. */
   private boolean isEnum;
   /** The list of fields. */
-  private List<FieldInfo> fieldInfos = Lists.newLinkedList();
+  private List<FieldInfo> fieldInfos = Lists.newArrayList();
   /** The reference info. */
   private FieldInfo refInfo;
+  /** The thrift class name of {@link #refInfo}. */
+  private String refThriftType;
+  /** The field type which reference this struct, created at first use. */
+  private FieldType fieldType;
+
+  public StructInfo(SymbolTable symbols, String name) {
+    originName = name;
+    this.name = name.equals("bytes") ? name : symbols.allocateName(name);
+  }
 
-  public StructInfo(String name) {
-    setName(name);
+  /**
+   * Create a struct without make alias name.
+   * @param originName  {@link #originName}
+   * @param name        {@link #name}
+   * @param isEnum      {@link #isEnum}
+   */
+  StructInfo(String originName, String name, boolean isEnum) {
+    this.originName = originName;
+    this.name = name;
+    this.isEnum = isEnum;
   }
 
   /** @see #fieldInfos */
@@ -48,20 +57,6 @@ public class StructInfo {
     return name;
   }
 
-  /** @see #name */
-  private void setName(String name) {
-    originName = name;
-    if (!name.equals("bytes")) {
-      int index = 0;
-      while (NAMES.contains(name + (index == 0 ? "" : index))) {
-        index++;
-      }
-      name += (index == 0 ? "" : index);
-      NAMES.add(name);
-    }
-    this.name = name;
-  }
-
   /** @see #isEnum */
   public boolean isEnum() {
     return isEnum;
@@ -70,47 +65,7 @@ public class StructInfo {
   /** @see #isEnum */
   public void setEnum(boolean anEnum) {
     isEnum = anEnum;
-  }
-
-  /**
-   * Get a parent proto file of a struct.
-   * @param structName  the name of struct
-   * @return  parent proto file
-   */
-  public static FileInfo getFileInfo(String structName) {
-    return PARENTS.get(structName);
-  }
-
-  /**
-   * @return  the common proto file
-   */
-  public static FileInfo safeGetFileInfo(String structName) {
-    FileInfo fileInfo = PARENTS.get(structName);
-    return (fileInfo == null || !fileInfo.getStructInfos().containsKey(structName) ? getCommonFile() : fileInfo);
-  }
-
-  /**
-   * @return  the common proto file
-   */
-  public static FileInfo getCommonFile() {
-    return PARENTS.get(EMPTY.getName());
-  }
-
-  /**
-   * Get a struct.
-   * @param structName  the name of struct
-   * @return  struct
-   */
-  public static StructInfo getStructInfo(String structName) {
-    return safeGetFileInfo(structName).getStructInfos().get(structName);
-  }
-
-  /**
-   * Record parent.
-   * @param fileInfo  the parent proto file
-   */
-  public void setFileInfo(FileInfo fileInfo) {
-    PARENTS.put(name, fileInfo);
+    fieldType = null;
   }
 
   /** @see #originName */
@@ -123,6 +78,12 @@ public class StructInfo {
     return refInfo;
   }
 
+  /** @see #refInfo */
+  void setRefInfo(FieldInfo refInfo) {
+    this.refInfo = refInfo;
+    this.refThriftType = refInfo.getRefThriftType();
+  }
+
   /**
    * Record thrift type.
    * @param refName   reference name
@@ -130,16 +91,54 @@ public class StructInfo {
    */
   public void setRefInfo(String refName, Class<?> refClass) {
     FieldInfo refInfo = new FieldInfo();
-    refInfo.setFirstType(new FieldType("string", TType.STRING));
+    refInfo.setFirstType(FieldType.STRING);
     refInfo.setName(refName);
     refInfo.setDefaultValue("\"" + refClass.getName() + "\"");
     this.refInfo = refInfo;
+    this.refThriftType = refClass.getName();
   }
 
   /**
    * @return  the thrift type
    */
   public String getRefThriftType() {
-    return getRefInfo().getRefThriftType();
+    return refThriftType;
+  }
+
+  /**
+   * Get the field type which reference this struct, all fields of this struct type share one instance.
+   * @return  {@link FieldType}
+   */
+  public FieldType getFieldType() {
+    if (fieldType == null) {
+      fieldType = new FieldType(name, isEnum ? TType.ENUM : TType.STRUCT);
+    }
+    return fieldType;
+  }
+
+  /**
+   * Iterate the names of structs which referenced by the fields, enums are int32 in proto so skip them.
+   * <p>The names can be not a struct, e.g: bytes.</p>
+   * @param consumer  struct name consumer
+   */
+  public void forEachReference(Consumer<String> consumer) {
+    if (isEnum) {
+      return;
+    }
+    fieldInfos.forEach(fieldInfo -> {
+      acceptStruct(fieldInfo.getFirstType(), consumer);
+      acceptStruct(fieldInfo.getSecondType(), consumer);
+    });
+  }
+
+  /**
+   * Accept the name of a struct type.
+   * @param fieldType field type, can be null
+   * @param consumer  struct name consumer
+   */
+  private static void acceptStruct(FieldType fieldType, Consumer<String> consumer) {
+    if (fieldType != null && fieldType.thriftType == TType.STRUCT) {
+      consumer.accept(fieldType.type);
+    }
   }
 }
@@ -0,0 +1,138 @@
+package com.yinxiang.utils.thrift.grpc.infos;
+
+import com.google.common.collect.Maps;
+import com.yinxiang.utils.thrift.grpc.utils.FileCommitter;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.yinxiang.utils.thrift.grpc.infos.StructInfo.EMPTY;
+
+/**
+ * The symbol table of one generation, record the struct names and the parent proto file of structs, and commit the
+ * generated files of the generation.
+ * <p>
+ *   The name of {@link StructInfo#EMPTY} is reserved.
+ *   The repeated name will append a index, the next index of every name is recorded,
+ *   so a name is allocated without probing from the first index. All methods are thread safe.
+ * </p>
+ * @author Huiyuan Fu
+ * @since 1.0.0
+ */
+public class SymbolTable {
+  /** The set of struct names. */
+  private final Set<String> names = ConcurrentHashMap.newKeySet();
+  /** The map of next index to probe, key is origin name. */
+  private final Map<String, Integer> nextIndexes = Maps.newHashMap();
+  /** The map of parent proto files, key is {@link StructInfo#getName()}. */
+  private final Map<String, FileInfo> parents = new ConcurrentHashMap<>();
+  /** The committer of generated files. */
+  private final FileCommitter files;
+
+  public SymbolTable() {
+    this(new FileCommitter(false));
+  }
+
+  public SymbolTable(FileCommitter files) {
+    this.files = files;
+    names.add(EMPTY.getName());
+  }
+
+  /** @see #files */
+  public FileCommitter getFiles() {
+    return files;
+  }
+
+  /**
+   * Allocate a unique struct name.
+   * @param name  origin name
+   * @return  the name, append a index if the name is repeated
+   */
+  public synchronized String allocateName(String name) {
+    // the names less than next index are all used
+    int index = nextIndexes.getOrDefault(name, 0);
+    while (names.contains(name + (index == 0 ? "" : index))) {
+      index++;
+    }
+    nextIndexes.put(name, index + 1);
+    String ret = name + (index == 0 ? "" : index);
+    names.add(ret);
+    return ret;
+  }
+
+  /**
+   * Record a struct to a proto file.
+   * @param fileInfo    the parent proto file
+   * @param structInfo  struct
+   */
+  public void saveStruct(FileInfo fileInfo, StructInfo structInfo) {
+    fileInfo.getStructInfos().put(structInfo.getName(), structInfo);
+    fileInfo.getOriginNames().add(structInfo.getOriginName());
+    setFileInfo(structInfo.getName(), fileInfo);
+  }
+
+  /**
+   * Record parent.
+   * @param structName  the name of struct
+   * @param fileInfo    the parent proto file
+   */
+  public void setFileInfo(String structName, FileInfo fileInfo) {
+    parents.put(structName, fileInfo);
+  }
+
+  /**
+   * Get a parent proto file of a struct.
+   * @param structName  the name of struct
+   * @return  parent proto file
+   */
+  public FileInfo getFileInfo(String structName) {
+    return parents.get(structName);
+  }
+
+  /**
+   * Get a parent proto file of a struct, the common proto file if the struct is not in parent.
+   * @param structName  the name of struct
+   * @return  parent proto file
+   */
+  public FileInfo safeGetFileInfo(String structName) {
+    FileInfo fileInfo = parents.get(structName);
+    return (fileInfo == null || !fileInfo.getStructInfos().containsKey(structName) ? getCommonFile() : fileInfo);
+  }
+
+  /**
+   * Get the proto file which contains a struct.
+   * @param structName  the name of struct
+   * @return  parent proto file, null if not found (e.g: bytes)
+   */
+  public FileInfo findFileInfo(String structName) {
+    FileInfo fileInfo = safeGetFileInfo(structName);
+    return fileInfo.getStructInfos().containsKey(structName) ? fileInfo : null;
+  }
+
+  /**
+   * @return  the common proto file
+   */
+  public FileInfo getCommonFile() {
+    return parents.get(EMPTY.getName());
+  }
+
+  /**
+   * Get a struct.
+   * @param structName  the name of struct
+   * @return  struct
+   */
+  public StructInfo getStructInfo(String structName) {
+    return safeGetFileInfo(structName).getStructInfos().get(structName);
+  }
+
+  /** @see #names */
+  Set<String> getNames() {
+    return names;
+  }
+
+  /** @see #parents */
+  Map<String, FileInfo> getParents() {
+    return parents;
+  }
+}
@@ -1,110 +1,169 @@
 package com.yinxiang.utils.thrift.grpc.operations;
 
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
-import com.yinxiang.utils.thrift.grpc.infos.FieldType;
+import com.google.common.collect.SetMultimap;
 import com.yinxiang.utils.thrift.grpc.infos.FileInfo;
 import com.yinxiang.utils.thrift.grpc.infos.StructInfo;
+import com.yinxiang.utils.thrift.grpc.infos.SymbolTable;
+import com.yinxiang.utils.thrift.grpc.utils.GraphUtils;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.Set;
 import java.util.function.Consumer;
-
-import static com.google.common.base.Preconditions.checkNotNull;
+import java.util.stream.Collectors;
 
 /**
  * The gRPC proto circle dependencies resolver.
  * <p>
  *   Thrift can delimit a import b and b import a, but gRPC can not.
- *   The resolver will change b import a's struct to 'common.proto'.
+ *   The resolver finds the strongly connected components of the proto files import graph (Tarjan), every component
+ *   which has more than one file is a cycle. The files of a cycle are ordered by a depth first search, only the
+ *   structs referenced by the back edges of the search, and the structs of the cycle they reference, are moved to a
+ *   shared file 'common_' + [first file of the cycle], so the other structs stay in their origin proto file.
+ *   After resolved, the imports of all files are made from the references of structs and rpc.
  * </p>
  * @author Huiyuan Fu
  * @since 1.0.0
  * @see FilesOperation
  */
 public class CircleDependenciesResolver implements FilesOperation {
+  /** The prefix of the shared file of a cycle. */
+  static final String CYCLE_FILE_PREFIX = COMMON_FILE + "_";
+
+  /** The symbol table of structs. */
+  private final SymbolTable symbols;
+
   private int resolveCount;
+  private int moveCount;
+
+  public CircleDependenciesResolver(SymbolTable symbols) {
+    this.symbols = symbols;
+  }
 
   @Override
   public void execute(Map<String, FileInfo> fileInfos) {
     resolveCount = 0;
-    fileInfos.values().stream().filter(CircleDependenciesResolver::isThriftFile).forEach(fileInfo -> {
-      // get dependencies set
-      Set<String> dependencies = Sets.newHashSet(fileInfo.getDependencies().keySet());
-      // retain the dependency this proto's set
-      dependencies.retainAll(fileInfo.getDependencyMe());
-      // change all be depended struct to common file
-      Consumer<String> resolver = dependencyMe -> addDependencyToCommon(fileInfos, dependencyMe, fileInfo);
-      dependencies.forEach(dependency -> {
-        fileInfos.get(dependency).getDependencies().get(fileInfo.getName()).forEach(resolver);
-        fileInfos.get(dependency).getImports().remove(fileInfo.getName());
-      });
-      // add import
-      fileInfo.getImports().add(COMMON_FILE);
-      // counter
-      if (dependencies.size() > 0) {
+    moveCount = 0;
+    // make the import graph, key is file name
+    Map<String, Set<String>> graph = Maps.newLinkedHashMap();
+    fileInfos.forEach((name, fileInfo) -> graph.put(name, getImports(fileInfo)));
+    // resolve every cycle
+    Map<String, FileInfo> cycleFiles = Maps.newLinkedHashMap();
+    for (Set<String> component : GraphUtils.stronglyConnectedComponents(graph)) {
+      if (component.size() > 1) {
+        // order by the origin order of files
+        List<String> files = graph.keySet().stream().filter(component::contains).collect(Collectors.toList());
+        FileInfo cycleFile = resolve(fileInfos, graph, files);
+        cycleFiles.put(cycleFile.getName(), cycleFile);
         resolveCount++;
       }
-    });
+    }
+    fileInfos.putAll(cycleFiles);
+    // remake imports
+    fileInfos.values().forEach(fileInfo -> fileInfo.setImports(Sets.newHashSet(getImports(fileInfo))));
   }
 
   @Override
   public void outputLog() {
-    System.out.println("Resolve circle dependencies: " + resolveCount);
+    System.out.println("Resolve circle dependencies: " + resolveCount + ", move structs: " + moveCount);
   }
 
   /**
-   * Check is origin thrift file.
-   * @param fileInfo  proto file info
-   * @return  true if is origin thrift file else false
+   * Resolve a cycle.
+   * @param fileInfos map of file info
+   * @param graph     the import graph
+   * @param files     the files of cycle, the first one is the root of search
+   * @return  the shared file of cycle
    */
-  private static boolean isThriftFile(FileInfo fileInfo) {
-    return !fileInfo.getName().equals(COMMON_FILE) && !fileInfo.getName().equals(ORIGIN_FILE)
-            && !fileInfo.getName().equals(REQUEST_FILE) && !fileInfo.getName().equals(RESPONSE_FILE);
+  private FileInfo resolve(Map<String, FileInfo> fileInfos, Map<String, Set<String>> graph, List<String> files) {
+    Set<String> members = Sets.newHashSet(files);
+    // find back edges
+    SetMultimap<String, String> backEdges = HashMultimap.create();
+    findBackEdges(graph, members, files.get(0), Sets.newHashSet(), Sets.newHashSet(), backEdges);
+    // the structs referenced by back edges
+    Set<String> moves = Sets.newLinkedHashSet();
+    Deque<String> queue = new ArrayDeque<>();
+    Consumer<String> move = structName -> {
+      FileInfo parent = symbols.findFileInfo(structName);
+      if (parent != null && members.contains(parent.getName()) && moves.add(structName)) {
+        queue.add(structName);
+      }
+    };
+    backEdges.forEach((from, to) -> fileInfos.get(from).forEachReference(structName -> {
+      FileInfo parent = symbols.findFileInfo(structName);
+      if (parent != null && parent.getName().equals(to)) {
+        move.accept(structName);
+      }
+    }));
+    // the structs of cycle referenced by moved structs
+    while (!queue.isEmpty()) {
+      String structName = queue.poll();
+      symbols.findFileInfo(structName).getStructInfos().get(structName).forEachReference(move);
+    }
+    // move to shared file in the origin order
+    FileInfo cycleFile = new FileInfo(CYCLE_FILE_PREFIX + files.get(0));
+    files.forEach(file -> {
+      Iterator<StructInfo> iterator = fileInfos.get(file).getStructInfos().values().iterator();
+      while (iterator.hasNext()) {
+        StructInfo structInfo = iterator.next();
+        if (moves.contains(structInfo.getName())) {
+          iterator.remove();
+          symbols.saveStruct(cycleFile, structInfo);
+          moveCount++;
+        }
+      }
+    });
+    return cycleFile;
   }
 
   /**
-   * Add dependency to common file.
-   * @param fileInfos   map of file info
-   * @param structName  dependency struct name
-   * @param sourceFile  struct's parent file
+   * Find back edges by a depth first search in a cycle.
+   * @param graph     the import graph
+   * @param members   the files of cycle
+   * @param file      current file
+   * @param visited   the visited files
+   * @param path      the files of search path
+   * @param backEdges the back edges, key is the importer
    */
-  private void addDependencyToCommon(Map<String, FileInfo> fileInfos, String structName, FileInfo sourceFile) {
-    if (sourceFile == null) {
-      return;
-    }
-    // get and remove from source proto file
-    StructInfo structInfo = sourceFile.getStructInfos().remove(structName);
-    // get the common file
-    FileInfo commonFile = fileInfos.get(COMMON_FILE);
-    // get the map of struct from common file
-    Map<String, StructInfo> structInfos = commonFile.getStructInfos();
-    // put to common file
-    if (structInfo == null) {
-      structInfo = checkNotNull(structInfos.get(structName), structName + " is null.");
-    } else {
-      structInfos.put(structName, structInfo);
-    }
-    // process non-enum
-    if (!structInfo.isEnum()) {
-      // process all field
-      structInfo.getFieldInfos().forEach(fieldInfo -> {
-        addFieldDependencyToCommon(fileInfos, fieldInfo.getFirstType());
-        addFieldDependencyToCommon(fileInfos, fieldInfo.getSecondType());
-      });
+  private static void findBackEdges(
+          Map<String, Set<String>> graph,
+          Set<String> members,
+          String file,
+          Set<String> visited,
+          Set<String> path,
+          SetMultimap<String, String> backEdges
+  ) {
+    visited.add(file);
+    path.add(file);
+    for (String to : graph.get(file)) {
+      if (path.contains(to)) {
+        backEdges.put(file, to);
+      } else if (members.contains(to) && !visited.contains(to)) {
+        findBackEdges(graph, members, to, visited, path, backEdges);
+      }
     }
+    path.remove(file);
   }
 
   /**
-   * Add a field dependency to common file.
-   * @param fileInfos map of file info
-   * @param fieldType field type
+   * Make imports of a file.
+   * @param fileInfo  proto file info
+   * @return  the names of imported files
    */
-  private void addFieldDependencyToCommon(Map<String, FileInfo> fileInfos, FieldType fieldType) {
-    if (fieldType == null) {
-      return;
-    }
-    String type = fieldType.type;
-    Optional.ofNullable(StructInfo.getFileInfo(type)).ifPresent(file -> addDependencyToCommon(fileInfos, type, file));
+  private Set<String> getImports(FileInfo fileInfo) {
+    Set<String> imports = Sets.newLinkedHashSet();
+    fileInfo.forEachReference(structName -> {
+      FileInfo parent = symbols.findFileInfo(structName);
+      if (parent != null && parent != fileInfo) {
+        imports.add(parent.getName());
+      }
+    });
+    return imports;
   }
 }
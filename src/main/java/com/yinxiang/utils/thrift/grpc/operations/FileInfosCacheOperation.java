@@ -0,0 +1,135 @@
+package com.yinxiang.utils.thrift.grpc.operations;
+
+import com.google.common.base.Strings;
+import com.google.common.hash.Funnels;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import com.yinxiang.utils.thrift.grpc.infos.FileInfo;
+import com.yinxiang.utils.thrift.grpc.infos.FileInfosCache;
+import com.yinxiang.utils.thrift.grpc.infos.SymbolTable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Enumeration;
+import java.util.Map;
+
+import static java.lang.Thread.currentThread;
+
+/**
+ * A {@link FilesOperation} which cache the model of the delegate operations in a binary file.
+ * <p>
+ *   The cache file is keyed by a digest of the scanned jars and directions, the package and the scan/skip arguments,
+ *   so the makers of one build share the model which is collected and resolved by the first maker.
+ *   If the cache file is missing or broken, the delegate operations are executed and the cache file is rewritten.
+ * </p>
+ * @author Huiyuan Fu
+ * @since 1.0.0
+ * @see FileInfosCache
+ */
+public class FileInfosCacheOperation implements FilesOperation {
+  /** The direction of cache files. */
+  private final File cacheDir;
+  /** The package of thrift. */
+  private final String packageName;
+  /** The scan class names. */
+  private final String scans;
+  /** The skip class names. */
+  private final String skips;
+  /** The operations which make the model, e.g: collector and resolver. */
+  private final FilesOperations operations;
+  /** The symbol table of structs. */
+  private final SymbolTable symbols;
+
+  /** The cache file of last execute. */
+  private File cacheFile;
+  /** Note if the model is loaded from cache. */
+  private boolean hit;
+
+  public FileInfosCacheOperation(
+          String cacheDir,
+          String packageName,
+          String scans,
+          String skips,
+          FilesOperations operations,
+          SymbolTable symbols
+  ) {
+    this.cacheDir = new File(cacheDir);
+    this.packageName = packageName;
+    this.scans = Strings.nullToEmpty(scans);
+    this.skips = Strings.nullToEmpty(skips);
+    this.operations = operations;
+    this.symbols = symbols;
+  }
+
+  @Override
+  public void execute(Map<String, FileInfo> fileInfos) throws Exception {
+    System.out.print(cacheDir.mkdirs() ? "[mkdir]" : "");
+    cacheFile = new File(cacheDir, "model-" + digest() + ".bin");
+    hit = false;
+    // load from cache
+    if (cacheFile.isFile()) {
+      try {
+        fileInfos.putAll(FileInfosCache.read(cacheFile, symbols));
+        hit = true;
+        return;
+      } catch (IOException e) {
+        System.out.println("Skip cache: " + e.getMessage());
+      }
+    }
+    // make and cache
+    operations.execute(fileInfos);
+    FileInfosCache.write(fileInfos, symbols, cacheFile);
+  }
+
+  @Override
+  public void outputLog() {
+    if (hit) {
+      System.out.println("Load model from cache: " + cacheFile);
+    } else {
+      operations.outputLog();
+      System.out.println("Save model to cache: " + cacheFile);
+    }
+  }
+
+  /**
+   * Make the digest of cache key.
+   * @return  the hex digest
+   * @throws IOException  IOException
+   */
+  private String digest() throws IOException {
+    Hasher hasher = Hashing.sha256().newHasher();
+    hasher.putInt(FileInfosCache.VERSION);
+    // arguments
+    hasher.putString(packageName, StandardCharsets.UTF_8).putChar('\0');
+    hasher.putString(scans, StandardCharsets.UTF_8).putChar('\0');
+    hasher.putString(skips, StandardCharsets.UTF_8).putChar('\0');
+    // scanned resources
+    OutputStream out = Funnels.asOutputStream(hasher);
+    Enumeration<URL> resources = currentThread().getContextClassLoader().getResources(packageName.replace(".", "/"));
+    while (resources.hasMoreElements()) {
+      URL url = resources.nextElement();
+      if (url.getProtocol().equals("file")) { // dir
+        File dir = new File(URLDecoder.decode(url.getFile(), "UTF-8"));
+        for (File file : Files.fileTraverser().depthFirstPreOrder(dir)) {
+          if (file.isFile()) {
+            hasher.putString(dir.toURI().relativize(file.toURI()).getPath(), StandardCharsets.UTF_8).putChar('\0');
+            Files.asByteSource(file).copyTo(out);
+          }
+        }
+      } else if (url.getProtocol().equals("jar")) { // jar
+        URL jarUrl = ((JarURLConnection) url.openConnection()).getJarFileURL();
+        hasher.putString(jarUrl.toString(), StandardCharsets.UTF_8).putChar('\0');
+        if (jarUrl.getProtocol().equals("file")) {
+          Files.asByteSource(new File(URLDecoder.decode(jarUrl.getFile(), "UTF-8"))).copyTo(out);
+        }
+      }
+    }
+    return hasher.hash().toString();
+  }
+}
@@ -1,10 +1,12 @@
 package com.yinxiang.utils.thrift.grpc.operations;
 
 import com.yinxiang.utils.thrift.grpc.infos.FileInfo;
+import com.yinxiang.utils.thrift.grpc.operations.generators.CodeWriter;
+import com.yinxiang.utils.thrift.grpc.utils.FileCommitter;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * Support proto files operation interface.
@@ -39,11 +41,23 @@ public interface FilesOperation extends Operation<Map<String, FileInfo>> {
    * @param path    file path
    * @param name    file name
    * @param content file content
+   * @param files   the committer of file
    */
-  static void createFile(String path, String name, String content) {
+  static void createFile(String path, String name, String content, FileCommitter files) {
+    createFile(path, name, writer -> writer.append(content), files);
+  }
+
+  /**
+   * Create file.
+   * @param path    file path
+   * @param name    file name
+   * @param content the generator of file content
+   * @param files   the committer of file
+   */
+  static void createFile(String path, String name, Consumer<CodeWriter> content, FileCommitter files) {
     try {
       System.out.print(new File(path).mkdirs() ? "[mkdir]" : "");
-      createFile(path + "/" + name + ".java", content);
+      createFile(path + "/" + name + ".java", content, files);
     } catch (Exception e) {
       throw new RuntimeException(e);
     }
@@ -53,14 +67,33 @@ public interface FilesOperation extends Operation<Map<String, FileInfo>> {
    * Create file.
    * @param path    file path (include file name)
    * @param content file content
+   * @param files   the committer of file
    * @throws Exception  exception
    */
-  static void createFile(String path, String content) throws Exception {
+  static void createFile(String path, String content, FileCommitter files) throws Exception {
+    createFile(path, writer -> writer.append(content), files);
+  }
+
+  /**
+   * Create file.
+   * @param path    file path (include file name)
+   * @param content the generator of file content
+   * @param files   the committer of file
+   * @throws Exception  exception
+   */
+  static void createFile(String path, Consumer<CodeWriter> content, FileCommitter files) throws Exception {
     File file = new File(path);
-    System.out.println("File: " + file.getName() + (file.exists() ? "." : ("[" + file.createNewFile() + "].")));
+    String log = "File: " + file.getName() + (file.exists() ? "." : ("[" + file.createNewFile() + "]."));
     // output content
-    try (FileWriter writer = new FileWriter(file)) {
-      writer.append(content);
+    CodeWriter writer = new CodeWriter(file, files);
+    try {
+      content.accept(writer);
+    } catch (RuntimeException e) {
+      writer.abort();
+      throw e;
     }
+    writer.close();
+    // log in one line because files may be created concurrently
+    System.out.println(log + (writer.isWritten() ? "" : "[skip]"));
   }
 }
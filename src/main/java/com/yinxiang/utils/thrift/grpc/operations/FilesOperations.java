@@ -2,6 +2,7 @@ package com.yinxiang.utils.thrift.grpc.operations;
 
 import com.google.common.collect.Lists;
 import com.yinxiang.utils.thrift.grpc.infos.FileInfo;
+import com.yinxiang.utils.thrift.grpc.utils.Metrics;
 
 import java.util.List;
 import java.util.Map;
@@ -50,7 +51,16 @@ public class FilesOperations implements FilesOperation {
   @Override
   public void execute(Map<String, FileInfo> fileInfos) throws Exception {
     for (FilesOperation filesOperation : operations) {
-      filesOperation.execute(fileInfos);
+      // the operations of a composite are recorded separately
+      if (filesOperation instanceof FilesOperations) {
+        filesOperation.execute(fileInfos);
+        continue;
+      }
+      try (Metrics.Phase phase = Metrics.start(filesOperation.getClass().getSimpleName())) {
+        filesOperation.execute(fileInfos);
+        phase.put("files", fileInfos.size());
+        phase.put("structs", fileInfos.values().stream().mapToInt(f -> f.getStructInfos().size()).sum());
+      }
     }
   }
 
@@ -3,19 +3,26 @@ package com.yinxiang.utils.thrift.grpc.operations;
 import com.yinxiang.utils.thrift.grpc.infos.FieldInfo;
 import com.yinxiang.utils.thrift.grpc.infos.FileInfo;
 import com.yinxiang.utils.thrift.grpc.infos.StructInfo;
+import com.yinxiang.utils.thrift.grpc.infos.SymbolTable;
 
 import java.util.List;
 import java.util.Map;
 
 @Deprecated
 public class RefsRecorder implements FilesOperation {
+  private final SymbolTable symbols;
+
+  public RefsRecorder(SymbolTable symbols) {
+    this.symbols = symbols;
+  }
+
   @Override
   public void execute(Map<String, FileInfo> fileInfos) {
     FileInfo originFile = new FileInfo(ORIGIN_FILE);
     originFile.setVersion((byte) 2);
     fileInfos.forEach((fileName, fileInfo) -> {
-      StructInfo fileStruct = originFile.getStructInfos().computeIfAbsent(fileName, StructInfo::new);
-      fileStruct.setFileInfo(fileInfo);
+      StructInfo fileStruct = originFile.getStructInfos().computeIfAbsent(fileName, n -> new StructInfo(symbols, n));
+      symbols.setFileInfo(fileStruct.getName(), fileInfo);
       List<FieldInfo> fieldInfos = fileStruct.getFieldInfos();
       fileInfo.getStructInfos()
               .values()
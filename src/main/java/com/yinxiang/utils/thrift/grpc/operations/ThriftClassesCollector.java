@@ -7,6 +7,8 @@ import com.yinxiang.utils.thrift.grpc.infos.*;
 import com.yinxiang.utils.thrift.grpc.operations.loaders.EnumLoader;
 import com.yinxiang.utils.thrift.grpc.operations.loaders.ServiceLoader;
 import com.yinxiang.utils.thrift.grpc.operations.loaders.StructLoader;
+import com.yinxiang.utils.thrift.grpc.utils.ClassHeader;
+import com.yinxiang.utils.thrift.grpc.utils.Metrics;
 import com.yinxiang.utils.thrift.grpc.utils.ScanUtils;
 
 import java.util.Map;
@@ -32,6 +34,10 @@ public class ThriftClassesCollector implements FilesOperation {
   private final Set<String> scans;
   /** The set of need skip class names. */
   private final Set<String> skips;
+  /** The symbol table of structs. */
+  private final SymbolTable symbols;
+  /** Scan classes in parallel. */
+  private final boolean parallel;
 
   private EnumLoader enumLoader;
   private StructLoader structLoader;
@@ -44,10 +50,16 @@ public class ThriftClassesCollector implements FilesOperation {
   /** The count of enums. */
   private int enumCount;
 
-  public ThriftClassesCollector(String packageName, String scans, String skips) {
+  public ThriftClassesCollector(String packageName, String scans, String skips, SymbolTable symbols) {
+    this(packageName, scans, skips, symbols, false);
+  }
+
+  public ThriftClassesCollector(String packageName, String scans, String skips, SymbolTable symbols, boolean parallel) {
     this.packageName = packageName;
     this.scans = isNullOrEmpty(scans) ? Sets.newHashSet() : Sets.newHashSet(Splitter.on(',').split(scans.trim()));
     this.skips = isNullOrEmpty(skips) ? Sets.newHashSet() : Sets.newHashSet(Splitter.on(',').split(skips.trim()));
+    this.symbols = symbols;
+    this.parallel = parallel;
   }
 
   @Override
@@ -56,23 +68,35 @@ public class ThriftClassesCollector implements FilesOperation {
     FileInfo fileInfo = fileInfos.computeIfAbsent(COMMON_FILE, FileInfo::new);
     fileInfo.setImports(ImmutableSet.of());
     fileInfo.getStructInfos().put(EMPTY.getName(), EMPTY);
-    EMPTY.setFileInfo(fileInfo);
+    symbols.setFileInfo(EMPTY.getName(), fileInfo);
     // create loaders
-    enumLoader = new EnumLoader(name -> fileInfos.computeIfAbsent(name, FileInfo::new));
+    enumLoader = new EnumLoader(name -> fileInfos.computeIfAbsent(name, FileInfo::new), symbols);
     structLoader = new StructLoader(enumLoader);
     rpcLoader = new ServiceLoader(structLoader);
-    // load classes
-    for (Class<?> clz : ScanUtils.scanClass(packageName, this::filterClass)) {
-      if (clz.isInterface()) {
-        rpcLoader.execute(clz);
-        interfaceCount++;
-      } else if (clz.getInterfaces().length > 1) {
-        structLoader.execute(clz);
-        classCount++;
-      } else if (clz.getInterfaces().length > 0) {
-        enumLoader.execute(clz);
-        enumCount++;
+    // scan classes
+    Set<Class<?>> classes;
+    try (Metrics.Phase phase = Metrics.start("scan")) {
+      classes = ScanUtils.scanClass(packageName, this::filterHeader, this::filterClass, parallel);
+      phase.put("classes", classes.size());
+    }
+    // load classes in the scan order, one phase for all loaders and the time of every loader is a value of it
+    long[] nanos = new long[3];
+    try (Metrics.Phase phase = Metrics.start("load")) {
+      for (Class<?> clz : classes) {
+        if (clz.isInterface()) {
+          nanos[0] += load(rpcLoader, clz);
+          interfaceCount++;
+        } else if (clz.getInterfaces().length > 1) {
+          nanos[1] += load(structLoader, clz);
+          classCount++;
+        } else if (clz.getInterfaces().length > 0) {
+          nanos[2] += load(enumLoader, clz);
+          enumCount++;
+        }
       }
+      phase.put("ServiceLoader", interfaceCount).put("ServiceLoaderNanos", nanos[0]);
+      phase.put("StructLoader", classCount).put("StructLoaderNanos", nanos[1]);
+      phase.put("EnumLoader", enumCount).put("EnumLoaderNanos", nanos[2]);
     }
   }
 
@@ -86,6 +110,37 @@ public class ThriftClassesCollector implements FilesOperation {
     rpcLoader.outputLog();
   }
 
+  /**
+   * Load a class and measure the wall time of loader.
+   * @param loader  loader
+   * @param clz     a thrift class
+   * @return  the nanoseconds of loading, 0 if {@link Metrics} is not enabled
+   * @throws Exception  exception
+   */
+  private static long load(Operation<Class<?>> loader, Class<?> clz) throws Exception {
+    if (!Metrics.isEnabled()) {
+      loader.execute(clz);
+      return 0;
+    }
+    long start = System.nanoTime();
+    loader.execute(clz);
+    return System.nanoTime() - start;
+  }
+
+  /**
+   * Check class is need to load by the header of class file, before load the class.
+   * @param header  {@link ClassHeader}
+   * @return  true if is need to load else false
+   */
+  private boolean filterHeader(ClassHeader header) {
+    String name = header.getSimpleName();
+    if (header.isMemberClass() || (scans.size() > 0 && !scans.contains(name)) || skips.contains(name)) {
+      return false;
+    }
+    // service interface, struct or enum
+    return header.isInterface() || header.isThriftStruct() || header.isThriftEnum();
+  }
+
   /**
    * Check class is need to load.
    * @param clz a thrift class
@@ -9,23 +9,28 @@ import com.yinxiang.utils.thrift.grpc.operations.Operation;
 import com.yinxiang.utils.thrift.grpc.infos.FieldInfo;
 import com.yinxiang.utils.thrift.grpc.infos.FileInfo;
 import com.yinxiang.utils.thrift.grpc.infos.StructInfo;
+import com.yinxiang.utils.thrift.grpc.infos.SymbolTable;
 import com.yinxiang.utils.thrift.grpc.operations.FilesOperation;
 import com.yinxiang.utils.thrift.grpc.operations.generators.code.ClassCode;
 import com.yinxiang.utils.thrift.grpc.operations.generators.code.FieldCode;
 import com.yinxiang.utils.thrift.grpc.operations.generators.code.LineCode;
 import com.yinxiang.utils.thrift.grpc.operations.generators.code.MethodCode;
 import com.yinxiang.utils.thrift.grpc.operations.generators.code.java.ClassGenerator;
+import com.yinxiang.utils.thrift.grpc.utils.ConcurrentUtils;
+import com.yinxiang.utils.thrift.grpc.utils.FileCommitter;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 import static com.google.common.base.Preconditions.checkNotNull;
-import static com.yinxiang.utils.thrift.grpc.infos.StructInfo.getStructInfo;
 import static com.yinxiang.utils.thrift.grpc.operations.generators.CodeGenerator.makeToMapCode;
 import static com.yinxiang.utils.thrift.grpc.utils.StringUtils.firstUpper;
-import static com.yinxiang.utils.thrift.grpc.infos.StructInfo.safeGetFileInfo;
 
 /**
  * Base marshaller generator.
@@ -67,6 +72,10 @@ public abstract class AbstractMarshallerGenerator implements FilesOperation {
           new FieldCode(TAB, PSF_MOD, RANGE_TYPE, "BYTE_RANGE = Range.closed(MIN_BYTE, MAX_BYTE)"),
           new FieldCode(TAB, PSF_MOD, RANGE_TYPE, "SHORT_RANGE = Range.closed(MIN_SHORT, MAX_SHORT)")
   );
+  /** The list of base imports of loop mode. */
+  static final ImmutableList<String> LOOP_IMPORTS = IMPORTS.subList(0, 1);
+  /** The list of base fields of loop mode, the checkers compare the bounds without {@code Range}. */
+  static final ImmutableList<FieldCode> LOOP_FIELD_CODES = FIELD_CODES.subList(0, 4);
 
   /** CODE: .build(). */
   public static final String BUILD = ".build()";
@@ -78,22 +87,94 @@ public abstract class AbstractMarshallerGenerator implements FilesOperation {
   final String marshallerPkg;
   /** The package of gRPC. */
   final String grpcPkg;
+  /** The symbol table of structs. */
+  private final SymbolTable symbols;
+  /** The count of threads to generate files. */
+  private final int threads;
+  /** Generate the containers by presized collections and loops instead of streams. */
+  final boolean loop;
+  /** Share the binary between thrift and gRPC instead of copy it, the shared binary must not be modified. */
+  final boolean zeroCopy;
+
+  protected AbstractMarshallerGenerator(String path, String marshallerPkg, String grpcPkg, SymbolTable symbols) {
+    this(path, marshallerPkg, grpcPkg, symbols, 1);
+  }
+
+  protected AbstractMarshallerGenerator(
+          String path,
+          String marshallerPkg,
+          String grpcPkg,
+          SymbolTable symbols,
+          int threads
+  ) {
+    this(path, marshallerPkg, grpcPkg, symbols, threads, false, false);
+  }
 
-  protected AbstractMarshallerGenerator(String path, String marshallerPkg, String grpcPkg) {
+  protected AbstractMarshallerGenerator(
+          String path,
+          String marshallerPkg,
+          String grpcPkg,
+          SymbolTable symbols,
+          int threads,
+          boolean loop,
+          boolean zeroCopy
+  ) {
     this.path = path;
     this.marshallerPkg = marshallerPkg;
     this.grpcPkg = grpcPkg;
+    this.symbols = symbols;
+    this.threads = threads;
+    this.loop = loop;
+    this.zeroCopy = zeroCopy;
+  }
+
+  /**
+   * Get a struct.
+   * @param structName  the name of struct
+   * @return  struct
+   * @see SymbolTable#getStructInfo(String)
+   */
+  protected StructInfo getStructInfo(String structName) {
+    return symbols.getStructInfo(structName);
+  }
+
+  /**
+   * Get the committer of generated files.
+   * @return  the committer of {@link #symbols}
+   */
+  protected FileCommitter getFiles() {
+    return symbols.getFiles();
   }
 
   @Override
   public void execute(Map<String, FileInfo> fileInfos) {
-    fileInfos.forEach((fileName, fileInfo) -> {
-      ClassCode classCode = createClassCode(fileName, fileInfo);
-      String content = CLASS_GENERATOR.generate(new StringBuilder(), classCode).toString();
-      FilesOperation.createFile(path + marshallerPkg, classCode.name, content);
+    ConcurrentUtils.forEach(fileInfos.entrySet(), threads, entry -> {
+      ClassCode classCode = createClassCode(entry.getKey(), entry.getValue());
+      FilesOperation.createFile(path + marshallerPkg, classCode.name,
+              writer -> CLASS_GENERATOR.generate(writer, classCode), symbols.getFiles());
     });
   }
 
+  /**
+   * Create the sources of marshallers in memory instead of files.
+   * @param fileInfos the map of {@link FileInfo}
+   * @return  the map of sources, key is the binary name of class
+   */
+  public Map<String, String> createSources(Map<String, FileInfo> fileInfos) {
+    Map<String, String> sources = new ConcurrentHashMap<>();
+    ConcurrentUtils.forEach(fileInfos.entrySet(), threads, entry -> {
+      ClassCode classCode = createClassCode(entry.getKey(), entry.getValue());
+      StringWriter source = new StringWriter();
+      try (CodeWriter writer = new CodeWriter(source)) {
+        CLASS_GENERATOR.generate(writer, classCode);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      sources.put(classCode.pkg + "." + classCode.name, source.toString());
+    });
+    return sources;
+  }
+
   /**
    * Create a {@link ClassCode} from a proto file.
    * @param fileName  name of proto file
@@ -109,13 +190,14 @@ public abstract class AbstractMarshallerGenerator implements FilesOperation {
             Operation.formatPkg(marshallerPkg)
     );
     // imports
-    classCode.imports.addAll(IMPORTS);
+    classCode.imports.addAll(loop ? LOOP_IMPORTS : IMPORTS);
     // fields
-    classCode.fieldCodes.addAll(FIELD_CODES);
+    classCode.fieldCodes.addAll(loop ? LOOP_FIELD_CODES : FIELD_CODES);
     // methods
     classCode.methodCodes.add(new MethodCode(TAB, "public", "", className));
     classCode.methodCodes.addAll(transform(fileInfo.getStructInfos().values()));
-    createCheckers(classCode.methodCodes::add);
+    createCheckers(classCode.methodCodes::add, loop);
+    createHelpers(classCode.methodCodes::add);
     return classCode;
   }
 
@@ -155,11 +237,155 @@ public abstract class AbstractMarshallerGenerator implements FilesOperation {
    * @return  list of {@link LineCode}
    */
   protected List<LineCode> createLineCode(FieldInfo fieldInfo, int tab) {
+    if (loop && isLoopable(fieldInfo)) {
+      return createLoopLineCode(fieldInfo, tab);
+    }
     String fieldName = firstUpper(fieldInfo.getName()), getter = "arg.get" + fieldName;
+    if (zeroCopy && fieldInfo.getFirstType() == FieldType.BUFFER && fieldInfo.isPublicField()) {
+      return Lists.newArrayList(new LineCode(tab, makeBufferCode(fieldInfo.getName(), fieldName)));
+    }
     String content = "ret." + makeSetter(fieldInfo, fieldName) + "(" + makeGetter(fieldInfo, getter) + ");";
     return Lists.newArrayList(new LineCode(tab, content));
   }
 
+  /**
+   * Make the code which share a {@link FieldType#BUFFER} field without copy, the thrift field is accessed directly
+   * because the getter and setter of thrift copy the binary. Only used for the public fields, the others which are
+   * generated with 'private_members' use the getter and setter.
+   * @param name      field name
+   * @param fieldName field name which first is upper
+   * @return  code
+   */
+  protected abstract String makeBufferCode(String name, String fieldName);
+
+  /**
+   * Create the helper methods which used by the marshaller methods.
+   * @param consumer  helper consumer
+   */
+  protected void createHelpers(Consumer<MethodCode> consumer) {}
+
+  /**
+   * Check a field is it a container which can be generated by loops, the map of list which key or value is a
+   * container is not.
+   * @param fieldInfo field
+   * @return  true if can be generated by loops else false
+   */
+  private boolean isLoopable(FieldInfo fieldInfo) {
+    if (!fieldInfo.isRepeated()) {
+      return false;
+    }
+    if (fieldInfo.getContainerType().thriftType != TType.MAP || fieldInfo.getSecondType() != null) {
+      return true;
+    }
+    StructInfo entry = getStructInfo(fieldInfo.getFirstType().type);
+    return !getFieldByName(entry, "key").isRepeated() && !getFieldByName(entry, "value").isRepeated();
+  }
+
+  /**
+   * Create a list of {@link LineCode} which convert a container field by loops.
+   * @param fieldInfo a container field
+   * @param tab       tab count
+   * @return  list of {@link LineCode}
+   */
+  protected abstract List<LineCode> createLoopLineCode(FieldInfo fieldInfo, int tab);
+
+  /**
+   * Make the conversion code of a container element.
+   * @param type    element type
+   * @param element element code
+   * @return  code
+   */
+  String makeElement(FieldType type, String element) {
+    StructInfo struct = type.type.equals("bytes") ? null : getStructInfo(type.type);
+    if (isContainer(struct)) {
+      String refClassName = struct.getRefThriftType();
+      return refClassName.equals(Map.class.getName()) ?
+              makeMapCode(element, struct, 0) :
+              makeListOrSetCode(element, struct, refClassName.equals(List.class.getName()) ? "List" : "Set");
+    }
+    return makeGetter(type, element);
+  }
+
+  /**
+   * Make the java type of thrift for a field type, primitives are boxed.
+   * @param type  field type
+   * @return  java type
+   */
+  String makeThriftJavaType(FieldType type) {
+    if (type.type.equals("bytes")) {
+      return type == FieldType.BUFFER ? "java.nio.ByteBuffer" : "byte[]";
+    }
+    switch (type.thriftType) {
+      case TType.BOOL:
+        return "Boolean";
+      case TType.BYTE:
+        return "Byte";
+      case TType.I16:
+        return "Short";
+      case TType.I32:
+        return "Integer";
+      case TType.I64:
+        return "Long";
+      case TType.DOUBLE:
+        return "Double";
+      case TType.STRING:
+        return "String";
+      default:
+        StructInfo struct = getStructInfo(type.type);
+        return isContainer(struct) ? makeThriftJavaType(struct.getFieldInfos().get(0)) : struct.getRefThriftType();
+    }
+  }
+
+  /**
+   * Make the java type of thrift for a field.
+   * @param fieldInfo field
+   * @return  java type
+   */
+  String makeThriftJavaType(FieldInfo fieldInfo) {
+    FieldType firstType = fieldInfo.getFirstType();
+    if (!fieldInfo.isRepeated()) {
+      return makeThriftJavaType(firstType);
+    }
+    switch (fieldInfo.getContainerType().thriftType) {
+      case TType.MAP:
+        if (fieldInfo.getSecondType() == null) {
+          StructInfo entry = getStructInfo(firstType.type);
+          return makeMapJavaType(
+                  makeThriftJavaType(getFieldByName(entry, "key")), makeThriftJavaType(getFieldByName(entry, "value")));
+        }
+        return makeMapJavaType(makeThriftJavaType(firstType), makeThriftJavaType(fieldInfo.getSecondType()));
+      case TType.SET:
+        return "java.util.Set<" + makeThriftJavaType(firstType) + ">";
+      default:
+        return "java.util.List<" + makeThriftJavaType(firstType) + ">";
+    }
+  }
+
+  /**
+   * Make the java type of a map.
+   * @param keyType   java type of key
+   * @param valueType java type of value
+   * @return  java type
+   */
+  static String makeMapJavaType(String keyType, String valueType) {
+    return "java.util.Map<" + keyType + ", " + valueType + ">";
+  }
+
+  /**
+   * Check the struct is it a container of list, set or map.
+   * @param struct  struct, maybe null
+   * @return  true if is a container else false
+   */
+  static boolean isContainer(StructInfo struct) {
+    if (struct == null || struct.isEnum()) {
+      return false;
+    }
+    String refClassName = struct.getRefThriftType();
+    return Map.class.getName().equals(refClassName)
+            || List.class.getName().equals(refClassName)
+            || Set.class.getName().equals(refClassName);
+  }
+
   /**
    * Check the struct is it necessary to generate a marshaller method.
    * @param struct  struct
@@ -452,7 +678,7 @@ public abstract class AbstractMarshallerGenerator implements FilesOperation {
    * @return  the marshaller name
    */
   String makeMarshallerName(String structName) {
-    return safeGetFileInfo(structName).getName() + getMarshallerType() + "Marshaller";
+    return symbols.safeGetFileInfo(structName).getName() + getMarshallerType() + "Marshaller";
   }
 
   /**
@@ -461,7 +687,7 @@ public abstract class AbstractMarshallerGenerator implements FilesOperation {
    * @param name        field name
    * @return  {@link FieldInfo}
    */
-  private static FieldInfo getFieldByName(StructInfo structInfo, String name) {
+  static FieldInfo getFieldByName(StructInfo structInfo, String name) {
     Predicate<FieldInfo> filter = field -> field.getName().equals(name);
     return checkNotNull(structInfo.getFieldInfos().stream().filter(filter).findFirst().orElse(null));
   }
@@ -474,16 +700,29 @@ public abstract class AbstractMarshallerGenerator implements FilesOperation {
    * @param consumer  checker consumer
    */
   static void createCheckers(Consumer<MethodCode> consumer) {
+    createCheckers(consumer, false);
+  }
+
+  /**
+   * Create checker method.
+   * @param consumer  checker consumer
+   * @param loop      compare the bounds directly if true else by {@code Range}
+   */
+  static void createCheckers(Consumer<MethodCode> consumer, boolean loop) {
     // checkByte
     MethodCode checkByte = new MethodCode(1, "private static", "byte", "checkByte");
     checkByte.parameters.add(new FieldCode("int", "value"));
-    checkByte.lineCodes.add(new LineCode(2, "Preconditions.checkArgument(BYTE_RANGE.contains(value));"));
+    checkByte.lineCodes.add(new LineCode(2, loop ?
+            "Preconditions.checkArgument(value >= MIN_BYTE && value <= MAX_BYTE);" :
+            "Preconditions.checkArgument(BYTE_RANGE.contains(value));"));
     checkByte.lineCodes.add(new LineCode(2, "return (byte) value;"));
     consumer.accept(checkByte);
     // checkShort
     MethodCode checkShort = new MethodCode(1, "private static", "short", "checkShort");
     checkShort.parameters.add(new FieldCode("int", "value"));
-    checkShort.lineCodes.add(new LineCode(2, "Preconditions.checkArgument(SHORT_RANGE.contains(value));"));
+    checkShort.lineCodes.add(new LineCode(2, loop ?
+            "Preconditions.checkArgument(value >= MIN_SHORT && value <= MAX_SHORT);" :
+            "Preconditions.checkArgument(SHORT_RANGE.contains(value));"));
     checkShort.lineCodes.add(new LineCode(2, "return (short) value;"));
     consumer.accept(checkShort);
     // checkEnum
@@ -13,20 +13,20 @@ public interface CodeGenerator<T> {
   String TO_LIST = makeToCode("List");
 
   /**
-   * Generate code from a {@link T} to {@link StringBuilder}.
-   * @param builder {@link StringBuilder}
+   * Generate code from a {@link T} to {@link CodeWriter}.
+   * @param builder {@link CodeWriter}
    * @param info    code info
    * @return  result
    */
-  StringBuilder generate(StringBuilder builder, T info);
+  CodeWriter generate(CodeWriter builder, T info);
 
   /**
-   * Append some <code>'\t'</code> to {@link StringBuilder}.
-   * @param builder {@link StringBuilder}
+   * Append some <code>'\t'</code> to {@link CodeWriter}.
+   * @param builder {@link CodeWriter}
    * @param tab     tab count
    * @return  result
    */
-  static StringBuilder appendTabs(StringBuilder builder, int tab) {
+  static CodeWriter appendTabs(CodeWriter builder, int tab) {
     for (int i = 0;i < tab;i++) {
       builder.append("\t");
     }
@@ -0,0 +1,184 @@
+package com.yinxiang.utils.thrift.grpc.operations.generators;
+
+import com.yinxiang.utils.thrift.grpc.utils.FileCommitter;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * The streaming code writer of a file, the generators append codes to it instead of a whole file content.
+ * <p>
+ *   The codes are buffered in a pooled char buffer and encoded by UTF-8 to the file when the buffer is full,
+ *   the last {@link #TRIM_LIMIT} chars are kept in buffer to support {@link #trim(int)}.
+ *   If {@link FileCommitter#isSkipUnchanged()}, the codes are written to a temp file and committed by
+ *   {@link FileCommitter#commit(File, File)} when close.
+ * </p>
+ * @author Huiyuan Fu
+ * @since 1.0.0
+ * @see CodeGenerator
+ */
+public class CodeWriter implements Closeable {
+  /** The size of buffer. */
+  private static final int BUFFER_SIZE = 8192;
+  /** The max count of chars which can be trimmed. */
+  private static final int TRIM_LIMIT = 64;
+  /** The pool of buffers, one for each thread. */
+  private static final ThreadLocal<char[]> BUFFERS = new ThreadLocal<>();
+
+  /** The target file, null if the codes are written in memory. */
+  private final File file;
+  /** The committer of {@link #file}, null if the codes are written in memory. */
+  private final FileCommitter files;
+  /** The file which is writing, the temp file or {@link #file}. */
+  private final File writingFile;
+  /** The writer of {@link #writingFile}. */
+  private final Writer writer;
+  /** The buffer. */
+  private char[] buffer;
+  /** The count of chars in buffer. */
+  private int size;
+  /** Note if the file is written, false if skipped. */
+  private boolean written;
+
+  public CodeWriter(File file, FileCommitter files) throws IOException {
+    this(file, files, files.isSkipUnchanged() ? new File(file.getPath() + ".tmp") : file);
+  }
+
+  /**
+   * Create a writer of codes in memory, e.g. a {@link java.io.StringWriter}, it is not committed to any file.
+   * @param writer  the writer of codes
+   */
+  public CodeWriter(Writer writer) {
+    this(null, null, null, writer);
+  }
+
+  private CodeWriter(File file, FileCommitter files, File writingFile) throws IOException {
+    this(file, files, writingFile,
+            new OutputStreamWriter(new FileOutputStream(writingFile), StandardCharsets.UTF_8));
+  }
+
+  private CodeWriter(File file, FileCommitter files, File writingFile, Writer writer) {
+    this.file = file;
+    this.files = files;
+    this.writingFile = writingFile;
+    this.writer = writer;
+    // take a buffer from pool
+    buffer = BUFFERS.get();
+    BUFFERS.remove();
+    if (buffer == null) {
+      buffer = new char[BUFFER_SIZE];
+    }
+  }
+
+  /**
+   * Append a char.
+   * @param c char
+   * @return  this
+   */
+  public CodeWriter append(char c) {
+    if (size == buffer.length) {
+      flush(buffer.length - TRIM_LIMIT);
+    }
+    buffer[size++] = c;
+    return this;
+  }
+
+  /**
+   * Append a string.
+   * @param str string, "null" if null
+   * @return  this
+   */
+  public CodeWriter append(String str) {
+    if (str == null) {
+      str = "null";
+    }
+    for (int begin = 0, length = str.length();begin < length;) {
+      if (size == buffer.length) {
+        flush(buffer.length - TRIM_LIMIT);
+      }
+      int end = Math.min(length, begin + buffer.length - size);
+      str.getChars(begin, end, buffer, size);
+      size += end - begin;
+      begin = end;
+    }
+    return this;
+  }
+
+  /**
+   * Append a int.
+   * @param i int
+   * @return  this
+   */
+  public CodeWriter append(int i) {
+    return append(String.valueOf(i));
+  }
+
+  /**
+   * Remove the last chars, same with <code>builder.setLength(builder.length() - count)</code>.
+   * @param count the count of chars, can not more than {@link #TRIM_LIMIT}
+   * @return  this
+   */
+  public CodeWriter trim(int count) {
+    if (count > size) {
+      throw new IllegalStateException("Can not trim " + count + " chars, only " + size + " chars in buffer.");
+    }
+    size -= count;
+    return this;
+  }
+
+  /**
+   * Write the first chars of buffer to file.
+   * @param count the count of chars
+   */
+  private void flush(int count) {
+    try {
+      writer.write(buffer, 0, count);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    System.arraycopy(buffer, count, buffer, 0, size - count);
+    size -= count;
+  }
+
+  /** @see #written */
+  public boolean isWritten() {
+    return written;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (buffer == null) {
+      return;
+    }
+    try {
+      writer.write(buffer, 0, size);
+    } finally {
+      writer.close();
+      // return the buffer to pool
+      BUFFERS.set(buffer);
+      buffer = null;
+    }
+    written = file == null || files.commit(writingFile, file);
+  }
+
+  /**
+   * Close without commit, the temp file is deleted, or the target file if it is written directly, so no partial
+   * file is left.
+   * @throws IOException  IOException
+   */
+  public void abort() throws IOException {
+    if (buffer == null) {
+      return;
+    }
+    try {
+      writer.close();
+    } finally {
+      BUFFERS.set(buffer);
+      buffer = null;
+      if (writingFile != null) {
+        Files.deleteIfExists(writingFile.toPath());
+      }
+    }
+  }
+}
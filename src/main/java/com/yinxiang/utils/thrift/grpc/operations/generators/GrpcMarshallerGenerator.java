@@ -5,6 +5,7 @@ import com.yinxiang.utils.thrift.grpc.TType;
 import com.yinxiang.utils.thrift.grpc.infos.FieldInfo;
 import com.yinxiang.utils.thrift.grpc.infos.FieldType;
 import com.yinxiang.utils.thrift.grpc.infos.StructInfo;
+import com.yinxiang.utils.thrift.grpc.infos.SymbolTable;
 import com.yinxiang.utils.thrift.grpc.operations.generators.code.LineCode;
 
 import java.util.List;
@@ -13,7 +14,6 @@ import java.util.Optional;
 import static com.yinxiang.utils.thrift.grpc.operations.generators.CodeGenerator.*;
 import static com.yinxiang.utils.thrift.grpc.operations.Operation.formatPkg;
 import static com.yinxiang.utils.thrift.grpc.utils.StringUtils.firstUpper;
-import static com.yinxiang.utils.thrift.grpc.infos.StructInfo.getStructInfo;
 
 /**
  * The gRPC marshaller generator.
@@ -22,8 +22,24 @@ import static com.yinxiang.utils.thrift.grpc.infos.StructInfo.getStructInfo;
  * @see AbstractMarshallerGenerator
  */
 public class GrpcMarshallerGenerator extends AbstractMarshallerGenerator {
-  public GrpcMarshallerGenerator(String path, String marshallerPkg, String pkg) {
-    super(path, marshallerPkg, pkg);
+  public GrpcMarshallerGenerator(String path, String marshallerPkg, String pkg, SymbolTable symbols) {
+    super(path, marshallerPkg, pkg, symbols);
+  }
+
+  public GrpcMarshallerGenerator(String path, String marshallerPkg, String pkg, SymbolTable symbols, int threads) {
+    super(path, marshallerPkg, pkg, symbols, threads);
+  }
+
+  public GrpcMarshallerGenerator(
+          String path,
+          String marshallerPkg,
+          String pkg,
+          SymbolTable symbols,
+          int threads,
+          boolean loop,
+          boolean zeroCopy
+  ) {
+    super(path, marshallerPkg, pkg, symbols, threads, loop, zeroCopy);
   }
 
   @Override
@@ -38,7 +54,42 @@ public class GrpcMarshallerGenerator extends AbstractMarshallerGenerator {
     List<LineCode> list = super.createLineCode(fieldInfo, tab);
     // add check 'isSet' code, because gRPC will throw NullPointerException when set a null value
     ret.add(new LineCode(tab, "if (arg.isSet" + fieldName + "()) {"));
-    ret.add(new LineCode(list.get(0).tab + 1, list.get(0).content));
+    list.forEach(lineCode -> ret.add(new LineCode(lineCode.tab + 1, lineCode.content)));
+    ret.add(new LineCode(tab, "}"));
+    return ret;
+  }
+
+  @Override
+  protected List<LineCode> createLoopLineCode(FieldInfo fieldInfo, int tab) {
+    String fieldName = firstUpper(fieldInfo.getName()), name = adaptGrpcName(fieldName);
+    String getter = "arg.get" + fieldName + "()";
+    FieldType firstType = fieldInfo.getFirstType(), secondType = fieldInfo.getSecondType();
+    List<LineCode> ret = Lists.newArrayList();
+    switch (fieldInfo.getContainerType().thriftType) {
+      case TType.MAP:
+        String entryType = makeThriftJavaType(fieldInfo).replaceFirst("java.util.Map<", "java.util.Map.Entry<");
+        ret.add(new LineCode(tab, "for (" + entryType + " e : " + getter + ".entrySet()) {"));
+        if (secondType == null) { // map to list of entries
+          StructInfo entry = getStructInfo(firstType.type);
+          String key = makeElement(getFieldByName(entry, "key").getFirstType(), "e.getKey()");
+          String value = makeElement(getFieldByName(entry, "value").getFirstType(), "e.getValue()");
+          String entryCode = makeBuilder(firstType.type) + ".setKey(" + key + ").setValue(" + value + ")" + BUILD;
+          ret.add(new LineCode(tab + 1, "ret.add" + name + "(" + entryCode + ");"));
+        } else { // map to map
+          String key = makeElement(firstType, "e.getKey()"), value = makeElement(secondType, "e.getValue()");
+          ret.add(new LineCode(tab + 1, "ret.put" + name + "(" + key + ", " + value + ");"));
+        }
+        break;
+      case TType.LIST:
+        // the element is bound to a local, so the 'is' getter of bool is not applied to it
+        ret.add(new LineCode(tab, "for (int i = 0, n = " + getter + ".size();i < n;i++) {"));
+        ret.add(new LineCode(tab + 1, makeThriftJavaType(firstType) + " e = " + getter + ".get(i);"));
+        ret.add(new LineCode(tab + 1, "ret.add" + name + "(" + makeElement(firstType, "e") + ");"));
+        break;
+      default:
+        ret.add(new LineCode(tab, "for (" + makeThriftJavaType(firstType) + " e : " + getter + ") {"));
+        ret.add(new LineCode(tab + 1, "ret.add" + name + "(" + makeElement(firstType, "e") + ");"));
+    }
     ret.add(new LineCode(tab, "}"));
     return ret;
   }
@@ -182,8 +233,16 @@ public class GrpcMarshallerGenerator extends AbstractMarshallerGenerator {
     }
   }
 
+  @Override
+  protected String makeBufferCode(String name, String fieldName) {
+    return "ret.set" + adaptGrpcName(fieldName) + "(" + makeBytesGetter("arg." + name) + ");";
+  }
+
   @Override
   protected String makeBytesGetter(String getterName) {
+    if (zeroCopy) {
+      return "com.google.protobuf.UnsafeByteOperations.unsafeWrap(" + getterName + ")";
+    }
     return "com.google.protobuf.ByteString.copyFrom(" + getterName + ")";
   }
 }
@@ -1,6 +1,7 @@
 package com.yinxiang.utils.thrift.grpc.operations.generators;
 
 import com.google.common.base.Joiner;
+import com.google.common.collect.Lists;
 import com.yinxiang.utils.thrift.grpc.operations.Operation;
 import com.yinxiang.utils.thrift.grpc.infos.*;
 import com.yinxiang.utils.thrift.grpc.operations.FilesOperation;
@@ -9,9 +10,14 @@ import com.yinxiang.utils.thrift.grpc.operations.generators.code.FieldCode;
 import com.yinxiang.utils.thrift.grpc.operations.generators.code.LineCode;
 import com.yinxiang.utils.thrift.grpc.operations.generators.code.MethodCode;
 import com.yinxiang.utils.thrift.grpc.operations.generators.code.java.ClassGenerator;
+import com.yinxiang.utils.thrift.grpc.utils.ConcurrentUtils;
+import com.yinxiang.utils.thrift.grpc.utils.FileCommitter;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import static com.yinxiang.utils.thrift.grpc.operations.generators.AbstractMarshallerGenerator.*;
@@ -19,6 +25,18 @@ import static com.yinxiang.utils.thrift.grpc.utils.StringUtils.firstUpper;
 
 /**
  * The gRPC service generator.
+ * <p>
+ *   The handlers call the thrift client by the mode, {@link ServiceMode#ASYNC} completes the observer in the callback
+ *   of <code>AsyncIface</code>, so the thread of gRPC is not blocked by the thrift call.
+ *   {@link ServiceMode#VIRTUAL} also generates {@link #BOOTSTRAP} which adds all services to a server builder with
+ *   a virtual-thread-per-task executor of the caller, so the blocking thrift calls only hold the virtual threads.
+ *   The rpc in {@link #singleFlights} shares one thrift call and one response with the concurrent calls of equal
+ *   requests by the generated {@link #SINGLE_FLIGHT}, only for the rpc which can be shared like the reads.
+ *   The responses of the cached rpc in {@link #responseCache} are kept by the generated {@link #RESPONSE_CACHE}.
+ *   If {@link #metrics}, every handler records the latencies of phases (marshal, thrift call, to gRPC, serialize and
+ *   total), the calls in flight and the errors of its rpc to the generated {@link #RPC_METRICS}.
+ *   The helpers which are same in every generation are copied from {@link RuntimeTemplates}.
+ * </p>
  * @author Huiyuan Fu
  * @since 1.0.0
  * @see FilesOperation
@@ -26,6 +44,16 @@ import static com.yinxiang.utils.thrift.grpc.utils.StringUtils.firstUpper;
 public class GrpcServiceGenerator implements FilesOperation {
   /** The default class generator. */
   private static final ClassGenerator CLASS_GENERATOR = new ClassGenerator();
+  /** The name of server bootstrap. */
+  private static final String BOOTSTRAP = "GrpcServices";
+  /** The name of single flight helper. */
+  private static final String SINGLE_FLIGHT = "SingleFlight";
+  /** The name of response cache helper. */
+  private static final String RESPONSE_CACHE = "ResponseCache";
+  /** The method of service which binds the cached responses by their serialized bytes. */
+  private static final String BIND_CACHED_SERVICE = "bindCachedService";
+  /** The name of rpc metrics helper. */
+  private static final String RPC_METRICS = "RpcMetrics";
   /** The base path of service module. */
   private final String servicePath;
   /** The package of gRPC service. */
@@ -34,27 +62,185 @@ public class GrpcServiceGenerator implements FilesOperation {
   private final String stubPkg;
   private final AbstractMarshallerGenerator thriftMarshallerCreator;
   private final GrpcMarshallerGenerator grpcMarshallerCreator;
+  /** The count of threads to generate files. */
+  private final int threads;
+  /** The mode of calling thrift client. */
+  private final ServiceMode mode;
+  /** The rpc which calls are coalesced, <code>[service].[rpc]</code>. */
+  private final Set<String> singleFlights;
+  /** The options of response caches. */
+  private final ResponseCacheOptions responseCache;
+  /** Record the metrics of rpc. */
+  private final boolean metrics;
+  /** The count of single flight rpc. */
+  private int singleFlightCount;
+  /** The count of cached rpc. */
+  private int cachedCount;
+  /** The count of rpc with metrics. */
+  private int metricsCount;
 
   public GrpcServiceGenerator(
           String servicePath, String servicePkg,
           String stubPkg,
           AbstractMarshallerGenerator thriftMarshallerCreator,
           GrpcMarshallerGenerator grpcMarshallerCreator
+  ) {
+    this(servicePath, servicePkg, stubPkg, thriftMarshallerCreator, grpcMarshallerCreator, 1);
+  }
+
+  public GrpcServiceGenerator(
+          String servicePath, String servicePkg,
+          String stubPkg,
+          AbstractMarshallerGenerator thriftMarshallerCreator,
+          GrpcMarshallerGenerator grpcMarshallerCreator,
+          int threads
+  ) {
+    this(servicePath, servicePkg, stubPkg, thriftMarshallerCreator, grpcMarshallerCreator, threads, ServiceMode.SYNC);
+  }
+
+  public GrpcServiceGenerator(
+          String servicePath, String servicePkg,
+          String stubPkg,
+          AbstractMarshallerGenerator thriftMarshallerCreator,
+          GrpcMarshallerGenerator grpcMarshallerCreator,
+          int threads,
+          ServiceMode mode
+  ) {
+    this(servicePath, servicePkg, stubPkg, thriftMarshallerCreator, grpcMarshallerCreator, threads, mode,
+            Collections.emptySet());
+  }
+
+  public GrpcServiceGenerator(
+          String servicePath, String servicePkg,
+          String stubPkg,
+          AbstractMarshallerGenerator thriftMarshallerCreator,
+          GrpcMarshallerGenerator grpcMarshallerCreator,
+          int threads,
+          ServiceMode mode,
+          Set<String> singleFlights
+  ) {
+    this(servicePath, servicePkg, stubPkg, thriftMarshallerCreator, grpcMarshallerCreator, threads, mode,
+            singleFlights, ResponseCacheOptions.NONE);
+  }
+
+  public GrpcServiceGenerator(
+          String servicePath, String servicePkg,
+          String stubPkg,
+          AbstractMarshallerGenerator thriftMarshallerCreator,
+          GrpcMarshallerGenerator grpcMarshallerCreator,
+          int threads,
+          ServiceMode mode,
+          Set<String> singleFlights,
+          ResponseCacheOptions responseCache
+  ) {
+    this(servicePath, servicePkg, stubPkg, thriftMarshallerCreator, grpcMarshallerCreator, threads, mode,
+            singleFlights, responseCache, false);
+  }
+
+  public GrpcServiceGenerator(
+          String servicePath, String servicePkg,
+          String stubPkg,
+          AbstractMarshallerGenerator thriftMarshallerCreator,
+          GrpcMarshallerGenerator grpcMarshallerCreator,
+          int threads,
+          ServiceMode mode,
+          Set<String> singleFlights,
+          ResponseCacheOptions responseCache,
+          boolean metrics
   ) {
     this.servicePath = servicePath;
     this.servicePkg = servicePkg;
     this.stubPkg = stubPkg;
     this.thriftMarshallerCreator = thriftMarshallerCreator;
     this.grpcMarshallerCreator = grpcMarshallerCreator;
+    this.threads = threads;
+    this.mode = mode;
+    this.singleFlights = singleFlights;
+    this.responseCache = responseCache;
+    this.metrics = metrics;
   }
 
   @Override
   public void execute(Map<String, FileInfo> fileInfos) {
-    fileInfos.forEach((fileName, fileInfo) -> fileInfo.getServiceInfos().forEach(serviceInfo -> {
+    // the files are committed by the run context of marshallers
+    FileCommitter files = thriftMarshallerCreator.getFiles();
+    List<ServiceInfo> serviceInfos = fileInfos.values()
+            .stream()
+            .flatMap(fileInfo -> fileInfo.getServiceInfos().stream())
+            .collect(Collectors.toList());
+    // single flight
+    singleFlightCount = (int) serviceInfos.stream()
+            .flatMap(serviceInfo -> serviceInfo.getRpcInfos().stream().map(rpc -> isSingleFlight(serviceInfo, rpc)))
+            .filter(Boolean::booleanValue)
+            .count();
+    if (singleFlightCount > 0) {
+      FilesOperation.createFile(servicePath + servicePkg, SINGLE_FLIGHT,
+              builder -> RuntimeTemplates.append(builder, SINGLE_FLIGHT, Operation.formatPkg(servicePkg)), files);
+    }
+    // response cache
+    cachedCount = (int) serviceInfos.stream()
+            .flatMap(serviceInfo -> serviceInfo.getRpcInfos().stream().map(rpc -> isCached(serviceInfo, rpc)))
+            .filter(Boolean::booleanValue)
+            .count();
+    if (cachedCount > 0) {
+      FilesOperation.createFile(servicePath + servicePkg, RESPONSE_CACHE,
+              builder -> RuntimeTemplates.append(builder, RESPONSE_CACHE, Operation.formatPkg(servicePkg)), files);
+    }
+    // metrics
+    metricsCount = metrics ? serviceInfos.stream().mapToInt(serviceInfo -> serviceInfo.getRpcInfos().size()).sum() : 0;
+    if (metrics) {
+      FilesOperation.createFile(servicePath + servicePkg, RPC_METRICS,
+              builder -> RuntimeTemplates.append(builder, RPC_METRICS, Operation.formatPkg(servicePkg)), files);
+    }
+    ConcurrentUtils.forEach(serviceInfos, threads, serviceInfo -> {
       ClassCode classCode = createClassCode(serviceInfo);
-      String content = CLASS_GENERATOR.generate(new StringBuilder(), classCode).toString();
-      FilesOperation.createFile(servicePath + servicePkg, classCode.name, content);
-    }));
+      FilesOperation.createFile(servicePath + servicePkg, classCode.name,
+              writer -> CLASS_GENERATOR.generate(writer, classCode), files);
+    });
+    // bootstrap
+    if (mode == ServiceMode.VIRTUAL) {
+      ClassCode classCode = createBootstrap(serviceInfos);
+      FilesOperation.createFile(servicePath + servicePkg, classCode.name,
+              writer -> CLASS_GENERATOR.generate(writer, classCode), files);
+    }
+  }
+
+  /**
+   * Create the bootstrap which adds all services to a server builder and runs them on virtual threads.
+   * <p>
+   *   The executor is created by <code>newExecutor()</code> and passed to <code>addServices</code> by the caller, so
+   *   the caller owns it and closes it after the server is terminated.
+   * </p>
+   * @param serviceInfos  all services
+   * @return  {@link ClassCode}
+   */
+  protected ClassCode createBootstrap(List<ServiceInfo> serviceInfos) {
+    ClassCode classCode = new ClassCode("public final", "class", BOOTSTRAP, Operation.formatPkg(servicePkg));
+    classCode.imports.add(Operation.formatPkg(stubPkg) + ".ThriftStub");
+    classCode.methodCodes.add(new MethodCode(TAB, "private", "", BOOTSTRAP));
+    // the executor of virtual threads
+    MethodCode executorCode =
+            new MethodCode(TAB, "public static", "java.util.concurrent.ExecutorService", "newExecutor");
+    executorCode.lineCodes.add(
+            new LineCode(TAB + 1, "return java.util.concurrent.Executors.newVirtualThreadPerTaskExecutor();"));
+    classCode.methodCodes.add(executorCode);
+    // add services
+    MethodCode methodCode =
+            new MethodCode(TAB, "public static <T extends io.grpc.ServerBuilder<T>>", "T", "addServices");
+    methodCode.parameters.add(new FieldCode("T", "builder"));
+    methodCode.parameters.add(new FieldCode("ThriftStub", "stub"));
+    methodCode.parameters.add(new FieldCode("java.util.concurrent.Executor", "executor"));
+    methodCode.lineCodes.add(new LineCode(TAB + 1, "builder.executor(executor);"));
+    for (ServiceInfo serviceInfo : serviceInfos) {
+      String service = "new " + serviceInfo.getName() + "GrpcService(stub)";
+      if (serviceInfo.getRpcInfos().stream().anyMatch(rpcInfo -> isCached(serviceInfo, rpcInfo))) {
+        service += "." + BIND_CACHED_SERVICE + "()";
+      }
+      methodCode.lineCodes.add(new LineCode(TAB + 1, "builder.addService(" + service + ");"));
+    }
+    methodCode.lineCodes.add(new LineCode(TAB + 1, "return builder;"));
+    classCode.methodCodes.add(methodCode);
+    return classCode;
   }
 
   /**
@@ -83,33 +269,102 @@ public class GrpcServiceGenerator implements FilesOperation {
     classCode.fieldCodes.add(new FieldCode(TAB, PF_MOD, "ThriftStub", "stub"));
     String log = "log = org.slf4j.LoggerFactory.getLogger(" + className + ".class)";
     classCode.fieldCodes.add(new FieldCode(TAB, PF_MOD, "org.slf4j.Logger", log));
+    for (RpcInfo rpcInfo : serviceInfo.getRpcInfos()) {
+      if (isSingleFlight(serviceInfo, rpcInfo)) {
+        String type = SINGLE_FLIGHT + "<" + javaPackage + "." + rpcInfo.getRequest().getName() + ", "
+                + javaPackage + "." + rpcInfo.getResponse().getName() + ">";
+        String flight = makeFlightName(rpcInfo) + " = new " + SINGLE_FLIGHT + "<>()";
+        classCode.fieldCodes.add(new FieldCode(TAB, PF_MOD, type, flight));
+      }
+      if (isCached(serviceInfo, rpcInfo)) {
+        String type = RESPONSE_CACHE + "<" + javaPackage + "." + rpcInfo.getRequest().getName() + ", "
+                + javaPackage + "." + rpcInfo.getResponse().getName() + ">";
+        String cache = makeCacheName(rpcInfo) + " = new " + RESPONSE_CACHE + "<>("
+                + responseCache.getMaxSize() + "L, " + responseCache.getTtlSeconds() + "L)";
+        classCode.fieldCodes.add(new FieldCode(TAB, PF_MOD, type, cache));
+      }
+      if (metrics) {
+        classCode.fieldCodes.add(new FieldCode(TAB, PF_MOD, RPC_METRICS + ".Rpc", makeMetricsName(rpcInfo)));
+      }
+    }
     // constructor
     MethodCode constructor = new MethodCode(TAB, "public", "", className);
     constructor.parameters.add(new FieldCode("ThriftStub", "stub"));
-    constructor.lineCodes.add(new LineCode(TAB + 1, "this.stub = stub;"));
+    if (metrics) {
+      constructor.lineCodes.add(new LineCode(TAB + 1, "this(stub, " + RPC_METRICS + ".DEFAULT);"));
+      classCode.methodCodes.add(constructor);
+      // the rpc of metrics are got from the registry
+      constructor = new MethodCode(TAB, "public", "", className);
+      constructor.parameters.add(new FieldCode("ThriftStub", "stub"));
+      constructor.parameters.add(new FieldCode(RPC_METRICS + ".Registry", "registry"));
+      constructor.lineCodes.add(new LineCode(TAB + 1, "this.stub = stub;"));
+      for (RpcInfo rpcInfo : serviceInfo.getRpcInfos()) {
+        constructor.lineCodes.add(new LineCode(TAB + 1, makeMetricsName(rpcInfo) + " = registry.rpc(\""
+                + serviceName + "\", \"" + rpcInfo.getRpc() + "\");"));
+      }
+    } else {
+      constructor.lineCodes.add(new LineCode(TAB + 1, "this.stub = stub;"));
+    }
     classCode.methodCodes.add(constructor);
     // methods
     classCode.methodCodes.addAll(
             serviceInfo.getRpcInfos()
                     .stream()
-                    .map(rpcInfo -> createMethodCode(rpcInfo, serviceName, TAB))
+                    .map(rpcInfo -> createMethodCode(rpcInfo, serviceInfo, TAB))
                     .collect(Collectors.toList())
     );
+    if (metrics) {
+      serviceInfo.getRpcInfos()
+              .stream()
+              .filter(rpcInfo -> !rpcInfo.getRequest().getFieldInfos().isEmpty())
+              .forEach(rpcInfo -> classCode.methodCodes.add(createThriftMethod(rpcInfo, serviceName)));
+    }
+    createBindService(serviceInfo, classCode.methodCodes::add);
     createCheckers(classCode.methodCodes::add);
     return classCode;
   }
 
+  /**
+   * Create the {@code bindCachedService} which sends the cached responses by their serialized bytes, the server
+   * adds it instead of the service because the {@code bindService} of gRPC is final, nothing is created if the
+   * service has no cached rpc.
+   * @param serviceInfo service info
+   * @param consumer    method consumer
+   */
+  private void createBindService(ServiceInfo serviceInfo, Consumer<MethodCode> consumer) {
+    List<RpcInfo> cached = serviceInfo.getRpcInfos()
+            .stream()
+            .filter(rpcInfo -> isCached(serviceInfo, rpcInfo))
+            .collect(Collectors.toList());
+    if (cached.isEmpty()) {
+      return;
+    }
+    MethodCode methodCode = new MethodCode(TAB, "public", "io.grpc.ServerServiceDefinition", BIND_CACHED_SERVICE);
+    methodCode.lineCodes.add(new LineCode(TAB + 1, "return " + RESPONSE_CACHE + ".bind(bindService(), "
+            + "com.google.common.collect.ImmutableMap.<String, " + RESPONSE_CACHE + "<?, ?>>builder()"));
+    cached.forEach(rpcInfo -> methodCode.lineCodes.add(new LineCode(TAB + 3,
+            ".put(\"" + rpcInfo.getRpc() + "\", " + makeCacheName(rpcInfo) + ")")));
+    methodCode.lineCodes.add(new LineCode(TAB + 3, ".build());"));
+    consumer.accept(methodCode);
+  }
+
   /**
    * Create a {@link MethodCode} from a {@link RpcInfo}.
+   * <p>
+   *   The cached rpc returns the response of cache if hit, else puts the response with the version of cache before
+   *   calling thrift, so the response which is called before an invalidation is not cached. The single flight is
+   *   called after the cache, the invalidator clears all caches of service before completed. The metrics of call
+   *   mark the thrift parameters, the thrift call and the gRPC response as the ends of phases.
+   * </p>
    * @param rpcInfo     rpc info
-   * @param serviceName parent service name
+   * @param serviceInfo parent service info
    * @param tab         tab count
    * @return  {@link MethodCode}
    */
-  protected MethodCode createMethodCode(RpcInfo rpcInfo, String serviceName, int tab) {
+  protected MethodCode createMethodCode(RpcInfo rpcInfo, ServiceInfo serviceInfo, int tab) {
     String javaPackage = Operation.formatPkg(thriftMarshallerCreator.grpcPkg);
     // make name
-    String methodName = rpcInfo.getRpc();
+    String methodName = rpcInfo.getRpc(), serviceName = serviceInfo.getName();
     // get request and response
     StructInfo request = rpcInfo.getRequest(), response = rpcInfo.getResponse();
     // create
@@ -117,22 +372,384 @@ public class GrpcServiceGenerator implements FilesOperation {
     methodCode.annotations.add("Override");
     // parameters
     methodCode.parameters.add(new FieldCode(javaPackage + "." + request.getName(), "r"));
-    String type = "io.grpc.stub.StreamObserver<" + javaPackage + "." + response.getName() + ">";
-    methodCode.parameters.add(new FieldCode(type, "o"));
+    String responseType = javaPackage + "." + response.getName();
+    methodCode.parameters.add(new FieldCode("io.grpc.stub.StreamObserver<" + responseType + ">", "o"));
     // body
+    boolean singleFlight = isSingleFlight(serviceInfo, rpcInfo), cached = isCached(serviceInfo, rpcInfo);
+    List<String> invalidations = createInvalidations(serviceInfo, rpcInfo);
+    if (mode == ServiceMode.ASYNC) {
+      createAsyncBody(methodCode, rpcInfo, serviceName, singleFlight, cached, invalidations, tab);
+      return methodCode;
+    }
+    if (metrics) {
+      methodCode.lineCodes.add(new LineCode(tab + 1, makeStartMetrics(rpcInfo)));
+    }
     methodCode.lineCodes.add(new LineCode(tab + 1, "try {"));
-    String call = "stub.get" + serviceName + "()." + methodName + "(" + makeParameters(request) + ")";
-    methodCode.lineCodes.add(new LineCode(tab + 2, makeReturn(response, call) + ";"));
+    String call = makeThriftCall(rpcInfo, serviceName, null);
+    if (cached) {
+      String cache = makeCacheName(rpcInfo);
+      String value = cache + ".put(r, " + makeMarkedValue(response, call) + ", version)";
+      methodCode.lineCodes.add(new LineCode(tab + 2, responseType + " c = " + cache + ".get(r);"));
+      methodCode.lineCodes.add(new LineCode(tab + 2, "if (c == null) {"));
+      methodCode.lineCodes.add(new LineCode(tab + 3, "long version = " + cache + ".version();"));
+      methodCode.lineCodes.add(new LineCode(tab + 3, "c = " + (singleFlight
+              ? makeFlightName(rpcInfo) + ".execute(r, () -> " + value + ");"
+              : value + ";")));
+      methodCode.lineCodes.add(new LineCode(tab + 2, "}"));
+      methodCode.lineCodes.add(new LineCode(tab + 2, "o.onNext(" + mark("waited", "c") + ");"));
+    } else if (!singleFlight) {
+      if (!metrics) {
+        methodCode.lineCodes.add(new LineCode(tab + 2, makeReturn(response, call) + ";"));
+      } else if (response.equals(StructInfo.EMPTY)) {
+        methodCode.lineCodes.add(new LineCode(tab + 2, call + ";"));
+        methodCode.lineCodes.add(new LineCode(tab + 2, "m.called();"));
+        methodCode.lineCodes.add(new LineCode(tab + 2, "o.onNext(m.converted(" + makeBuilder(StructInfo.EMPTY)
+                + BUILD + "));"));
+      } else {
+        methodCode.lineCodes.add(new LineCode(tab + 2, "o.onNext(" + makeMarkedValue(response, call) + ");"));
+      }
+    } else if (response.equals(StructInfo.EMPTY)) {
+      String flight = makeFlightName(rpcInfo) + ".execute(r, () -> {";
+      methodCode.lineCodes.add(new LineCode(tab + 2, "o.onNext(" + (metrics ? "m.waited(" + flight : flight)));
+      methodCode.lineCodes.add(new LineCode(tab + 3, call + ";"));
+      if (metrics) {
+        methodCode.lineCodes.add(new LineCode(tab + 3, "m.called();"));
+      }
+      methodCode.lineCodes.add(new LineCode(tab + 3, "return " + mark("converted",
+              makeBuilder(StructInfo.EMPTY) + BUILD) + ";"));
+      methodCode.lineCodes.add(new LineCode(tab + 2, metrics ? "})));" : "}));"));
+    } else {
+      String value = makeMarkedValue(response, call);
+      String flight = mark("waited", makeFlightName(rpcInfo) + ".execute(r, () -> " + value + ")");
+      methodCode.lineCodes.add(new LineCode(tab + 2, "o.onNext(" + flight + ");"));
+    }
+    if (metrics) {
+      methodCode.lineCodes.add(new LineCode(tab + 2, "m.serialized();"));
+    }
+    invalidations.forEach(line -> methodCode.lineCodes.add(new LineCode(tab + 2, line)));
     methodCode.lineCodes.add(new LineCode(tab + 2, "o.onCompleted();"));
     methodCode.lineCodes.add(new LineCode(tab + 1, "} catch (Exception e) {"));
+    if (metrics) {
+      methodCode.lineCodes.add(new LineCode(tab + 2, "m.failed();"));
+    }
     methodCode.lineCodes.add(new LineCode(tab + 2, "log.warn(\"\", e);"));
     methodCode.lineCodes.add(new LineCode(tab + 2, "o.onError(e);"));
+    if (metrics) {
+      methodCode.lineCodes.add(new LineCode(tab + 1, "} finally {"));
+      methodCode.lineCodes.add(new LineCode(tab + 2, "m.end();"));
+    }
     methodCode.lineCodes.add(new LineCode(tab + 1, "}"));
     return methodCode;
   }
 
+  /**
+   * Create the body which calls the <code>AsyncIface</code> and completes the observer in the callback, the single
+   * flight completes the future of leader in the callback and the observers of all calls are completed by it.
+   * @param methodCode    method code
+   * @param rpcInfo       rpc info
+   * @param serviceName   parent service name
+   * @param singleFlight  coalesce the concurrent calls of equal requests
+   * @param cached        cache the responses
+   * @param invalidations the lines to invalidate the caches of service
+   * @param tab           tab count
+   */
+  private void createAsyncBody(
+          MethodCode methodCode,
+          RpcInfo rpcInfo,
+          String serviceName,
+          boolean singleFlight,
+          boolean cached,
+          List<String> invalidations,
+          int tab
+  ) {
+    StructInfo request = rpcInfo.getRequest(), response = rpcInfo.getResponse();
+    String callback = "new org.apache.thrift.async.AsyncMethodCallback<" + rpcInfo.getReturnType() + ">() {";
+    String call = makeThriftCall(rpcInfo, serviceName, callback);
+    // cache
+    String cache = makeCacheName(rpcInfo);
+    if (metrics) {
+      methodCode.lineCodes.add(new LineCode(tab + 1, makeStartMetrics(rpcInfo)));
+    }
+    if (cached) {
+      String responseType = Operation.formatPkg(thriftMarshallerCreator.grpcPkg) + "." + response.getName();
+      methodCode.lineCodes.add(new LineCode(tab + 1, responseType + " c = " + cache + ".get(r);"));
+      methodCode.lineCodes.add(new LineCode(tab + 1, "if (c != null) {"));
+      methodCode.lineCodes.add(new LineCode(tab + 2, "o.onNext(" + mark("waited", "c") + ");"));
+      if (metrics) {
+        methodCode.lineCodes.add(new LineCode(tab + 2, "m.serialized();"));
+      }
+      methodCode.lineCodes.add(new LineCode(tab + 2, "o.onCompleted();"));
+      if (metrics) {
+        methodCode.lineCodes.add(new LineCode(tab + 2, "m.end();"));
+      }
+      methodCode.lineCodes.add(new LineCode(tab + 2, "return;"));
+      methodCode.lineCodes.add(new LineCode(tab + 1, "}"));
+      methodCode.lineCodes.add(new LineCode(tab + 1, "long version = " + cache + ".version();"));
+    }
+    methodCode.lineCodes.add(new LineCode(tab + 1, "try {"));
+    methodCode.lineCodes.add(
+            new LineCode(tab + 2, (singleFlight ? makeFlightName(rpcInfo) + ".submit(r, f -> " : "") + call));
+    // completed
+    methodCode.lineCodes.add(new LineCode(tab + 3, "@Override"));
+    methodCode.lineCodes.add(new LineCode(tab + 3, "public void onComplete(" + rpcInfo.getReturnType() + " v) {"));
+    methodCode.lineCodes.add(new LineCode(tab + 4, "try {"));
+    if (metrics) {
+      methodCode.lineCodes.add(new LineCode(tab + 5, "m.called();"));
+    }
+    invalidations.forEach(line -> methodCode.lineCodes.add(new LineCode(tab + 5, line)));
+    // the getter of a not struct response appends "()" to the call which does not end with ")"
+    String value = response.equals(StructInfo.EMPTY)
+            ? makeBuilder(StructInfo.EMPTY) + BUILD
+            : makeValue(response, response.getRefInfo() == null ? "(v)" : "v");
+    value = mark("converted", value);
+    if (cached) {
+      value = cache + ".put(r, " + value + ", version)";
+    }
+    if (singleFlight) {
+      methodCode.lineCodes.add(new LineCode(tab + 5, "f.complete(" + value + ");"));
+      methodCode.lineCodes.add(new LineCode(tab + 4, "} catch (Exception e) {"));
+      methodCode.lineCodes.add(new LineCode(tab + 5, "f.completeExceptionally(e);"));
+    } else {
+      methodCode.lineCodes.add(new LineCode(tab + 5, "o.onNext(" + value + ");"));
+      if (metrics) {
+        methodCode.lineCodes.add(new LineCode(tab + 5, "m.serialized();"));
+      }
+      methodCode.lineCodes.add(new LineCode(tab + 5, "o.onCompleted();"));
+      methodCode.lineCodes.add(new LineCode(tab + 4, "} catch (Exception e) {"));
+      createAsyncFailure(methodCode, tab + 5, false);
+      if (metrics) {
+        methodCode.lineCodes.add(new LineCode(tab + 4, "} finally {"));
+        methodCode.lineCodes.add(new LineCode(tab + 5, "m.end();"));
+      }
+    }
+    methodCode.lineCodes.add(new LineCode(tab + 4, "}"));
+    methodCode.lineCodes.add(new LineCode(tab + 3, "}"));
+    methodCode.lineCodes.add(new LineCode(0, ""));
+    // error
+    methodCode.lineCodes.add(new LineCode(tab + 3, "@Override"));
+    methodCode.lineCodes.add(new LineCode(tab + 3, "public void onError(Exception e) {"));
+    if (singleFlight) {
+      methodCode.lineCodes.add(new LineCode(tab + 4, "f.completeExceptionally(e);"));
+    } else {
+      createAsyncFailure(methodCode, tab + 4, true);
+    }
+    methodCode.lineCodes.add(new LineCode(tab + 3, "}"));
+    if (singleFlight) {
+      // complete the observer by the shared future
+      methodCode.lineCodes.add(new LineCode(tab + 2, "})).whenComplete((v, e) -> {"));
+      methodCode.lineCodes.add(new LineCode(tab + 3, "if (e == null) {"));
+      methodCode.lineCodes.add(new LineCode(tab + 4, "o.onNext(" + mark("waited", "v") + ");"));
+      if (metrics) {
+        methodCode.lineCodes.add(new LineCode(tab + 4, "m.serialized();"));
+      }
+      methodCode.lineCodes.add(new LineCode(tab + 4, "o.onCompleted();"));
+      methodCode.lineCodes.add(new LineCode(tab + 3, "} else {"));
+      createAsyncFailure(methodCode, tab + 4, false);
+      methodCode.lineCodes.add(new LineCode(tab + 3, "}"));
+      if (metrics) {
+        methodCode.lineCodes.add(new LineCode(tab + 3, "m.end();"));
+      }
+    }
+    methodCode.lineCodes.add(new LineCode(tab + 2, "});"));
+    // failed to send
+    methodCode.lineCodes.add(new LineCode(tab + 1, "} catch (Exception e) {"));
+    createAsyncFailure(methodCode, tab + 2, true);
+    methodCode.lineCodes.add(new LineCode(tab + 1, "}"));
+  }
+
+  /**
+   * Create the lines which fail the observer of an async call, the metrics count the error.
+   * @param methodCode  method code
+   * @param tab         tab count
+   * @param end         end the metrics of call
+   */
+  private void createAsyncFailure(MethodCode methodCode, int tab, boolean end) {
+    if (metrics) {
+      methodCode.lineCodes.add(new LineCode(tab, "m.failed();"));
+    }
+    methodCode.lineCodes.add(new LineCode(tab, "log.warn(\"\", e);"));
+    methodCode.lineCodes.add(new LineCode(tab, "o.onError(e);"));
+    if (metrics && end) {
+      methodCode.lineCodes.add(new LineCode(tab, "m.end();"));
+    }
+  }
+
   @Override
-  public void outputLog() {}
+  public void outputLog() {
+    if (!singleFlights.isEmpty()) {
+      System.out.println("Single flight rpc: " + singleFlightCount);
+    }
+    if (!responseCache.isEmpty()) {
+      System.out.println("Cached rpc: " + cachedCount);
+    }
+    if (metrics) {
+      System.out.println("Metrics rpc: " + metricsCount);
+    }
+  }
+
+  /**
+   * Check the responses of a rpc are cached, the void rpc is never cached.
+   * @param serviceInfo service info
+   * @param rpcInfo     rpc info
+   * @return  true if it is cached by {@link #responseCache}
+   */
+  private boolean isCached(ServiceInfo serviceInfo, RpcInfo rpcInfo) {
+    return !rpcInfo.getResponse().equals(StructInfo.EMPTY)
+            && responseCache.isCached(serviceInfo.getName() + "." + rpcInfo.getRpc());
+  }
+
+  /**
+   * Create the lines to invalidate all caches of service if the rpc is an invalidator.
+   * @param serviceInfo service info
+   * @param rpcInfo     rpc info
+   * @return  lines, empty if not an invalidator
+   */
+  private List<String> createInvalidations(ServiceInfo serviceInfo, RpcInfo rpcInfo) {
+    if (!responseCache.isInvalidator(serviceInfo.getName() + "." + rpcInfo.getRpc())) {
+      return Collections.emptyList();
+    }
+    return serviceInfo.getRpcInfos()
+            .stream()
+            .filter(rpc -> isCached(serviceInfo, rpc))
+            .map(rpc -> makeCacheName(rpc) + ".invalidate();")
+            .collect(Collectors.toList());
+  }
+
+  /**
+   * Make the field name of response cache.
+   * @param rpcInfo rpc info
+   * @return  field name
+   */
+  private static String makeCacheName(RpcInfo rpcInfo) {
+    return rpcInfo.getRpc() + "Cache";
+  }
+
+  /**
+   * Check the calls of a rpc are coalesced.
+   * @param serviceInfo service info
+   * @param rpcInfo     rpc info
+   * @return  true if it is in {@link #singleFlights}
+   */
+  private boolean isSingleFlight(ServiceInfo serviceInfo, RpcInfo rpcInfo) {
+    return singleFlights.contains(serviceInfo.getName() + "." + rpcInfo.getRpc());
+  }
+
+  /**
+   * Make the field name of single flight.
+   * @param rpcInfo rpc info
+   * @return  field name
+   */
+  private static String makeFlightName(RpcInfo rpcInfo) {
+    return rpcInfo.getRpc() + "Flight";
+  }
+
+  /**
+   * Make the field name of rpc metrics.
+   * @param rpcInfo rpc info
+   * @return  field name
+   */
+  private static String makeMetricsName(RpcInfo rpcInfo) {
+    return rpcInfo.getRpc() + "Metrics";
+  }
+
+  /**
+   * Make the line which starts the metrics of a call.
+   * @param rpcInfo rpc info
+   * @return  code
+   */
+  private static String makeStartMetrics(RpcInfo rpcInfo) {
+    return RPC_METRICS + ".Call m = " + makeMetricsName(rpcInfo) + ".start();";
+  }
+
+  /**
+   * Mark the end of a phase after the code is evaluated if {@link #metrics}.
+   * @param phase the method of <code>RpcMetrics.Call</code>
+   * @param code  code
+   * @return  code
+   */
+  private String mark(String phase, String code) {
+    return metrics ? "m." + phase + "(" + code + ")" : code;
+  }
+
+  /**
+   * Make the thrift call, it calls the thrift method of {@link #createThriftMethod} if the parameters are marked.
+   * @param rpcInfo     rpc info
+   * @param serviceName parent service name
+   * @param callback    the head of async callback, null for sync call
+   * @return  code
+   */
+  private String makeThriftCall(RpcInfo rpcInfo, String serviceName, String callback) {
+    StructInfo request = rpcInfo.getRequest();
+    if (metrics && !request.getFieldInfos().isEmpty()) {
+      return makeThriftName(rpcInfo) + "(r, m" + (callback == null ? ")" : ", " + callback);
+    }
+    String parameters = makeParameters(request);
+    if (callback == null) {
+      return "stub.get" + serviceName + "()." + rpcInfo.getRpc() + "(" + parameters + ")";
+    }
+    return "stub.get" + serviceName + "Async()." + rpcInfo.getRpc()
+            + "(" + (parameters.isEmpty() ? "" : parameters + ",") + callback;
+  }
+
+  /**
+   * Create the method which marshals the parameters into locals before it gets the client of stub, so the marshal
+   * is marked apart from the lease of client which is a part of backend.
+   * @param rpcInfo     rpc info
+   * @param serviceName parent service name
+   * @return  method code
+   */
+  private MethodCode createThriftMethod(RpcInfo rpcInfo, String serviceName) {
+    StructInfo request = rpcInfo.getRequest();
+    boolean async = mode == ServiceMode.ASYNC;
+    boolean returned = !async && !rpcInfo.getResponse().equals(StructInfo.EMPTY);
+    String javaPackage = Operation.formatPkg(thriftMarshallerCreator.grpcPkg);
+    MethodCode methodCode = new MethodCode(TAB, "private", returned ? rpcInfo.getReturnType() : "void",
+            makeThriftName(rpcInfo));
+    methodCode.parameters.add(new FieldCode(javaPackage + "." + request.getName(), "r"));
+    methodCode.parameters.add(new FieldCode(RPC_METRICS + ".Call", "m"));
+    if (async) {
+      methodCode.parameters.add(new FieldCode(
+              "org.apache.thrift.async.AsyncMethodCallback<" + rpcInfo.getReturnType() + ">", "callback"));
+    }
+    methodCode.exceptions.add("Exception");
+    // a struct parameter or the fields of request
+    List<String> values = request.getRefInfo() != null
+            ? Collections.singletonList(thriftMarshallerCreator.makeToType("r", request))
+            : request.getFieldInfos().stream().map(this::makeRequest).collect(Collectors.toList());
+    List<String> types = rpcInfo.getParameterTypes();
+    List<String> parameters = Lists.newArrayList();
+    for (int i = 0;i < values.size();i++) {
+      methodCode.lineCodes.add(new LineCode(TAB + 1, types.get(i) + " a" + i + " = " + values.get(i) + ";"));
+      parameters.add("a" + i);
+    }
+    if (async) {
+      parameters.add("callback");
+    }
+    methodCode.lineCodes.add(new LineCode(TAB + 1, "m.marshaled();"));
+    String call = "stub.get" + serviceName + (async ? "Async()." : "().") + rpcInfo.getRpc()
+            + "(" + Joiner.on(", ").join(parameters) + ")";
+    methodCode.lineCodes.add(new LineCode(TAB + 1, (returned ? "return " : "") + call + ";"));
+    return methodCode;
+  }
+
+  /**
+   * Make the name of the thrift method of rpc.
+   * @param rpcInfo rpc info
+   * @return  name
+   */
+  private static String makeThriftName(RpcInfo rpcInfo) {
+    return "thrift" + firstUpper(rpcInfo.getRpc());
+  }
+
+  /**
+   * Make the gRPC response of a not void thrift call, the call and the response are marked.
+   * @param response  struct for return
+   * @param call      thrift call
+   * @return  code
+   */
+  private String makeMarkedValue(StructInfo response, String call) {
+    return mark("converted", makeValue(response, mark("called", call)));
+  }
 
   /**
    * Make return code.
@@ -145,15 +762,25 @@ public class GrpcServiceGenerator implements FilesOperation {
     if (response.equals(StructInfo.EMPTY)) {
       return call + ";\n\t\t\to.onNext(" + makeBuilder(StructInfo.EMPTY) + BUILD + ")";
     }
+    return "o.onNext(" + makeValue(response, call) + ")";
+  }
+
+  /**
+   * Make the gRPC response of a not void return.
+   * @param response  struct for return
+   * @param call      base code
+   * @return  code
+   */
+  protected String makeValue(StructInfo response, String call) {
     // primitive type
     FieldInfo ref = response.getRefInfo();
     if (ref == null) {
       FieldInfo fieldInfo = response.getFieldInfos().get(0);
       String set = (fieldInfo.isRepeated() ? fieldInfo.isGrpcMap() ? ".putAll" : ".addAll" : ".set");
-      return "o.onNext(" + makeBuilder(response) + set + "Data(" + makeResponse(fieldInfo, call) + ")" + BUILD + ")";
+      return makeBuilder(response) + set + "Data(" + makeResponse(fieldInfo, call) + ")" + BUILD;
     }
     // struct
-    return "o.onNext(" + grpcMarshallerCreator.makeToType(call, response) + ")";
+    return grpcMarshallerCreator.makeToType(call, response);
   }
 
   /**
@@ -0,0 +1,309 @@
+package com.yinxiang.utils.thrift.grpc.operations.generators;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.yinxiang.utils.thrift.grpc.infos.FileInfo;
+import com.yinxiang.utils.thrift.grpc.infos.StructInfo;
+import com.yinxiang.utils.thrift.grpc.infos.SymbolTable;
+import com.yinxiang.utils.thrift.grpc.operations.FilesOperation;
+import com.yinxiang.utils.thrift.grpc.operations.Operation;
+import com.yinxiang.utils.thrift.grpc.operations.generators.code.ClassCode;
+import com.yinxiang.utils.thrift.grpc.operations.generators.code.FieldCode;
+import com.yinxiang.utils.thrift.grpc.operations.generators.code.LineCode;
+import com.yinxiang.utils.thrift.grpc.operations.generators.code.MethodCode;
+import com.yinxiang.utils.thrift.grpc.operations.generators.code.java.ClassGenerator;
+
+import javax.tools.*;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Paths;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkState;
+import static com.yinxiang.utils.thrift.grpc.utils.StringUtils.firstUpper;
+
+/**
+ * The compiler of marshallers at runtime.
+ * <p>
+ *   The sources of {@link ThriftMarshallerGenerator} and {@link GrpcMarshallerGenerator} are created in memory and
+ *   compiled by the system java compiler with the thrift and gRPC classes of a class loader, then the classes are
+ *   defined by a child class loader and registered to {@link Marshallers} by a compiled registry. So the marshallers
+ *   are same with the generated files but no marshaller module need to be generated and compiled, only the registry
+ *   is called by reflection once. It must run by a JDK.
+ * </p>
+ * @author Huiyuan Fu
+ * @since 1.0.0
+ * @see FilesOperation
+ */
+public class MarshallerCompiler implements FilesOperation {
+  /** The class generator. */
+  private static final ClassGenerator CLASS_GENERATOR = new ClassGenerator();
+  /** The name of registry class. */
+  private static final String REGISTRY = "MarshallerRegistry";
+
+  /** The package of gRPC. */
+  private final String grpcPkg;
+  /** The package of compiled marshallers. */
+  private final String pkg;
+  /** The symbol table of structs. */
+  private final SymbolTable symbols;
+  /** The count of threads to create sources. */
+  private final int threads;
+  /** Generate the containers by presized collections and loops instead of streams. */
+  private final boolean loop;
+  /** Share the binary between thrift and gRPC instead of copy it. */
+  private final boolean zeroCopy;
+  /** The class loader of thrift and gRPC classes, the parent of compiled classes. */
+  private final ClassLoader classLoader;
+  /** The compiled marshallers, null before execute. */
+  private Marshallers marshallers;
+  /** The count of compiled classes. */
+  private int classCount;
+
+  public MarshallerCompiler(String grpcPkg, String pkg, SymbolTable symbols, ClassLoader classLoader) {
+    this(grpcPkg, pkg, symbols, 1, false, false, classLoader);
+  }
+
+  public MarshallerCompiler(
+          String grpcPkg,
+          String pkg,
+          SymbolTable symbols,
+          int threads,
+          boolean loop,
+          boolean zeroCopy,
+          ClassLoader classLoader
+  ) {
+    this.grpcPkg = grpcPkg;
+    this.pkg = pkg;
+    this.symbols = symbols;
+    this.threads = threads;
+    this.loop = loop;
+    this.zeroCopy = zeroCopy;
+    this.classLoader = classLoader;
+  }
+
+  @Override
+  public void execute(Map<String, FileInfo> fileInfos) throws Exception {
+    String thriftPkg = pkg + "/thrift", grpcMarshallerPkg = pkg + "/grpc";
+    // step 1: sources
+    AbstractMarshallerGenerator thrift =
+            new ThriftMarshallerGenerator("", thriftPkg, grpcPkg, symbols, threads, loop, zeroCopy);
+    AbstractMarshallerGenerator grpc =
+            new GrpcMarshallerGenerator("", grpcMarshallerPkg, grpcPkg, symbols, threads, loop, zeroCopy);
+    Map<String, String> sources = Maps.newLinkedHashMap();
+    sources.putAll(thrift.createSources(fileInfos));
+    sources.putAll(grpc.createSources(fileInfos));
+    ClassCode registry = createRegistry(fileInfos, thrift, grpc);
+    StringWriter source = new StringWriter();
+    try (CodeWriter writer = new CodeWriter(source)) {
+      CLASS_GENERATOR.generate(writer, registry);
+    }
+    String registryName = registry.pkg + "." + registry.name;
+    sources.put(registryName, source.toString());
+    // step 2: compile
+    Map<String, byte[]> classes = compile(sources);
+    classCount = classes.size();
+    // step 3: register
+    Class<?> registryClass = new MemoryClassLoader(classes, classLoader).loadClass(registryName);
+    Marshallers marshallers = new Marshallers();
+    registryClass.getMethod("register", Marshallers.class).invoke(null, marshallers);
+    this.marshallers = marshallers;
+  }
+
+  /**
+   * Create the registry class which registers the marshallers of all structs, one method for each file so the size
+   * of method is limited.
+   * @param fileInfos the map of {@link FileInfo}
+   * @param thrift    the generator of thrift marshallers
+   * @param grpc      the generator of gRPC marshallers
+   * @return  {@link ClassCode}
+   */
+  private ClassCode createRegistry(
+          Map<String, FileInfo> fileInfos,
+          AbstractMarshallerGenerator thrift,
+          AbstractMarshallerGenerator grpc
+  ) {
+    ClassCode classCode = new ClassCode("public final", "class", REGISTRY, Operation.formatPkg(pkg));
+    classCode.methodCodes.add(new MethodCode(TAB, "private", "", REGISTRY));
+    MethodCode register = new MethodCode(TAB, "public static", "void", "register");
+    register.parameters.add(new FieldCode(Marshallers.class.getName(), "marshallers"));
+    classCode.methodCodes.add(register);
+    String grpcJavaPkg = Operation.formatPkg(grpcPkg);
+    fileInfos.forEach((fileName, fileInfo) -> {
+      String thriftMarshaller = Operation.formatPkg(thrift.marshallerPkg) + "." + fileName + "ThriftMarshaller";
+      String grpcMarshaller = Operation.formatPkg(grpc.marshallerPkg) + "." + fileName + "GrpcMarshaller";
+      MethodCode methodCode = new MethodCode(TAB, "private static", "void", "register" + firstUpper(fileName));
+      methodCode.parameters.add(new FieldCode(Marshallers.class.getName(), "marshallers"));
+      for (StructInfo struct : fileInfo.getStructInfos().values()) {
+        if (!thrift.needMarshaller(struct)) {
+          continue;
+        }
+        String thriftClass = struct.getRefThriftType(), grpcClass = grpcJavaPkg + "." + struct.getName();
+        methodCode.lineCodes.add(new LineCode(TAB + 1, "marshallers.register(" + thriftClass + ".class, " + grpcClass
+                + ".class, " + thriftMarshaller + "::toThrift, " + grpcMarshaller + "::toGrpc);"));
+      }
+      if (!methodCode.lineCodes.isEmpty()) {
+        register.lineCodes.add(new LineCode(TAB + 1, methodCode.name + "(marshallers);"));
+        classCode.methodCodes.add(methodCode);
+      }
+    });
+    return classCode;
+  }
+
+  /**
+   * Compile the sources by the system java compiler.
+   * @param sources the map of sources, key is the binary name of class
+   * @return  the map of class files, key is the binary name of class
+   * @throws IOException  IOException
+   */
+  private Map<String, byte[]> compile(Map<String, String> sources) throws IOException {
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    checkState(compiler != null, "The system java compiler is not found, run by a JDK.");
+    List<JavaFileObject> files = Lists.newArrayListWithCapacity(sources.size());
+    sources.forEach((name, source) -> files.add(new Source(name, source)));
+    Map<String, byte[]> classes = Maps.newConcurrentMap();
+    DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+    List<String> options = Lists.newArrayList("-classpath", makeClassPath(), "-nowarn", "-proc:none");
+    try (JavaFileManager fileManager = new MemoryFileManager(
+            compiler.getStandardFileManager(diagnostics, null, null), classes)) {
+      Boolean success = compiler.getTask(null, fileManager, diagnostics, options, null, files).call();
+      checkState(success, "Compile marshallers failed: " + diagnostics.getDiagnostics());
+    }
+    return classes;
+  }
+
+  /**
+   * Make the class path of compiler, the class path of JVM and the urls of class loaders.
+   * @return  class path
+   */
+  private String makeClassPath() {
+    Set<String> paths = new LinkedHashSet<>();
+    for (ClassLoader loader = classLoader;loader != null;loader = loader.getParent()) {
+      if (loader instanceof URLClassLoader) {
+        for (URL url : ((URLClassLoader) loader).getURLs()) {
+          try {
+            paths.add(Paths.get(url.toURI()).toString());
+          } catch (URISyntaxException | IllegalArgumentException e) { // not a file
+            continue;
+          }
+        }
+      }
+    }
+    paths.add(System.getProperty("java.class.path"));
+    return String.join(File.pathSeparator, paths);
+  }
+
+  /** @see #marshallers */
+  public Marshallers getMarshallers() {
+    checkState(marshallers != null, "The marshallers are not compiled.");
+    return marshallers;
+  }
+
+  @Override
+  public void outputLog() {
+    System.out.println("Compile marshallers: " + (marshallers == null ? 0 : marshallers.size())
+            + ", classes: " + classCount);
+  }
+
+  /**
+   * A source in memory.
+   * @author Huiyuan Fu
+   * @since 1.0.0
+   */
+  private static class Source extends SimpleJavaFileObject {
+    private final String source;
+
+    private Source(String name, String source) {
+      super(URI.create("string:///" + name.replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+      this.source = source;
+    }
+
+    @Override
+    public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+      return source;
+    }
+  }
+
+  /**
+   * A class file in memory, the bytes are put to the map of classes when closed.
+   * @author Huiyuan Fu
+   * @since 1.0.0
+   */
+  private static class ClassFile extends SimpleJavaFileObject {
+    private final String name;
+    private final Map<String, byte[]> classes;
+
+    private ClassFile(String name, Map<String, byte[]> classes) {
+      super(URI.create("bytes:///" + name.replace('.', '/') + Kind.CLASS.extension), Kind.CLASS);
+      this.name = name;
+      this.classes = classes;
+    }
+
+    @Override
+    public OutputStream openOutputStream() {
+      return new ByteArrayOutputStream() {
+        @Override
+        public void close() {
+          classes.put(name, toByteArray());
+        }
+      };
+    }
+  }
+
+  /**
+   * The file manager which writes the class files to memory.
+   * @author Huiyuan Fu
+   * @since 1.0.0
+   */
+  private static class MemoryFileManager extends ForwardingJavaFileManager<JavaFileManager> {
+    private final Map<String, byte[]> classes;
+
+    private MemoryFileManager(JavaFileManager fileManager, Map<String, byte[]> classes) {
+      super(fileManager);
+      this.classes = classes;
+    }
+
+    @Override
+    public JavaFileObject getJavaFileForOutput(
+            Location location,
+            String className,
+            JavaFileObject.Kind kind,
+            FileObject sibling
+    ) {
+      return new ClassFile(className, classes);
+    }
+  }
+
+  /**
+   * The class loader of compiled classes, the other classes are loaded by parent.
+   * @author Huiyuan Fu
+   * @since 1.0.0
+   */
+  private static class MemoryClassLoader extends ClassLoader {
+    private final Map<String, byte[]> classes;
+
+    private MemoryClassLoader(Map<String, byte[]> classes, ClassLoader parent) {
+      super(parent);
+      this.classes = classes;
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+      byte[] bytes = classes.get(name);
+      if (bytes == null) {
+        throw new ClassNotFoundException(name);
+      }
+      return defineClass(name, bytes, 0, bytes.length);
+    }
+  }
+}
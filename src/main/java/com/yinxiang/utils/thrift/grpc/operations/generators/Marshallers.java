@@ -0,0 +1,79 @@
+package com.yinxiang.utils.thrift.grpc.operations.generators;
+
+import com.google.common.collect.Maps;
+
+import java.util.Map;
+import java.util.function.Function;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * The marshallers which are compiled at runtime by {@link MarshallerCompiler}.
+ * <p>
+ *   Every function calls the static method of compiled marshaller directly, get the function once and keep it, so
+ *   the call is same with the generated marshaller after inlined.
+ * </p>
+ * @author Huiyuan Fu
+ * @since 1.0.0
+ * @see MarshallerCompiler
+ */
+public final class Marshallers {
+  /** The marshallers from thrift to gRPC, key is the thrift class. */
+  private final Map<Class<?>, Function<?, ?>> toGrpc = Maps.newHashMap();
+  /** The marshallers from gRPC to thrift, key is the gRPC class. */
+  private final Map<Class<?>, Function<?, ?>> toThrift = Maps.newHashMap();
+
+  /**
+   * Register the marshallers of a struct, it is called by the compiled registry only.
+   * @param thriftClass the thrift class
+   * @param grpcClass   the gRPC class
+   * @param toThrift    the marshaller from gRPC to thrift
+   * @param toGrpc      the marshaller from thrift to gRPC
+   * @param <T>         thrift type
+   * @param <G>         gRPC type
+   */
+  public <T, G> void register(
+          Class<T> thriftClass,
+          Class<G> grpcClass,
+          Function<G, T> toThrift,
+          Function<T, G> toGrpc
+  ) {
+    this.toGrpc.put(thriftClass, toGrpc);
+    this.toThrift.put(grpcClass, toThrift);
+  }
+
+  /**
+   * Get the marshaller from thrift to gRPC.
+   * @param thriftClass the thrift class
+   * @param <T>         thrift type
+   * @param <G>         gRPC type
+   * @return  marshaller
+   */
+  @SuppressWarnings("unchecked")
+  public <T, G> Function<T, G> toGrpc(Class<T> thriftClass) {
+    Function<?, ?> marshaller = toGrpc.get(thriftClass);
+    checkArgument(marshaller != null, "No marshaller of " + thriftClass.getName());
+    return (Function<T, G>) marshaller;
+  }
+
+  /**
+   * Get the marshaller from gRPC to thrift.
+   * @param grpcClass the gRPC class
+   * @param <G>       gRPC type
+   * @param <T>       thrift type
+   * @return  marshaller
+   */
+  @SuppressWarnings("unchecked")
+  public <G, T> Function<G, T> toThrift(Class<G> grpcClass) {
+    Function<?, ?> marshaller = toThrift.get(grpcClass);
+    checkArgument(marshaller != null, "No marshaller of " + grpcClass.getName());
+    return (Function<G, T>) marshaller;
+  }
+
+  /**
+   * @return  the count of structs
+   */
+  public int size() {
+    return toGrpc.size();
+  }
+}
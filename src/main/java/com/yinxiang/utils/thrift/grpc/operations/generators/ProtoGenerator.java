@@ -2,20 +2,33 @@ package com.yinxiang.utils.thrift.grpc.operations.generators;
 
 import com.google.common.base.Joiner;
 import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.yinxiang.utils.thrift.grpc.operations.Operation;
 import com.yinxiang.utils.thrift.grpc.infos.*;
 import com.yinxiang.utils.thrift.grpc.operations.FilesOperation;
+import com.yinxiang.utils.thrift.grpc.utils.ConcurrentUtils;
+import com.yinxiang.utils.thrift.grpc.utils.GraphUtils;
 
 import java.io.File;
-import java.io.FileWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import static com.google.common.base.Preconditions.checkArgument;
 
 /**
  * The gRPC proto generator.
+ * <p>
+ *   If a budget of messages count or estimated descriptor size is set, the file which exceeds the budget is split to
+ *   shards, so protoc and javac work on many small files and the descriptors are initialized separately.
+ * </p>
  * @author Huiyuan Fu
  * @since 1.0.0
  * @see FilesOperation
@@ -25,17 +38,39 @@ public class ProtoGenerator implements FilesOperation {
   private final String path;
   /** The package of gRPC proto. */
   private final String pkg;
+  /** The symbol table of structs. */
+  private final SymbolTable symbols;
+  /** The count of threads to generate files. */
+  private final int threads;
+  /** The max count of messages in one proto file, less than 1 means not limit. */
+  private final int shardMessages;
+  /** The max estimated descriptor size of messages in one proto file, less than 1 means not limit. */
+  private final int shardBytes;
 
-  /** The map of {@link FileInfo}, key is file name. */
+  /** The map of generated {@link FileInfo}, key is file name. */
   private Map<String, FileInfo> fileInfos;
 
-  public ProtoGenerator(String path, String pkg) {
+  public ProtoGenerator(String path, String pkg, SymbolTable symbols) {
+    this(path, pkg, symbols, 1);
+  }
+
+  public ProtoGenerator(String path, String pkg, SymbolTable symbols, int threads) {
+    this(path, pkg, symbols, threads, 0, 0);
+  }
+
+  public ProtoGenerator(String path, String pkg, SymbolTable symbols, int threads, int shardMessages, int shardBytes) {
     this.path = path;
     this.pkg = pkg;
+    this.symbols = symbols;
+    this.threads = threads;
+    this.shardMessages = shardMessages;
+    this.shardBytes = shardBytes;
   }
 
   @Override
-  public void execute(Map<String, FileInfo> fileInfos) throws Exception {
+  public void execute(Map<String, FileInfo> model) throws Exception {
+    // split the large files
+    Map<String, FileInfo> fileInfos = shard(model);
     // check circle dependencies
     fileInfos.forEach((k, v) -> v.getImports().forEach(im -> check(fileInfos, im, k)));
     // make output path
@@ -43,17 +78,25 @@ public class ProtoGenerator implements FilesOperation {
     // mkdir
     System.out.print(new File(outputPath).mkdirs() ? "[mkdir]" : "");
     // generate all proto
-    for (Map.Entry<String, FileInfo> entry : fileInfos.entrySet()) {
-      File file = new File(outputPath, entry.getKey() + ".proto");
-      if (!file.exists()) {
-        System.out.print(file.createNewFile() ? "[create]" : "[override]");
-      }
-      // output content
-      try (FileWriter writer = new FileWriter(file)) {
-        writer.append(generateFile(entry.getValue()));
-        System.out.println("generator proto: " + file.getName());
+    ConcurrentUtils.forEach(fileInfos.entrySet(), threads, entry -> {
+      try {
+        File file = new File(outputPath, entry.getKey() + ".proto");
+        String log = file.exists() ? "" : file.createNewFile() ? "[create]" : "[override]";
+        // output content, the file is only committed if generated
+        CodeWriter writer = new CodeWriter(file, symbols.getFiles());
+        try {
+          generateFile(writer, entry.getValue());
+        } catch (RuntimeException e) {
+          writer.abort();
+          throw e;
+        }
+        writer.close();
+        // log in one line because files may be created concurrently
+        System.out.println(log + "generator proto: " + file.getName() + (writer.isWritten() ? "" : "[skip]"));
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
       }
-    }
+    });
     this.fileInfos = fileInfos;
   }
 
@@ -68,6 +111,148 @@ public class ProtoGenerator implements FilesOperation {
     System.out.println("[" + Joiner.on(',').join(protoList) + "]");
   }
 
+  /**
+   * Split the files which exceed the budget to shards.
+   * <p>
+   *   The structs of a file are grouped by strongly connected components in the depended first order, and packed to
+   *   shards in this order, so a shard only imports the shards before it. The last shard keeps the name of file and
+   *   has the services, others are named with '_shard' + [1,2...]. The imports of all files are remade by shards.
+   * </p>
+   * @param model the map of {@link FileInfo}, it is not changed
+   * @return  the map of {@link FileInfo} to generate
+   */
+  private Map<String, FileInfo> shard(Map<String, FileInfo> model) {
+    if (shardMessages < 1 && shardBytes < 1) {
+      return model;
+    }
+    Map<String, FileInfo> fileInfos = Maps.newLinkedHashMap();
+    Map<String, String> locations = Maps.newHashMap();
+    model.values().forEach(fileInfo -> {
+      Collection<StructInfo> structInfos = fileInfo.getStructInfos().values();
+      int messages = (int) structInfos.stream().filter(ProtoGenerator::isMessage).count();
+      int bytes = structInfos.stream().filter(ProtoGenerator::isMessage).mapToInt(ProtoGenerator::estimateSize).sum();
+      List<FileInfo> shards = isExceeded(messages, bytes) ? split(fileInfo) : split(fileInfo, 1, name -> 0);
+      shards.forEach(shard -> {
+        fileInfos.put(shard.getName(), shard);
+        shard.getStructInfos().keySet().forEach(name -> locations.put(name, shard.getName()));
+      });
+    });
+    // nothing is split
+    if (fileInfos.size() == model.size()) {
+      return model;
+    }
+    // remake imports
+    fileInfos.values().forEach(fileInfo -> {
+      Set<String> imports = Sets.newHashSet();
+      fileInfo.forEachReference(structName -> {
+        String location = locations.get(structName);
+        if (location != null && !location.equals(fileInfo.getName())) {
+          imports.add(location);
+        }
+      });
+      fileInfo.setImports(imports);
+    });
+    return fileInfos;
+  }
+
+  /**
+   * Split a file to shards by budget.
+   * @param fileInfo  proto file info
+   * @return  the shards
+   */
+  private List<FileInfo> split(FileInfo fileInfo) {
+    Map<String, StructInfo> structInfos = fileInfo.getStructInfos();
+    // the graph of structs in this file
+    Map<String, List<String>> graph = Maps.newLinkedHashMap();
+    structInfos.forEach((name, structInfo) -> {
+      List<String> references = Lists.newArrayList();
+      structInfo.forEachReference(references::add);
+      graph.put(name, references);
+    });
+    // pack the components
+    Map<String, Integer> indexes = Maps.newHashMap();
+    int index = 0, messages = 0, bytes = 0;
+    for (Set<String> component : GraphUtils.stronglyConnectedComponents(graph)) {
+      int componentMessages = 0, componentBytes = 0;
+      for (String name : component) {
+        StructInfo structInfo = structInfos.get(name);
+        if (isMessage(structInfo)) {
+          componentMessages++;
+          componentBytes += estimateSize(structInfo);
+        }
+      }
+      if (messages > 0 && isExceeded(messages + componentMessages, bytes + componentBytes)) {
+        index++;
+        messages = 0;
+        bytes = 0;
+      }
+      messages += componentMessages;
+      bytes += componentBytes;
+      for (String name : component) {
+        indexes.put(name, index);
+      }
+    }
+    return split(fileInfo, index + 1, indexes::get);
+  }
+
+  /**
+   * Split a file to shards.
+   * @param fileInfo  proto file info
+   * @param count     the count of shards
+   * @param indexes   the shard index of a struct name
+   * @return  the shards
+   */
+  private static List<FileInfo> split(FileInfo fileInfo, int count, Function<String, Integer> indexes) {
+    List<FileInfo> shards = Lists.newArrayListWithCapacity(count);
+    for (int i = 0;i < count;i++) {
+      FileInfo shard = new FileInfo(i == count - 1 ? fileInfo.getName() : fileInfo.getName() + "_shard" + (i + 1));
+      shard.setVersion(fileInfo.getVersion());
+      shards.add(shard);
+    }
+    // keep the origin order in every shard
+    fileInfo.getStructInfos().forEach((name, struct) -> {
+      shards.get(indexes.apply(name)).getStructInfos().put(name, struct);
+    });
+    shards.get(count - 1).getServiceInfos().addAll(fileInfo.getServiceInfos());
+    return shards;
+  }
+
+  /**
+   * Check the messages exceed the budget.
+   * @param messages  the count of messages
+   * @param bytes     the estimated descriptor size of messages
+   * @return  true if exceeded else false
+   */
+  private boolean isExceeded(int messages, int bytes) {
+    return (shardMessages > 0 && messages > shardMessages) || (shardBytes > 0 && bytes > shardBytes);
+  }
+
+  /**
+   * Estimate the descriptor size of a message, the names of message and fields and types, and some bytes of tags.
+   * @param structInfo  struct info
+   * @return  estimated size
+   */
+  private static int estimateSize(StructInfo structInfo) {
+    int size = structInfo.getName().length() + 4;
+    for (FieldInfo fieldInfo : structInfo.getFieldInfos()) {
+      size += fieldInfo.getName().length() + fieldInfo.getFirstType().type.length() + 8;
+      // map has a nested entry message
+      if (fieldInfo.isGrpcMap()) {
+        size += fieldInfo.getSecondType().type.length() + 32;
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Check a struct will generate a message, byte[] and enum are skipped.
+   * @param structInfo  struct info
+   * @return  true if generate a message else false
+   */
+  private static boolean isMessage(StructInfo structInfo) {
+    return !structInfo.getName().equals("bytes") && !structInfo.isEnum();
+  }
+
   /**
    * Check circle dependencies.
    * @param fileInfos {@link #fileInfos}
@@ -80,12 +265,11 @@ public class ProtoGenerator implements FilesOperation {
 
   /**
    * Generate proto content.
+   * @param builder   a {@link CodeWriter} of proto content
    * @param fileInfo  proto file info
-   * @return  proto content
    */
-  private String generateFile(FileInfo fileInfo) {
-    StringBuilder builder = new StringBuilder("syntax = \"proto");
-    builder.append(fileInfo.getVersion()).append("\";\n\n");
+  private void generateFile(CodeWriter builder, FileInfo fileInfo) {
+    builder.append("syntax = \"proto").append(fileInfo.getVersion()).append("\";\n\n");
     builder.append("import \"google/api/annotations.proto\";\n");
     String importPkg = pkg.substring(pkg.indexOf('/') + 1) + "/";
     fileInfo.getImports().forEach(i -> builder.append("import \"").append(importPkg).append(i).append(".proto\";\n"));
@@ -96,36 +280,35 @@ public class ProtoGenerator implements FilesOperation {
     builder.append("// message count: ").append(fileInfo.getStructInfos().size()).append(";\n\n");
     fileInfo.getServiceInfos().forEach(serviceInfo -> generateService(builder, serviceInfo));
     fileInfo.getStructInfos().forEach((name, structInfo) -> generateStruct(builder, structInfo));
-    builder.setLength(builder.length() - 1);
-    return builder.toString();
+    builder.trim(1);
   }
 
   /**
-   * Append package to a {@link StringBuilder} of proto content.
-   * @param builder a {@link StringBuilder} of proto content
+   * Append package to a {@link CodeWriter} of proto content.
+   * @param builder a {@link CodeWriter} of proto content
    */
-  private void appendPackage(StringBuilder builder) {
+  private void appendPackage(CodeWriter builder) {
     builder.append("option java_package = \"").append(Operation.formatPkg(pkg)).append("\";\n\n");
   }
 
   /**
    * Generate service content.
-   * @param builder     a {@link StringBuilder} of proto content
+   * @param builder     a {@link CodeWriter} of proto content
    * @param serviceInfo service info
    */
-  private void generateService(StringBuilder builder, ServiceInfo serviceInfo) {
+  private void generateService(CodeWriter builder, ServiceInfo serviceInfo) {
     builder.append("service ").append(serviceInfo.getName()).append(" {\n");
     serviceInfo.getRpcInfos().forEach(rpcInfo -> generateRpc(builder, rpcInfo));
-    builder.setLength(builder.length() - 1);
+    builder.trim(1);
     builder.append("}\n\n");
   }
 
   /**
    * Generate rpc method.
-   * @param builder a {@link StringBuilder} of proto content
+   * @param builder a {@link CodeWriter} of proto content
    * @param rpcInfo rpc info
    */
-  private void generateRpc(StringBuilder builder, RpcInfo rpcInfo) {
+  private void generateRpc(CodeWriter builder, RpcInfo rpcInfo) {
     builder.append("\trpc ")
             .append(rpcInfo.getRpc()) // name
             .append(" (")
@@ -139,19 +322,19 @@ public class ProtoGenerator implements FilesOperation {
 
   /**
    * Generate struct.
-   * @param builder     a {@link StringBuilder} of proto content
+   * @param builder     a {@link CodeWriter} of proto content
    * @param structInfo  struct info
    */
-  private void generateStruct(StringBuilder builder, StructInfo structInfo) {
+  private void generateStruct(CodeWriter builder, StructInfo structInfo) {
     // skip byte[] and enum(thrift enum can be negative and repeated name with other enum in same proto)
-    if (structInfo.getName().equals("bytes") || structInfo.isEnum()) {
+    if (!isMessage(structInfo)) {
       return;
     }
     // begin
     builder.append("message ").append(structInfo.getName()).append(" {\n");
     // body
-    for (int i = 0;i < structInfo.getFieldInfos().size();i++) {
-      FieldInfo fieldInfo = structInfo.getFieldInfos().get(i);
+    int index = 0;
+    for (FieldInfo fieldInfo : structInfo.getFieldInfos()) {
       builder.append("\t");
       // proto2 has default value
       String defaultValue = fieldInfo.getDefaultValue();
@@ -167,7 +350,7 @@ public class ProtoGenerator implements FilesOperation {
               .append(" ")
               .append(fieldInfo.getName())
               .append(" = ")
-              .append(i + 1);
+              .append(++index);
       // proto2 has default value
       if (!Strings.isNullOrEmpty(defaultValue)) {
         builder.append(" [default = ").append(defaultValue).append("]");
@@ -183,7 +366,7 @@ public class ProtoGenerator implements FilesOperation {
    * @param className class name
    * @return  proto type
    */
-  private static String getProtoType(String className) {
+  private String getProtoType(String className) {
     switch (className) {
       case "String":
       case "string":
@@ -206,7 +389,7 @@ public class ProtoGenerator implements FilesOperation {
       case "bytes":
         return "bytes";
       default:
-        StructInfo structInfo = StructInfo.getStructInfo(className);
+        StructInfo structInfo = symbols.getStructInfo(className);
         return structInfo != null && structInfo.isEnum() ? "int32" : FilesOperation.getLastDot(className);
     }
   }
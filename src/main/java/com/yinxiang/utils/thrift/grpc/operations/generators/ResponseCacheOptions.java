@@ -0,0 +1,68 @@
+package com.yinxiang.utils.thrift.grpc.operations.generators;
+
+import com.google.common.collect.ImmutableSet;
+
+import java.util.Set;
+
+/**
+ * The options of response caches in generated gRPC services.
+ * <p>
+ *   The rpc is <code>[service].[rpc]</code>, an invalidator clears all caches of its service after it succeeds.
+ * </p>
+ * @author Huiyuan Fu
+ * @since 1.0.0
+ * @see GrpcServiceGenerator
+ */
+public class ResponseCacheOptions {
+  /** No response cache. */
+  public static final ResponseCacheOptions NONE = new ResponseCacheOptions(ImmutableSet.of(), ImmutableSet.of(), 0, 0);
+
+  /** The rpc which responses are cached. */
+  private final Set<String> rpcs;
+  /** The write rpc which invalidates the caches of its service. */
+  private final Set<String> invalidators;
+  /** The max count of responses in one cache. */
+  private final long maxSize;
+  /** The seconds to expire a response after it is cached. */
+  private final long ttlSeconds;
+
+  public ResponseCacheOptions(Set<String> rpcs, Set<String> invalidators, long maxSize, long ttlSeconds) {
+    this.rpcs = ImmutableSet.copyOf(rpcs);
+    this.invalidators = ImmutableSet.copyOf(invalidators);
+    this.maxSize = maxSize;
+    this.ttlSeconds = ttlSeconds;
+  }
+
+  /**
+   * Check the responses of a rpc are cached.
+   * @param rpc <code>[service].[rpc]</code>
+   * @return  true if cached
+   */
+  public boolean isCached(String rpc) {
+    return rpcs.contains(rpc);
+  }
+
+  /**
+   * Check a rpc invalidates the caches of its service.
+   * @param rpc <code>[service].[rpc]</code>
+   * @return  true if invalidates
+   */
+  public boolean isInvalidator(String rpc) {
+    return invalidators.contains(rpc);
+  }
+
+  /** @see #rpcs */
+  public boolean isEmpty() {
+    return rpcs.isEmpty();
+  }
+
+  /** @see #maxSize */
+  public long getMaxSize() {
+    return maxSize;
+  }
+
+  /** @see #ttlSeconds */
+  public long getTtlSeconds() {
+    return ttlSeconds;
+  }
+}
@@ -0,0 +1,70 @@
+package com.yinxiang.utils.thrift.grpc.operations.generators;
+
+import com.google.common.io.Resources;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The templates of the runtime helpers which are same in every generation.
+ * <p>
+ *   The templates are the java sources in the resources of {@link #PACKAGE}, they are copied to the generated sources
+ *   verbatim, only the package and the given tokens are replaced. So the generators only generate the parts of every
+ *   service and rpc, and the helpers are maintained as sources.
+ * </p>
+ * @author Huiyuan Fu
+ * @since 1.0.0
+ */
+final class RuntimeTemplates {
+  /** The package of templates. */
+  static final String PACKAGE = "com.yinxiang.utils.thrift.grpc.runtime";
+  /** The loaded templates, key is the class name. */
+  private static final Map<String, String> TEMPLATES = new ConcurrentHashMap<>();
+
+  private RuntimeTemplates() {
+  }
+
+  /**
+   * Append a template to {@link CodeWriter}.
+   * @param builder {@link CodeWriter}
+   * @param name    the class name of template
+   * @param pkg     the package of generated class
+   */
+  static void append(CodeWriter builder, String name, String pkg) {
+    append(builder, name, pkg, Collections.emptyMap());
+  }
+
+  /**
+   * Append a template to {@link CodeWriter}.
+   * @param builder   {@link CodeWriter}
+   * @param name      the class name of template
+   * @param pkg       the package of generated class
+   * @param replaces  the tokens to replace, key is the token in template
+   */
+  static void append(CodeWriter builder, String name, String pkg, Map<String, String> replaces) {
+    String source = TEMPLATES.computeIfAbsent(name, RuntimeTemplates::load)
+            .replace("package " + PACKAGE + ";", "package " + pkg + ";");
+    for (Map.Entry<String, String> replace : replaces.entrySet()) {
+      source = source.replace(replace.getKey(), replace.getValue());
+    }
+    builder.append(source);
+  }
+
+  /**
+   * Load a template from the resources.
+   * @param name  the class name of template
+   * @return  the source of template
+   */
+  private static String load(String name) {
+    String resource = "/" + PACKAGE.replace('.', '/') + "/" + name + ".java";
+    try {
+      return Resources.toString(Resources.getResource(RuntimeTemplates.class, resource), StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
@@ -0,0 +1,29 @@
+package com.yinxiang.utils.thrift.grpc.operations.generators;
+
+/**
+ * The mode of generated gRPC services, it decides how the thrift client is called.
+ * @author Huiyuan Fu
+ * @since 1.0.0
+ * @see GrpcServiceGenerator
+ * @see ThriftStubGenerator
+ */
+public enum ServiceMode {
+  /** Call the <code>Iface</code> of thrift and block the thread of gRPC until the response. */
+  SYNC,
+  /** Call the <code>AsyncIface</code> of thrift and complete the observer of gRPC in the callback. */
+  ASYNC,
+  /**
+   * Same with {@link #SYNC} but the handlers run on virtual threads, the generated bootstrap sets a
+   * virtual-thread-per-task executor to the server builder, it needs Java 21 to compile and run.
+   */
+  VIRTUAL;
+
+  /**
+   * Parse a mode, ignore case.
+   * @param mode  mode name, null or empty is {@link #SYNC}
+   * @return  {@link ServiceMode}
+   */
+  public static ServiceMode parse(String mode) {
+    return mode == null || mode.isEmpty() ? SYNC : valueOf(mode.trim().toUpperCase());
+  }
+}
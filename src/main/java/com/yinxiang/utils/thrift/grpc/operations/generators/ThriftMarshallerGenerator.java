@@ -1,16 +1,25 @@
 package com.yinxiang.utils.thrift.grpc.operations.generators;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.yinxiang.utils.thrift.grpc.TType;
 import com.yinxiang.utils.thrift.grpc.infos.FieldInfo;
 import com.yinxiang.utils.thrift.grpc.infos.FieldType;
 import com.yinxiang.utils.thrift.grpc.infos.StructInfo;
+import com.yinxiang.utils.thrift.grpc.infos.SymbolTable;
+import com.yinxiang.utils.thrift.grpc.operations.generators.code.FieldCode;
+import com.yinxiang.utils.thrift.grpc.operations.generators.code.LineCode;
+import com.yinxiang.utils.thrift.grpc.operations.generators.code.MethodCode;
 
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
+import static com.yinxiang.utils.thrift.grpc.operations.Operation.formatPkg;
 import static com.yinxiang.utils.thrift.grpc.operations.generators.CodeGenerator.*;
 import static com.yinxiang.utils.thrift.grpc.utils.StringUtils.firstUpper;
-import static com.yinxiang.utils.thrift.grpc.infos.StructInfo.getStructInfo;
 
 /**
  * The thrift marshaller generator.
@@ -19,8 +28,27 @@ import static com.yinxiang.utils.thrift.grpc.infos.StructInfo.getStructInfo;
  * @see AbstractMarshallerGenerator
  */
 public class ThriftMarshallerGenerator extends AbstractMarshallerGenerator {
-  public ThriftMarshallerGenerator(String path, String marshallerPkg, String pkg) {
-    super(path, marshallerPkg, pkg);
+  /** Method: wrap a ByteString to a ByteBuffer without copy. */
+  private static final String WRAP_BYTES = "wrapBytes";
+
+  public ThriftMarshallerGenerator(String path, String marshallerPkg, String pkg, SymbolTable symbols) {
+    super(path, marshallerPkg, pkg, symbols);
+  }
+
+  public ThriftMarshallerGenerator(String path, String marshallerPkg, String pkg, SymbolTable symbols, int threads) {
+    super(path, marshallerPkg, pkg, symbols, threads);
+  }
+
+  public ThriftMarshallerGenerator(
+          String path,
+          String marshallerPkg,
+          String pkg,
+          SymbolTable symbols,
+          int threads,
+          boolean loop,
+          boolean zeroCopy
+  ) {
+    super(path, marshallerPkg, pkg, symbols, threads, loop, zeroCopy);
   }
 
   @Override
@@ -28,6 +56,120 @@ public class ThriftMarshallerGenerator extends AbstractMarshallerGenerator {
     return "Thrift";
   }
 
+  @Override
+  protected List<LineCode> createLoopLineCode(FieldInfo fieldInfo, int tab) {
+    String name = firstUpper(fieldInfo.getName()), grpcName = adaptGrpcName(name);
+    String local = fieldInfo.getName() + "Value", count = "arg.get" + grpcName + "Count()";
+    FieldType firstType = fieldInfo.getFirstType(), secondType = fieldInfo.getSecondType();
+    String type = makeThriftJavaType(fieldInfo), creator, element;
+    List<LineCode> ret = Lists.newArrayList();
+    switch (fieldInfo.getContainerType().thriftType) {
+      case TType.MAP:
+        creator = Maps.class.getName() + ".newHashMapWithExpectedSize(";
+        ret.add(new LineCode(tab, type + " " + local + " = " + creator + count + ");"));
+        if (secondType == null) { // list of entries to map
+          StructInfo entry = getStructInfo(firstType.type);
+          ret.add(new LineCode(tab, "for (int i = 0, n = " + count + ";i < n;i++) {"));
+          String entryType = formatPkg(grpcPkg) + "." + firstType.type;
+          ret.add(new LineCode(tab + 1, entryType + " e = arg.get" + grpcName + "(i);"));
+          firstType = getFieldByName(entry, "key").getFirstType();
+          secondType = getFieldByName(entry, "value").getFirstType();
+        } else { // map to map
+          String entryType = makeMapJavaType(makeGrpcJavaType(firstType), makeGrpcJavaType(secondType));
+          entryType = entryType.replaceFirst("java.util.Map<", "java.util.Map.Entry<");
+          ret.add(new LineCode(tab, "for (" + entryType + " e : arg.get" + grpcName + "Map().entrySet()) {"));
+        }
+        element = makeElement(firstType, "e.getKey()") + ", " + makeElement(secondType, "e.getValue()");
+        ret.add(new LineCode(tab + 1, local + ".put(" + element + ");"));
+        break;
+      default:
+        boolean isList = fieldInfo.getContainerType().thriftType == TType.LIST;
+        creator = isList ? "new java.util.ArrayList<>(" : Sets.class.getName() + ".newHashSetWithExpectedSize(";
+        ret.add(new LineCode(tab, type + " " + local + " = " + creator + count + ");"));
+        ret.add(new LineCode(tab, "for (int i = 0, n = " + count + ";i < n;i++) {"));
+        element = makeElement(firstType, "arg.get" + grpcName + "(i)");
+        ret.add(new LineCode(tab + 1, local + ".add(" + element + ");"));
+    }
+    ret.add(new LineCode(tab, "}"));
+    ret.add(new LineCode(tab, "ret." + makeSetter(fieldInfo, name) + "(" + local + ");"));
+    return ret;
+  }
+
+  @Override
+  String makeElement(FieldType type, String element) {
+    if (type == FieldType.BUFFER) {
+      return zeroCopy ? WRAP_BYTES + "(" + element + ")" : "java.nio.ByteBuffer.wrap(" + element + ".toByteArray())";
+    }
+    return super.makeElement(type, element);
+  }
+
+  @Override
+  protected String makeBufferCode(String name, String fieldName) {
+    return "ret." + name + " = " + WRAP_BYTES + "(arg.get" + adaptGrpcName(fieldName) + "());";
+  }
+
+  /**
+   * Create the helper of binary in zero copy mode, the array of a flat ByteString is shared by a writable ByteBuffer,
+   * because the thrift protocols write a ByteBuffer by its array, {@code ByteString.asReadOnlyByteBuffer} can not
+   * be used. The others, e.g: the rope or direct ByteString, are copied.
+   * @param consumer  helper consumer
+   */
+  @Override
+  protected void createHelpers(Consumer<MethodCode> consumer) {
+    if (!zeroCopy) {
+      return;
+    }
+    MethodCode wrapBytes = new MethodCode(1, "private static", "java.nio.ByteBuffer", WRAP_BYTES);
+    wrapBytes.parameters.add(new FieldCode("com.google.protobuf.ByteString", "bytes"));
+    wrapBytes.lineCodes.add(new LineCode(2, "java.nio.ByteBuffer[] ret = new java.nio.ByteBuffer[1];"));
+    wrapBytes.lineCodes.add(new LineCode(2, "try {"));
+    wrapBytes.lineCodes.add(new LineCode(3, "com.google.protobuf.UnsafeByteOperations.unsafeWriteTo(bytes, "
+            + "new com.google.protobuf.ByteOutput() {"));
+    wrapBytes.lineCodes.add(new LineCode(4, "@Override"));
+    wrapBytes.lineCodes.add(new LineCode(4, "public void writeLazy(byte[] value, int offset, int length) {"));
+    wrapBytes.lineCodes.add(new LineCode(5, "if (length == bytes.size()) {"));
+    wrapBytes.lineCodes.add(new LineCode(6, "ret[0] = java.nio.ByteBuffer.wrap(value, offset, length);"));
+    wrapBytes.lineCodes.add(new LineCode(5, "}"));
+    wrapBytes.lineCodes.add(new LineCode(4, "}"));
+    for (String method : ImmutableList.of("write(byte value)", "write(byte[] value, int offset, int length)",
+            "write(java.nio.ByteBuffer value)", "writeLazy(java.nio.ByteBuffer value)")) {
+      wrapBytes.lineCodes.add(new LineCode(4, "@Override"));
+      wrapBytes.lineCodes.add(new LineCode(4, "public void " + method + " {}"));
+    }
+    wrapBytes.lineCodes.add(new LineCode(3, "});"));
+    wrapBytes.lineCodes.add(new LineCode(2, "} catch (java.io.IOException e) {"));
+    wrapBytes.lineCodes.add(new LineCode(3, "throw new java.io.UncheckedIOException(e);"));
+    wrapBytes.lineCodes.add(new LineCode(2, "}"));
+    wrapBytes.lineCodes.add(
+            new LineCode(2, "return ret[0] == null ? java.nio.ByteBuffer.wrap(bytes.toByteArray()) : ret[0];"));
+    consumer.accept(wrapBytes);
+  }
+
+  /**
+   * Make the java type of gRPC for a field type, primitives are boxed.
+   * @param type  field type
+   * @return  java type
+   */
+  private String makeGrpcJavaType(FieldType type) {
+    if (type.type.equals("bytes")) {
+      return "com.google.protobuf.ByteString";
+    }
+    switch (type.thriftType) {
+      case TType.BOOL:
+        return "Boolean";
+      case TType.BYTE: case TType.I16: case TType.I32: case TType.ENUM:
+        return "Integer";
+      case TType.I64:
+        return "Long";
+      case TType.DOUBLE:
+        return "Double";
+      case TType.STRING:
+        return "String";
+      default:
+        return formatPkg(grpcPkg) + "." + type.type;
+    }
+  }
+
   @Override
   protected String makeReturnType(StructInfo struct, String javaPackage) {
     return struct.getRefThriftType();
@@ -1,47 +1,322 @@
 package com.yinxiang.utils.thrift.grpc.operations.generators;
 
+import com.google.common.collect.Lists;
 import com.yinxiang.utils.thrift.grpc.operations.Operation;
 import com.yinxiang.utils.thrift.grpc.infos.FileInfo;
+import com.yinxiang.utils.thrift.grpc.infos.ServiceInfo;
 import com.yinxiang.utils.thrift.grpc.operations.FilesOperation;
+import com.yinxiang.utils.thrift.grpc.utils.FileCommitter;
 
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.yinxiang.utils.thrift.grpc.utils.StringUtils.firstLower;
 
 /**
  * The thrift stub generator.
+ * <p>
+ *   The getters return the <code>Iface</code> of services, or the <code>AsyncIface</code> if the mode is
+ *   {@link ServiceMode#ASYNC}, they are called by the generated gRPC services.
+ *   If pooled (not supported in the async mode), {@link #POOLED_STUB} implements the stub by the bounded pools of
+ *   thrift clients ({@link #CLIENT_POOL}, copied from {@link RuntimeTemplates}), every call of <code>Iface</code>
+ *   leases a client from the pool of service and returns it after the call, the client is closed if its connection
+ *   may be broken.
+ *   Only the idempotent rpc in {@link #retries} are retried on a new connection.
+ * </p>
  * @author Huiyuan Fu
  * @since 1.0.0
  * @see FilesOperation
  */
 public class ThriftStubGenerator implements FilesOperation {
+  /** The name of pooled stub. */
+  private static final String POOLED_STUB = "PooledThriftStub";
+  /** The name of client pool helper. */
+  private static final String CLIENT_POOL = "ClientPool";
+  /** The framed transport of libthrift before 0.14, it is in {@link #CLIENT_POOL} template. */
+  private static final String FRAMED_TRANSPORT = "org.apache.thrift.transport.TFramedTransport";
+  /** The framed transport of libthrift 0.14 and later. */
+  private static final String LAYERED_FRAMED_TRANSPORT = "org.apache.thrift.transport.layered.TFramedTransport";
   /** The base path of thrift stub. */
   private final String path;
   /** The package of thrift stub. */
   private final String pkg;
+  /** The mode of gRPC services. */
+  private final ServiceMode mode;
+  /** Generate the pooled implementation of stub. */
+  private final boolean pooled;
+  /** The idempotent rpc which the pooled stub retries, <code>[service].[rpc]</code>. */
+  private final Set<String> retries;
+  /** The committer of generated files. */
+  private final FileCommitter files;
 
   public ThriftStubGenerator(String path, String pkg) {
+    this(path, pkg, ServiceMode.SYNC);
+  }
+
+  public ThriftStubGenerator(String path, String pkg, ServiceMode mode) {
+    this(path, pkg, mode, false);
+  }
+
+  public ThriftStubGenerator(String path, String pkg, ServiceMode mode, boolean pooled) {
+    this(path, pkg, mode, pooled, new FileCommitter(false));
+  }
+
+  public ThriftStubGenerator(String path, String pkg, ServiceMode mode, boolean pooled, FileCommitter files) {
+    this(path, pkg, mode, pooled, Collections.emptySet(), files);
+  }
+
+  public ThriftStubGenerator(
+          String path, String pkg, ServiceMode mode, boolean pooled, Set<String> retries, FileCommitter files) {
+    // the async clients are not pooled, fail instead of generating an unpooled stub silently
+    checkArgument(!pooled || mode != ServiceMode.ASYNC, "The pooled stub is not supported in the async mode.");
     this.path = path;
     this.pkg = pkg;
+    this.mode = mode;
+    this.pooled = pooled;
+    this.retries = retries;
+    this.files = files;
   }
 
   @Override
   public void execute(Map<String, FileInfo> fileInfos) {
-    StringBuilder builder = new StringBuilder("package ");
-    builder.append(Operation.formatPkg(pkg)).append(";\n\n");
-    builder.append("public interface ThriftStub {\n");
-    // methods
-    fileInfos.forEach((fileName, fileInfo) -> fileInfo.getServiceInfos().forEach(serviceInfo -> {
-      builder.append("\t")
-              .append(serviceInfo.getClz().getName())
-              .append(" get")
-              .append(serviceInfo.getName())
-              .append("() throws Exception;\n\n");
-    }));
-    // end
-    builder.setLength(builder.length() - 1);
+    FilesOperation.createFile(path + pkg, "ThriftStub", builder -> {
+      builder.append("package ").append(Operation.formatPkg(pkg)).append(";\n\n");
+      builder.append("public interface ThriftStub {\n");
+      // methods
+      fileInfos.forEach((fileName, fileInfo) -> fileInfo.getServiceInfos().forEach(serviceInfo -> {
+        if (mode == ServiceMode.ASYNC) {
+          builder.append("\t")
+                  .append(makeAsyncIface(serviceInfo))
+                  .append(" get")
+                  .append(serviceInfo.getName())
+                  .append("Async() throws Exception;\n\n");
+          return;
+        }
+        builder.append("\t")
+                .append(serviceInfo.getClz().getName())
+                .append(" get")
+                .append(serviceInfo.getName())
+                .append("() throws Exception;\n\n");
+      }));
+      // end
+      builder.trim(1);
+      builder.append("}");
+    }, files);
+    // pooled
+    if (pooled) {
+      List<ServiceInfo> serviceInfos = fileInfos.values()
+              .stream()
+              .flatMap(fileInfo -> fileInfo.getServiceInfos().stream())
+              .collect(Collectors.toList());
+      Map<String, String> replaces = Collections.singletonMap(FRAMED_TRANSPORT, findFramedTransport(serviceInfos));
+      FilesOperation.createFile(path + pkg, CLIENT_POOL,
+              builder -> RuntimeTemplates.append(builder, CLIENT_POOL, Operation.formatPkg(pkg), replaces), files);
+      FilesOperation.createFile(path + pkg, POOLED_STUB, builder -> createPooledStub(builder, serviceInfos), files);
+    }
+  }
+
+  /**
+   * Create the pooled stub, it is built by a builder which configures the pool of every service.
+   * @param builder       {@link CodeWriter}
+   * @param serviceInfos  all services
+   */
+  private void createPooledStub(CodeWriter builder, List<ServiceInfo> serviceInfos) {
+    builder.append("package ").append(Operation.formatPkg(pkg)).append(";\n\n");
+    builder.append("import java.util.Map;\n");
+    builder.append("import java.util.LinkedHashMap;\n\n");
+    builder.append("public final class ").append(POOLED_STUB).append(" implements ThriftStub, AutoCloseable {\n");
+    // fields
+    for (ServiceInfo serviceInfo : serviceInfos) {
+      String iface = serviceInfo.getClz().getName(), field = firstLower(serviceInfo.getName());
+      builder.append("\tprivate final ").append(CLIENT_POOL).append("<").append(iface).append("> ")
+              .append(field).append(";\n");
+      builder.append("\tprivate final ").append(iface).append(" ").append(field).append("Client;\n");
+    }
+    builder.append("\n");
+    // constructor
+    builder.append("\tprivate ").append(POOLED_STUB).append("(Builder builder) {\n");
+    for (ServiceInfo serviceInfo : serviceInfos) {
+      String field = firstLower(serviceInfo.getName());
+      builder.append("\t\t").append(field).append(" = builder.").append(field).append(";\n");
+      builder.append("\t\t").append(field).append("Client = ").append(field).append(" == null ? null : new ")
+              .append(serviceInfo.getName()).append("Client(").append(field).append(");\n");
+    }
+    builder.append("\t}\n\n");
+    builder.append("\tpublic static Builder builder() {\n");
+    builder.append("\t\treturn new Builder();\n");
+    builder.append("\t}\n\n");
+    // getters
+    for (ServiceInfo serviceInfo : serviceInfos) {
+      String iface = serviceInfo.getClz().getName(), field = firstLower(serviceInfo.getName());
+      builder.append("\t@Override\n");
+      builder.append("\tpublic ").append(iface).append(" get").append(serviceInfo.getName()).append("() {\n");
+      builder.append("\t\tif (").append(field).append("Client == null) {\n");
+      builder.append("\t\t\tthrow new IllegalStateException(\"").append(serviceInfo.getName())
+              .append(" is not configured.\");\n");
+      builder.append("\t\t}\n");
+      builder.append("\t\treturn ").append(field).append("Client;\n");
+      builder.append("\t}\n\n");
+    }
+    // pools
+    builder.append("\tpublic Map<String, ").append(CLIENT_POOL).append("<?>> getPools() {\n");
+    builder.append("\t\tMap<String, ").append(CLIENT_POOL).append("<?>> pools = new LinkedHashMap<>();\n");
+    for (ServiceInfo serviceInfo : serviceInfos) {
+      String field = firstLower(serviceInfo.getName());
+      builder.append("\t\tif (").append(field).append(" != null) {\n");
+      builder.append("\t\t\tpools.put(\"").append(serviceInfo.getName()).append("\", ").append(field).append(");\n");
+      builder.append("\t\t}\n");
+    }
+    builder.append("\t\treturn pools;\n");
+    builder.append("\t}\n\n");
+    builder.append("\t@Override\n");
+    builder.append("\tpublic void close() {\n");
+    builder.append("\t\tgetPools().values().forEach(").append(CLIENT_POOL).append("::close);\n");
+    builder.append("\t}\n\n");
+    // builder
+    builder.append("\tpublic static final class Builder {\n");
+    for (ServiceInfo serviceInfo : serviceInfos) {
+      String iface = serviceInfo.getClz().getName(), field = firstLower(serviceInfo.getName());
+      builder.append("\t\tprivate ").append(CLIENT_POOL).append("<").append(iface).append("> ")
+              .append(field).append(";\n");
+    }
+    builder.append("\n");
+    for (ServiceInfo serviceInfo : serviceInfos) {
+      String iface = serviceInfo.getClz().getName(), field = firstLower(serviceInfo.getName());
+      builder.append("\t\tpublic Builder ").append(field).append("(").append(CLIENT_POOL).append(".Options options, ")
+              .append(CLIENT_POOL).append(".Factory<").append(iface).append("> factory) {\n");
+      builder.append("\t\t\t").append(field).append(" = new ").append(CLIENT_POOL)
+              .append("<>(\"").append(serviceInfo.getName()).append("\", options, factory);\n");
+      builder.append("\t\t\treturn this;\n");
+      builder.append("\t\t}\n\n");
+    }
+    builder.append("\t\tpublic ").append(POOLED_STUB).append(" build() {\n");
+    builder.append("\t\t\treturn new ").append(POOLED_STUB).append("(this);\n");
+    builder.append("\t\t}\n");
+    builder.append("\t}\n");
+    // clients
+    for (ServiceInfo serviceInfo : serviceInfos) {
+      appendPooledClient(builder, serviceInfo);
+    }
     builder.append("}");
-    FilesOperation.createFile(path + pkg, "ThriftStub", builder.toString());
+  }
+
+  /**
+   * Append the client of a service which leases a client from the pool for every call.
+   * @param builder     {@link CodeWriter}
+   * @param serviceInfo service info
+   */
+  private void appendPooledClient(CodeWriter builder, ServiceInfo serviceInfo) {
+    String iface = serviceInfo.getClz().getName(), client = serviceInfo.getName() + "Client";
+    builder.append("\n\tprivate static final class ").append(client).append(" implements ").append(iface)
+            .append(" {\n");
+    builder.append("\t\tprivate final ").append(CLIENT_POOL).append("<").append(iface).append("> pool;\n\n");
+    builder.append("\t\tprivate ").append(client).append("(").append(CLIENT_POOL).append("<").append(iface)
+            .append("> pool) {\n");
+    builder.append("\t\t\tthis.pool = pool;\n");
+    builder.append("\t\t}\n");
+    List<Method> methods = Arrays.asList(serviceInfo.getClz().getMethods());
+    methods.sort(Comparator.comparing(Method::getName));
+    for (Method method : methods) {
+      String returnType = makeTypeName(method.getGenericReturnType());
+      boolean isVoid = method.getReturnType() == void.class;
+      // signature
+      Type[] parameters = method.getGenericParameterTypes();
+      List<String> declares = Lists.newArrayListWithCapacity(parameters.length);
+      List<String> arguments = Lists.newArrayListWithCapacity(parameters.length);
+      for (int i = 0;i < parameters.length;i++) {
+        declares.add(makeTypeName(parameters[i]) + " p" + i);
+        arguments.add("p" + i);
+      }
+      builder.append("\n\t\t@Override\n");
+      builder.append("\t\tpublic ").append(returnType).append(" ").append(method.getName()).append("(")
+              .append(String.join(", ", declares)).append(")");
+      Type[] exceptions = method.getGenericExceptionTypes();
+      if (exceptions.length > 0) {
+        builder.append(" throws ").append(Arrays.stream(exceptions)
+                .map(ThriftStubGenerator::makeTypeName)
+                .collect(Collectors.joining(", ")));
+      }
+      builder.append(" {\n");
+      // lease, call and return by the pool
+      String call = "c." + method.getName() + "(" + String.join(", ", arguments) + ")";
+      String poolCall = retries.contains(serviceInfo.getName() + "." + method.getName())
+              ? "pool.callIdempotent(c -> " : "pool.call(c -> ";
+      builder.append("\t\t\t").append(isVoid ? poolCall + "{\n" : "return " + poolCall + call + ");\n");
+      if (isVoid) {
+        builder.append("\t\t\t\t").append(call).append(";\n");
+        builder.append("\t\t\t\treturn null;\n");
+        builder.append("\t\t\t});\n");
+      }
+      builder.append("\t\t}\n");
+    }
+    builder.append("\t}\n");
+  }
+
+  /**
+   * Find the framed transport of the libthrift which loads the services, it is moved to the layered package by 0.14.
+   * @param serviceInfos  all services
+   * @return  the class name of framed transport
+   */
+  private static String findFramedTransport(List<ServiceInfo> serviceInfos) {
+    ClassLoader loader = serviceInfos.isEmpty()
+            ? Thread.currentThread().getContextClassLoader() : serviceInfos.get(0).getClz().getClassLoader();
+    try {
+      Class.forName(LAYERED_FRAMED_TRANSPORT, false, loader);
+      return LAYERED_FRAMED_TRANSPORT;
+    } catch (ClassNotFoundException e) {
+      return FRAMED_TRANSPORT;
+    }
+  }
+
+  /**
+   * Make the name of a java type in source.
+   * @param type  java type
+   * @return  type name
+   */
+  private static String makeTypeName(Type type) {
+    return type.getTypeName().replace('$', '.');
   }
 
   @Override
   public void outputLog() {}
+
+  /**
+   * Make the name of async interface, it is the <code>AsyncIface</code> of the thrift service class which declares
+   * the interface, or declares the <code>Iface</code> extended by the interface, or is the interface name without
+   * <code>Iface</code>.
+   * @param serviceInfo service info
+   * @return  class name
+   */
+  static String makeAsyncIface(ServiceInfo serviceInfo) {
+    Class<?> clz = serviceInfo.getClz();
+    List<Class<?>> serviceClasses = Lists.newArrayList(clz.getDeclaringClass());
+    for (Class<?> iface : clz.getInterfaces()) {
+      serviceClasses.add(iface.getDeclaringClass());
+    }
+    String name = clz.getName();
+    try {
+      serviceClasses.add(Class.forName(name.substring(0, name.length() - 5), false, clz.getClassLoader()));
+    } catch (ClassNotFoundException e) {
+      // the interface is not named by the service class
+    }
+    for (Class<?> serviceClass : serviceClasses) {
+      if (serviceClass == null) {
+        continue;
+      }
+      for (Class<?> member : serviceClass.getClasses()) {
+        if (member.isInterface() && member.getSimpleName().equals("AsyncIface")) {
+          return member.getName().replace('$', '.');
+        }
+      }
+    }
+    throw new IllegalStateException("Can not find the AsyncIface of " + name + ".");
+  }
 }
@@ -0,0 +1,1131 @@
+package com.yinxiang.utils.thrift.grpc.operations.generators;
+
+import com.google.common.base.CaseFormat;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Sets;
+import com.yinxiang.utils.thrift.grpc.TType;
+import com.yinxiang.utils.thrift.grpc.infos.FieldInfo;
+import com.yinxiang.utils.thrift.grpc.infos.FieldType;
+import com.yinxiang.utils.thrift.grpc.infos.FileInfo;
+import com.yinxiang.utils.thrift.grpc.infos.StructInfo;
+import com.yinxiang.utils.thrift.grpc.infos.SymbolTable;
+import com.yinxiang.utils.thrift.grpc.operations.FilesOperation;
+import com.yinxiang.utils.thrift.grpc.operations.Operation;
+import com.yinxiang.utils.thrift.grpc.operations.generators.code.ClassCode;
+import com.yinxiang.utils.thrift.grpc.operations.generators.code.FieldCode;
+import com.yinxiang.utils.thrift.grpc.operations.generators.code.LineCode;
+import com.yinxiang.utils.thrift.grpc.operations.generators.code.MethodCode;
+import com.yinxiang.utils.thrift.grpc.operations.generators.code.java.ClassGenerator;
+import com.yinxiang.utils.thrift.grpc.utils.ConcurrentUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.yinxiang.utils.thrift.grpc.infos.StructInfo.EMPTY;
+import static com.yinxiang.utils.thrift.grpc.operations.generators.AbstractMarshallerGenerator.getFieldByName;
+import static com.yinxiang.utils.thrift.grpc.operations.generators.AbstractMarshallerGenerator.isContainer;
+import static com.yinxiang.utils.thrift.grpc.utils.StringUtils.firstUpper;
+
+/**
+ * The transcoder generator.
+ * <p>
+ *   The transcoders read the fields of a thrift struct from a <code>TProtocol</code> and write the fields of the
+ *   gRPC message to a <code>CodedOutputStream</code> directly, the field numbers are same with {@link ProtoGenerator},
+ *   so no thrift object and gRPC message is created. The unknown thrift fields and the fields of unexpected type
+ *   are skipped. The binary is wrapped without copy before it is written, the nested messages and the map entries
+ *   which size can not be computed in advance are written to the reused buffers of {@code Transcoders} first.
+ * </p>
+ * <p>
+ *   The reverse transcoders read a gRPC message from a <code>CodedInputStream</code> and write the thrift struct to a
+ *   <code>TProtocol</code> by the thrift ids of fields, the values are checked and defaulted like the thrift
+ *   marshaller. They are generated for the thrift structs and the requests of rpc, the requests which are created
+ *   for the args of rpc are written as the args struct.
+ * </p>
+ * @author Huiyuan Fu
+ * @since 1.0.0
+ * @see FilesOperation
+ */
+public class TranscoderGenerator implements FilesOperation {
+  /** The class generator. */
+  private static final ClassGenerator CLASS_GENERATOR = new ClassGenerator();
+  /** The name of helper class. */
+  private static final String HELPER = "Transcoders";
+  /** The list of imports. */
+  private static final ImmutableList<String> IMPORTS = ImmutableList.of(
+          "com.google.protobuf.ByteString",
+          "com.google.protobuf.CodedInputStream",
+          "com.google.protobuf.CodedOutputStream",
+          "com.google.protobuf.UnsafeByteOperations",
+          "com.google.protobuf.WireFormat",
+          "org.apache.thrift.TException",
+          "org.apache.thrift.protocol.TField",
+          "org.apache.thrift.protocol.TList",
+          "org.apache.thrift.protocol.TMap",
+          "org.apache.thrift.protocol.TProtocol",
+          "org.apache.thrift.protocol.TProtocolUtil",
+          "org.apache.thrift.protocol.TSet",
+          "org.apache.thrift.protocol.TStruct",
+          "org.apache.thrift.protocol.TType",
+          "java.io.IOException",
+          "java.nio.ByteBuffer",
+          "java.util.ArrayList",
+          "java.util.List"
+  );
+  /** The list of exceptions of transcoder methods. */
+  private static final ImmutableList<String> EXCEPTIONS = ImmutableList.of("TException", "IOException");
+  /** The modifier of constants. */
+  private static final String PSF_MOD = "private static final";
+  /** The varint wire type of gRPC. */
+  private static final int WIRETYPE_VARINT = 0;
+  /** The fixed64 wire type of gRPC. */
+  private static final int WIRETYPE_FIXED64 = 1;
+  /** The length delimited wire type of gRPC. */
+  private static final int WIRETYPE_LENGTH_DELIMITED = 2;
+  /** CODE: skip a thrift field. */
+  private static final String SKIP = "TProtocolUtil.skip(in, field.type);";
+
+  /** The base path of transcoder module. */
+  private final String path;
+  /** The package of transcoder. */
+  private final String pkg;
+  /** The symbol table of structs. */
+  private final SymbolTable symbols;
+  /** The count of threads to generate files. */
+  private final int threads;
+
+  public TranscoderGenerator(String path, String pkg, SymbolTable symbols) {
+    this(path, pkg, symbols, 1);
+  }
+
+  public TranscoderGenerator(String path, String pkg, SymbolTable symbols, int threads) {
+    this.path = path;
+    this.pkg = pkg;
+    this.symbols = symbols;
+    this.threads = threads;
+  }
+
+  @Override
+  public void execute(Map<String, FileInfo> fileInfos) {
+    FilesOperation.createFile(path + pkg, HELPER, this::createHelper, symbols.getFiles());
+    // the requests which are created for the args of rpc
+    Set<StructInfo> requests = Sets.newIdentityHashSet();
+    fileInfos.values().forEach(fileInfo -> fileInfo.getServiceInfos().forEach(service -> service.getRpcInfos()
+            .forEach(rpc -> {
+              StructInfo request = rpc.getRequest();
+              if (request != null && request != EMPTY && request.getRefThriftType() == null) {
+                requests.add(request);
+              }
+            })));
+    ConcurrentUtils.forEach(fileInfos.entrySet(), threads, entry -> {
+      ClassCode classCode = createClassCode(entry.getKey(), entry.getValue(), requests);
+      if (classCode.methodCodes.size() > 1) {
+        FilesOperation.createFile(
+                path + pkg, classCode.name, writer -> CLASS_GENERATOR.generate(writer, classCode), symbols.getFiles());
+      }
+    });
+  }
+
+  /**
+   * Create the helper class which is shared by all transcoders.
+   * <p>
+   *   The nested messages are written to the reused buffers of current thread, one buffer per deep, then copied to
+   *   the parent with length. The buffer of a failed message is dropped because its stream may keep some bytes.
+   *   The nested gRPC messages are read in the limit of their length, at most 100 levels like the protobuf parsers,
+   *   the bytes of a message are aliased when they are read from a {@code ByteString}. The
+   *   repeated scalars are collected to the growable primitive lists.
+   * </p>
+   * @param builder {@link CodeWriter}
+   */
+  private void createHelper(CodeWriter builder) {
+    builder.append("package ").append(Operation.formatPkg(pkg)).append(";\n\n");
+    builder.append("import com.google.common.base.Preconditions;\n");
+    builder.append("import com.google.protobuf.ByteString;\n");
+    builder.append("import com.google.protobuf.CodedInputStream;\n");
+    builder.append("import com.google.protobuf.CodedOutputStream;\n");
+    builder.append("import com.google.protobuf.InvalidProtocolBufferException;\n");
+    builder.append("import com.google.protobuf.WireFormat;\n");
+    builder.append("import org.apache.thrift.TException;\n");
+    builder.append("import org.apache.thrift.protocol.TProtocol;\n\n");
+    builder.append("import java.io.IOException;\n");
+    builder.append("import java.io.OutputStream;\n");
+    builder.append("import java.nio.ByteBuffer;\n");
+    builder.append("import java.util.ArrayList;\n");
+    builder.append("import java.util.Arrays;\n\n");
+    builder.append("public final class ").append(HELPER).append(" {\n");
+    builder.append("\tpublic static final ByteBuffer EMPTY_BUFFER = ByteBuffer.allocate(0);\n");
+    builder.append("\tprivate static final int BUFFER_SIZE = 256;\n");
+    builder.append("\tprivate static final int VALUES_SIZE = 8;\n");
+    builder.append("\tprivate static final int RECURSION_LIMIT = 100;\n");
+    builder.append("\tprivate static final ThreadLocal<Buffers> BUFFERS = ThreadLocal.withInitial(Buffers::new);\n\n");
+    builder.append("\tprivate ").append(HELPER).append("() {}\n\n");
+    // transcoder interface
+    builder.append("\t@FunctionalInterface\n");
+    builder.append("\tpublic interface ToGrpc {\n");
+    builder.append("\t\tvoid transcode(TProtocol in, CodedOutputStream out) throws TException, IOException;\n");
+    builder.append("\t}\n\n");
+    builder.append("\t@FunctionalInterface\n");
+    builder.append("\tpublic interface ToThrift {\n");
+    builder.append("\t\tvoid transcode(CodedInputStream in, TProtocol out) throws TException, IOException;\n");
+    builder.append("\t}\n\n");
+    // writeMessage
+    builder.append("\tpublic static void writeMessage(CodedOutputStream out, int number, TProtocol in, ToGrpc toGrpc)")
+            .append(" throws TException, IOException {\n");
+    builder.append("\t\tBuffers buffers = BUFFERS.get();\n");
+    builder.append("\t\tBuffer buffer = buffers.acquire();\n");
+    builder.append("\t\tboolean done = false;\n");
+    builder.append("\t\ttry {\n");
+    builder.append("\t\t\ttoGrpc.transcode(in, buffer.out);\n");
+    builder.append("\t\t\tbuffer.writeTo(out, number);\n");
+    builder.append("\t\t\tdone = true;\n");
+    builder.append("\t\t} finally {\n");
+    builder.append("\t\t\tbuffers.release(done);\n");
+    builder.append("\t\t}\n");
+    builder.append("\t}\n\n");
+    // readMessage
+    builder.append("\tpublic static void readMessage(CodedInputStream in, TProtocol out, ToThrift toThrift)")
+            .append(" throws TException, IOException {\n");
+    builder.append("\t\tBuffers buffers = BUFFERS.get();\n");
+    builder.append("\t\tbuffers.enter();\n");
+    builder.append("\t\ttry {\n");
+    builder.append("\t\t\tint limit = in.pushLimit(in.readRawVarint32());\n");
+    builder.append("\t\t\ttoThrift.transcode(in, out);\n");
+    builder.append("\t\t\tin.popLimit(limit);\n");
+    builder.append("\t\t} finally {\n");
+    builder.append("\t\t\tbuffers.reads--;\n");
+    builder.append("\t\t}\n");
+    builder.append("\t}\n\n");
+    builder.append("\tpublic static void readMessage(ByteString bytes, TProtocol out, ToThrift toThrift)")
+            .append(" throws TException, IOException {\n");
+    builder.append("\t\tBuffers buffers = BUFFERS.get();\n");
+    builder.append("\t\tbuffers.enter();\n");
+    builder.append("\t\ttry {\n");
+    builder.append("\t\t\tCodedInputStream in = bytes.newCodedInput();\n");
+    builder.append("\t\t\tin.enableAliasing(true);\n");
+    builder.append("\t\t\ttoThrift.transcode(in, out);\n");
+    builder.append("\t\t} finally {\n");
+    builder.append("\t\t\tbuffers.reads--;\n");
+    builder.append("\t\t}\n");
+    builder.append("\t}\n\n");
+    // checkers
+    builder.append("\tpublic static byte checkByte(int value) {\n");
+    builder.append("\t\tPreconditions.checkArgument(value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE);\n");
+    builder.append("\t\treturn (byte) value;\n");
+    builder.append("\t}\n\n");
+    builder.append("\tpublic static short checkShort(int value) {\n");
+    builder.append("\t\tPreconditions.checkArgument(value >= Short.MIN_VALUE && value <= Short.MAX_VALUE);\n");
+    builder.append("\t\treturn (short) value;\n");
+    builder.append("\t}\n\n");
+    builder.append("\tpublic static <T> T checkEnum(T e) {\n");
+    builder.append("\t\treturn Preconditions.checkNotNull(e);\n");
+    builder.append("\t}\n\n");
+    // values
+    appendValues(builder, "Booleans", "boolean");
+    appendValues(builder, "Ints", "int");
+    appendValues(builder, "Longs", "long");
+    appendValues(builder, "Doubles", "double");
+    // buffers
+    builder.append("\tprivate static final class Buffers extends ArrayList<Buffer> {\n");
+    builder.append("\t\tprivate int deep;\n");
+    builder.append("\t\tprivate int reads;\n\n");
+    builder.append("\t\tprivate Buffer acquire() {\n");
+    builder.append("\t\t\tif (deep == size()) {\n");
+    builder.append("\t\t\t\tadd(new Buffer());\n");
+    builder.append("\t\t\t}\n");
+    builder.append("\t\t\treturn get(deep++);\n");
+    builder.append("\t\t}\n\n");
+    builder.append("\t\tprivate void release(boolean done) {\n");
+    builder.append("\t\t\tdeep--;\n");
+    builder.append("\t\t\tif (!done) {\n");
+    builder.append("\t\t\t\tset(deep, new Buffer());\n");
+    builder.append("\t\t\t}\n");
+    builder.append("\t\t}\n\n");
+    builder.append("\t\tprivate void enter() throws InvalidProtocolBufferException {\n");
+    builder.append("\t\t\tif (reads == RECURSION_LIMIT) {\n");
+    builder.append("\t\t\t\tthrow new InvalidProtocolBufferException(\"Protocol message had too many levels of ")
+            .append("nesting.\");\n");
+    builder.append("\t\t\t}\n");
+    builder.append("\t\t\treads++;\n");
+    builder.append("\t\t}\n");
+    builder.append("\t}\n\n");
+    // buffer
+    builder.append("\tprivate static final class Buffer extends OutputStream {\n");
+    builder.append("\t\tprivate final CodedOutputStream out = CodedOutputStream.newInstance(this, BUFFER_SIZE);\n");
+    builder.append("\t\tprivate byte[] bytes = new byte[BUFFER_SIZE];\n");
+    builder.append("\t\tprivate int size;\n\n");
+    builder.append("\t\t@Override\n");
+    builder.append("\t\tpublic void write(int b) {\n");
+    builder.append("\t\t\tensure(1);\n");
+    builder.append("\t\t\tbytes[size++] = (byte) b;\n");
+    builder.append("\t\t}\n\n");
+    builder.append("\t\t@Override\n");
+    builder.append("\t\tpublic void write(byte[] b, int off, int len) {\n");
+    builder.append("\t\t\tensure(len);\n");
+    builder.append("\t\t\tSystem.arraycopy(b, off, bytes, size, len);\n");
+    builder.append("\t\t\tsize += len;\n");
+    builder.append("\t\t}\n\n");
+    builder.append("\t\tprivate void ensure(int len) {\n");
+    builder.append("\t\t\tif (size + len > bytes.length) {\n");
+    builder.append("\t\t\t\tbytes = Arrays.copyOf(bytes, Math.max(bytes.length << 1, size + len));\n");
+    builder.append("\t\t\t}\n");
+    builder.append("\t\t}\n\n");
+    builder.append("\t\tprivate void writeTo(CodedOutputStream parent, int number) throws IOException {\n");
+    builder.append("\t\t\tout.flush();\n");
+    builder.append("\t\t\tparent.writeTag(number, WireFormat.WIRETYPE_LENGTH_DELIMITED);\n");
+    builder.append("\t\t\tparent.writeUInt32NoTag(size);\n");
+    builder.append("\t\t\tparent.writeRawBytes(bytes, 0, size);\n");
+    builder.append("\t\t\tsize = 0;\n");
+    builder.append("\t\t}\n");
+    builder.append("\t}\n");
+    builder.append("}");
+  }
+
+  /**
+   * Append a growable list of primitive to the helper class, the elements of repeated field are collected to it.
+   * @param builder {@link CodeWriter}
+   * @param name    class name
+   * @param type    primitive type
+   */
+  private static void appendValues(CodeWriter builder, String name, String type) {
+    builder.append("\tpublic static final class ").append(name).append(" {\n");
+    builder.append("\t\tprivate ").append(type).append("[] values = new ").append(type).append("[VALUES_SIZE];\n");
+    builder.append("\t\tprivate int size;\n\n");
+    builder.append("\t\tpublic void add(").append(type).append(" value) {\n");
+    builder.append("\t\t\tif (size == values.length) {\n");
+    builder.append("\t\t\t\tvalues = Arrays.copyOf(values, size << 1);\n");
+    builder.append("\t\t\t}\n");
+    builder.append("\t\t\tvalues[size++] = value;\n");
+    builder.append("\t\t}\n\n");
+    builder.append("\t\tpublic ").append(type).append(" get(int index) {\n");
+    builder.append("\t\t\treturn values[index];\n");
+    builder.append("\t\t}\n\n");
+    builder.append("\t\tpublic int size() {\n");
+    builder.append("\t\t\treturn size;\n");
+    builder.append("\t\t}\n");
+    builder.append("\t}\n\n");
+  }
+
+  /**
+   * Create a {@link ClassCode} from a proto file.
+   * @param fileName  name of proto file
+   * @param fileInfo  proto file
+   * @param requests  the request structs of services which are not thrift structs
+   * @return  {@link ClassCode}
+   */
+  private ClassCode createClassCode(String fileName, FileInfo fileInfo, Set<StructInfo> requests) {
+    String className = fileName + "Transcoder";
+    ClassCode classCode = new ClassCode("public final", "class", className, Operation.formatPkg(pkg));
+    classCode.imports.addAll(IMPORTS);
+    classCode.methodCodes.add(new MethodCode(TAB, "private", "", className));
+    fileInfo.getStructInfos().values().forEach(struct -> {
+      if (isContainer(struct)) {
+        classCode.methodCodes.add(createContainerMethod(classCode, struct));
+        classCode.methodCodes.add(createToThriftMethod(classCode, struct, false));
+      } else if (!struct.isEnum() && struct.getRefThriftType() != null) {
+        classCode.methodCodes.add(createStructMethod(classCode, struct));
+        classCode.methodCodes.add(createToThriftMethod(classCode, struct, true));
+      } else if (requests.contains(struct)) {
+        classCode.methodCodes.add(createToThriftMethod(classCode, struct, true));
+      }
+    });
+    return classCode;
+  }
+
+  /**
+   * Create the transcoder method of a thrift struct.
+   * @param classCode the transcoder class
+   * @param struct    a thrift struct
+   * @return  {@link MethodCode}
+   */
+  private MethodCode createStructMethod(ClassCode classCode, StructInfo struct) {
+    String name = makeMethodName(struct.getName());
+    MethodCode methodCode = createMethodCode("public static", name);
+    List<LineCode> lines = methodCode.lineCodes;
+    int tab = TAB + 1;
+    lines.add(new LineCode(tab, "in.readStructBegin();"));
+    lines.add(new LineCode(tab, "while (true) {"));
+    lines.add(new LineCode(tab + 1, "TField field = in.readFieldBegin();"));
+    lines.add(new LineCode(tab + 1, "if (field.type == TType.STOP) {"));
+    lines.add(new LineCode(tab + 2, "break;"));
+    lines.add(new LineCode(tab + 1, "}"));
+    lines.add(new LineCode(tab + 1, "switch (field.id) {"));
+    List<FieldInfo> fieldInfos = struct.getFieldInfos();
+    for (int i = 0;i < fieldInfos.size();i++) {
+      FieldInfo fieldInfo = fieldInfos.get(i);
+      lines.add(new LineCode(tab + 2, "case " + fieldInfo.getThriftId() + ":"));
+      lines.add(new LineCode(tab + 3, "if (field.type == TType." + makeWireType(fieldInfo) + ") {"));
+      createFieldCode(classCode, lines, fieldInfo, i + 1, tab + 4, name);
+      lines.add(new LineCode(tab + 3, "} else {"));
+      lines.add(new LineCode(tab + 4, SKIP));
+      lines.add(new LineCode(tab + 3, "}"));
+      lines.add(new LineCode(tab + 3, "break;"));
+    }
+    lines.add(new LineCode(tab + 2, "default:"));
+    lines.add(new LineCode(tab + 3, SKIP));
+    lines.add(new LineCode(tab + 1, "}"));
+    lines.add(new LineCode(tab + 1, "in.readFieldEnd();"));
+    lines.add(new LineCode(tab, "}"));
+    lines.add(new LineCode(tab, "in.readStructEnd();"));
+    return methodCode;
+  }
+
+  /**
+   * Create the transcoder method of a container struct, the thrift container is the only field of message.
+   * @param classCode the transcoder class
+   * @param struct    a container struct
+   * @return  {@link MethodCode}
+   */
+  private MethodCode createContainerMethod(ClassCode classCode, StructInfo struct) {
+    String name = makeMethodName(struct.getName());
+    MethodCode methodCode = createMethodCode("public static", name);
+    createFieldCode(classCode, methodCode.lineCodes, struct.getFieldInfos().get(0), 1, TAB + 1, name);
+    return methodCode;
+  }
+
+  /**
+   * Create a empty transcoder method.
+   * @param mod   modifier
+   * @param name  method name
+   * @return  {@link MethodCode}
+   */
+  private static MethodCode createMethodCode(String mod, String name) {
+    MethodCode methodCode = new MethodCode(TAB, mod, "void", name);
+    methodCode.parameters.add(new FieldCode("TProtocol", "in"));
+    methodCode.parameters.add(new FieldCode("CodedOutputStream", "out"));
+    methodCode.exceptions.addAll(EXCEPTIONS);
+    return methodCode;
+  }
+
+  /**
+   * Create the code which read a thrift value of field and write it to the gRPC field.
+   * @param classCode the transcoder class, the entry methods are added to it
+   * @param lines     the list of {@link LineCode}
+   * @param fieldInfo field
+   * @param number    the field number of gRPC
+   * @param tab       tab count
+   * @param owner     the name of method which the code is in, the prefix of entry method
+   */
+  private void createFieldCode(
+          ClassCode classCode,
+          List<LineCode> lines,
+          FieldInfo fieldInfo,
+          int number,
+          int tab,
+          String owner
+  ) {
+    if (!fieldInfo.isRepeated()) {
+      lines.add(new LineCode(tab, makeValueCode(fieldInfo.getFirstType(), number)));
+      return;
+    }
+    switch (fieldInfo.getContainerType().thriftType) {
+      case TType.MAP:
+        lines.add(new LineCode(tab, "TMap map" + number + " = in.readMapBegin();"));
+        lines.add(new LineCode(tab, makeFor(number, "map")));
+        FieldInfo[] entry = getEntry(fieldInfo);
+        String entryName = owner + firstUpper(fieldInfo.getName()) + "Entry";
+        createEntryCode(classCode, lines, entry[0], entry[1], number, tab + 1, entryName);
+        lines.add(new LineCode(tab, "}"));
+        lines.add(new LineCode(tab, "in.readMapEnd();"));
+        break;
+      case TType.SET:
+        lines.add(new LineCode(tab, "TSet set" + number + " = in.readSetBegin();"));
+        lines.add(new LineCode(tab, makeFor(number, "set")));
+        lines.add(new LineCode(tab + 1, makeValueCode(fieldInfo.getFirstType(), number)));
+        lines.add(new LineCode(tab, "}"));
+        lines.add(new LineCode(tab, "in.readSetEnd();"));
+        break;
+      default:
+        lines.add(new LineCode(tab, "TList list" + number + " = in.readListBegin();"));
+        lines.add(new LineCode(tab, makeFor(number, "list")));
+        lines.add(new LineCode(tab + 1, makeValueCode(fieldInfo.getFirstType(), number)));
+        lines.add(new LineCode(tab, "}"));
+        lines.add(new LineCode(tab, "in.readListEnd();"));
+    }
+  }
+
+  /**
+   * Create the code which transcode a map entry to the entry message, the entry of scalars is written with its
+   * computed size, the others are written by a entry method like a nested message.
+   * @param classCode the transcoder class, the entry method is added to it
+   * @param lines     the list of {@link LineCode}
+   * @param key       the key field of entry
+   * @param value     the value field of entry
+   * @param number    the field number of map
+   * @param tab       tab count
+   * @param entryName the name of entry method
+   */
+  private void createEntryCode(
+          ClassCode classCode,
+          List<LineCode> lines,
+          FieldInfo key,
+          FieldInfo value,
+          int number,
+          int tab,
+          String entryName
+  ) {
+    if (isScalar(key) && isScalar(value)) {
+      FieldType keyType = key.getFirstType(), valueType = value.getFirstType();
+      String keyProto = makeProtoType(keyType), valueProto = makeProtoType(valueType);
+      lines.add(new LineCode(tab, makeJavaType(keyType) + " key = " + makeReadCode(keyType) + ";"));
+      lines.add(new LineCode(tab, makeJavaType(valueType) + " value = " + makeReadCode(valueType) + ";"));
+      lines.add(new LineCode(tab, "out.writeTag(" + number + ", WireFormat.WIRETYPE_LENGTH_DELIMITED);"));
+      lines.add(new LineCode(tab, "out.writeUInt32NoTag(CodedOutputStream.compute" + keyProto + "Size(1, key)"
+              + " + CodedOutputStream.compute" + valueProto + "Size(2, value));"));
+      lines.add(new LineCode(tab, "out.write" + keyProto + "(1, key);"));
+      lines.add(new LineCode(tab, "out.write" + valueProto + "(2, value);"));
+      return;
+    }
+    MethodCode methodCode = createMethodCode("private static", entryName);
+    createFieldCode(classCode, methodCode.lineCodes, key, 1, TAB + 1, entryName);
+    createFieldCode(classCode, methodCode.lineCodes, value, 2, TAB + 1, entryName);
+    classCode.methodCodes.add(methodCode);
+    lines.add(new LineCode(tab, makeWriteMessage(number, classCode.name + "::" + entryName)));
+  }
+
+  /**
+   * Create the method which transcode a gRPC message to a thrift struct, or to the thrift container of a container
+   * struct which is written without field header.
+   * @param classCode the transcoder class
+   * @param struct    a thrift struct, a request struct or a container struct
+   * @param isStruct  write a struct if true else the only container
+   * @return  {@link MethodCode}
+   */
+  private MethodCode createToThriftMethod(ClassCode classCode, StructInfo struct, boolean isStruct) {
+    String name = makeToThriftName(struct.getName());
+    MethodCode methodCode = createToThriftCode("public static", name);
+    String constant = isStruct ? CaseFormat.UPPER_CAMEL.to(CaseFormat.UPPER_UNDERSCORE, struct.getName()) : null;
+    if (isStruct) {
+      classCode.fieldCodes.add(new FieldCode(TAB, PSF_MOD, "TStruct",
+              constant + "_STRUCT = new TStruct(\"" + struct.getName() + "\")"));
+      struct.getFieldInfos().forEach(fieldInfo -> classCode.fieldCodes.add(new FieldCode(TAB, PSF_MOD, "TField",
+              makeFieldConstant(constant, fieldInfo) + " = new TField(\"" + fieldInfo.getName() + "\", TType."
+                      + makeWireType(fieldInfo) + ", (short) " + fieldInfo.getThriftId() + ")")));
+    }
+    createToThriftBody(classCode, methodCode.lineCodes, struct.getFieldInfos(), constant, name);
+    return methodCode;
+  }
+
+  /**
+   * Create the body which read the fields of a gRPC message and write them to thrift.
+   * <p>
+   *   The scalars are read to locals with the default of proto3 and written after the message is read, so all fields
+   *   are set like the thrift marshaller. The elements of containers are collected first because the thrift header
+   *   of container needs the size. The nested messages are kept as the bytes of message and transcoded when they are
+   *   written. The packed and unpacked repeated scalars are both accepted, the unknown fields are skipped.
+   * </p>
+   * @param classCode   the transcoder class, the entry methods are added to it
+   * @param lines       the list of {@link LineCode}
+   * @param fieldInfos  the fields of message, the field number is index + 1
+   * @param constant    the constant prefix of struct, or null if the values are written without field header
+   * @param owner       the name of method which the code is in, the prefix of entry method
+   */
+  private void createToThriftBody(
+          ClassCode classCode,
+          List<LineCode> lines,
+          List<FieldInfo> fieldInfos,
+          String constant,
+          String owner
+  ) {
+    int tab = TAB + 1;
+    boolean isStruct = constant != null;
+    // step 1: locals
+    for (int i = 0;i < fieldInfos.size();i++) {
+      FieldInfo fieldInfo = fieldInfos.get(i);
+      FieldInfo[] entry = getScalarEntry(fieldInfo);
+      if (entry == null) {
+        lines.add(new LineCode(tab, makeLocal(fieldInfo, i + 1)));
+      } else {
+        lines.add(new LineCode(tab, makeCollector(makeCollectorType(entry[0].getFirstType()), "k" + (i + 1))));
+        lines.add(new LineCode(tab, makeCollector(makeCollectorType(entry[1].getFirstType()), "v" + (i + 1))));
+      }
+    }
+    if (isStruct) {
+      lines.add(new LineCode(tab, "out.writeStructBegin(" + constant + "_STRUCT);"));
+    }
+    // step 2: read fields
+    createReadCode(classCode, lines, fieldInfos, owner);
+    // step 3: write fields
+    for (int i = 0;i < fieldInfos.size();i++) {
+      FieldInfo fieldInfo = fieldInfos.get(i);
+      int number = i + 1;
+      String local = "f" + number, begin = isStruct ? makeFieldConstant(constant, fieldInfo) : null;
+      if (isStruct) {
+        lines.add(new LineCode(tab, "out.writeFieldBegin(" + begin + ");"));
+      }
+      if (fieldInfo.isRepeated()) {
+        createContainerWriteCode(classCode, lines, fieldInfo, number, tab, owner);
+      } else {
+        lines.add(new LineCode(tab, makeThriftWriteCode(fieldInfo.getFirstType(), local)));
+      }
+      if (isStruct) {
+        lines.add(new LineCode(tab, "out.writeFieldEnd();"));
+      }
+    }
+    if (isStruct) {
+      lines.add(new LineCode(tab, "out.writeFieldStop();"));
+      lines.add(new LineCode(tab, "out.writeStructEnd();"));
+    }
+  }
+
+  /**
+   * Create the code which read the fields of a gRPC message, the bytes of a singular message are concatenated when
+   * it appears more than once, so it is merged like protobuf and written once. The scalar entries of map are read to
+   * the collectors of keys and values by a entry method.
+   * @param classCode   the transcoder class, the entry methods are added to it
+   * @param lines       the list of {@link LineCode}
+   * @param fieldInfos  the fields of message, the field number is index + 1
+   * @param owner       the name of method which the code is in, the prefix of entry method
+   */
+  private void createReadCode(ClassCode classCode, List<LineCode> lines, List<FieldInfo> fieldInfos, String owner) {
+    int tab = TAB + 1;
+    lines.add(new LineCode(tab, "for (int tag = in.readTag();tag != 0;tag = in.readTag()) {"));
+    lines.add(new LineCode(tab + 1, "switch (tag) {"));
+    for (int i = 0;i < fieldInfos.size();i++) {
+      FieldInfo fieldInfo = fieldInfos.get(i);
+      int number = i + 1;
+      String local = "f" + number;
+      if (!fieldInfo.isRepeated() && isScalar(fieldInfo.getFirstType())) {
+        FieldType type = fieldInfo.getFirstType();
+        lines.add(new LineCode(tab + 2, "case " + makeTag(number, makeGrpcWireType(type)) + ":"));
+        lines.add(new LineCode(tab + 3, local + " = " + makeGrpcReadCode(type) + ";"));
+      } else if (!fieldInfo.isRepeated()) {
+        lines.add(new LineCode(tab + 2, "case " + makeTag(number, WIRETYPE_LENGTH_DELIMITED) + ":"));
+        lines.add(new LineCode(tab + 3, local + " = " + local + ".concat(in.readBytes());"));
+      } else if (getScalarEntry(fieldInfo) != null) {
+        String limit = "limit" + number, entryName = owner + firstUpper(fieldInfo.getName()) + "Entry";
+        classCode.methodCodes.add(createScalarEntryMethod(classCode, getScalarEntry(fieldInfo), entryName));
+        lines.add(new LineCode(tab + 2, "case " + makeTag(number, WIRETYPE_LENGTH_DELIMITED) + ":"));
+        lines.add(new LineCode(tab + 3, "int " + limit + " = in.pushLimit(in.readRawVarint32());"));
+        lines.add(new LineCode(tab + 3, entryName + "(in, k" + number + ", v" + number + ");"));
+        lines.add(new LineCode(tab + 3, "in.popLimit(" + limit + ");"));
+      } else if (fieldInfo.getContainerType().thriftType == TType.MAP) {
+        lines.add(new LineCode(tab + 2, "case " + makeTag(number, WIRETYPE_LENGTH_DELIMITED) + ":"));
+        lines.add(new LineCode(tab + 3, local + ".add(in.readBytes());"));
+      } else {
+        FieldType type = fieldInfo.getFirstType();
+        int wireType = isScalar(type) ? makeGrpcWireType(type) : WIRETYPE_LENGTH_DELIMITED;
+        lines.add(new LineCode(tab + 2, "case " + makeTag(number, wireType) + ":"));
+        lines.add(new LineCode(tab + 3, local + ".add(" + makeGrpcReadCode(type) + ");"));
+        if (wireType != WIRETYPE_LENGTH_DELIMITED) { // packed
+          String limit = "limit" + number;
+          lines.add(new LineCode(tab + 3, "break;"));
+          lines.add(new LineCode(tab + 2, "case " + makeTag(number, WIRETYPE_LENGTH_DELIMITED) + ":"));
+          lines.add(new LineCode(tab + 3, "int " + limit + " = in.pushLimit(in.readRawVarint32());"));
+          lines.add(new LineCode(tab + 3, "while (in.getBytesUntilLimit() > 0) {"));
+          lines.add(new LineCode(tab + 4, local + ".add(" + makeGrpcReadCode(type) + ");"));
+          lines.add(new LineCode(tab + 3, "}"));
+          lines.add(new LineCode(tab + 3, "in.popLimit(" + limit + ");"));
+        }
+      }
+      lines.add(new LineCode(tab + 3, "break;"));
+    }
+    lines.add(new LineCode(tab + 2, "default:"));
+    lines.add(new LineCode(tab + 3, "in.skipField(tag);"));
+    lines.add(new LineCode(tab + 1, "}"));
+    lines.add(new LineCode(tab, "}"));
+  }
+
+  /**
+   * Create the method which read a map entry of scalars and add the key and value to the collectors.
+   * @param classCode the transcoder class
+   * @param entry     the key and value of entry
+   * @param entryName the name of entry method
+   * @return  {@link MethodCode}
+   */
+  private MethodCode createScalarEntryMethod(ClassCode classCode, FieldInfo[] entry, String entryName) {
+    MethodCode methodCode = new MethodCode(TAB, "private static", "void", entryName);
+    methodCode.parameters.add(new FieldCode("CodedInputStream", "in"));
+    methodCode.parameters.add(new FieldCode(makeCollectorType(entry[0].getFirstType()), "keys"));
+    methodCode.parameters.add(new FieldCode(makeCollectorType(entry[1].getFirstType()), "values"));
+    methodCode.exceptions.add("IOException");
+    List<LineCode> lines = methodCode.lineCodes;
+    lines.add(new LineCode(TAB + 1, makeLocal(entry[0], 1)));
+    lines.add(new LineCode(TAB + 1, makeLocal(entry[1], 2)));
+    createReadCode(classCode, lines, ImmutableList.copyOf(entry), entryName);
+    lines.add(new LineCode(TAB + 1, "keys.add(f1);"));
+    lines.add(new LineCode(TAB + 1, "values.add(f2);"));
+    return methodCode;
+  }
+
+  /**
+   * Create the code which write the collected elements of a gRPC repeated field to a thrift container.
+   * @param classCode the transcoder class, the entry method is added to it
+   * @param lines     the list of {@link LineCode}
+   * @param fieldInfo a repeated field
+   * @param number    the field number of gRPC
+   * @param tab       tab count
+   * @param owner     the name of method which the code is in, the prefix of entry method
+   */
+  private void createContainerWriteCode(
+          ClassCode classCode,
+          List<LineCode> lines,
+          FieldInfo fieldInfo,
+          int number,
+          int tab,
+          String owner
+  ) {
+    String local = "f" + number, index = "i" + number, element = local + ".get(" + index + ")";
+    String loop = "for (int " + index + " = 0;" + index + " < " + local + ".size();" + index + "++) {";
+    FieldType type = fieldInfo.getFirstType();
+    switch (fieldInfo.getContainerType().thriftType) {
+      case TType.MAP:
+        FieldInfo[] entry = getEntry(fieldInfo);
+        FieldInfo key = entry[0], value = entry[1];
+        if (getScalarEntry(fieldInfo) != null) { // the keys and values are collected
+          String keys = "k" + number, values = "v" + number;
+          lines.add(new LineCode(tab, "out.writeMapBegin(new TMap(TType." + makeWireType(key) + ", TType."
+                  + makeWireType(value) + ", " + keys + ".size()));"));
+          lines.add(new LineCode(tab, "for (int " + index + " = 0;" + index + " < " + keys + ".size();" + index
+                  + "++) {"));
+          lines.add(new LineCode(tab + 1, makeThriftWriteCode(key.getFirstType(), keys + ".get(" + index + ")")));
+          lines.add(new LineCode(tab + 1, makeThriftWriteCode(value.getFirstType(), values + ".get(" + index + ")")));
+          lines.add(new LineCode(tab, "}"));
+          lines.add(new LineCode(tab, "out.writeMapEnd();"));
+          break;
+        }
+        String entryName = owner + firstUpper(fieldInfo.getName()) + "Entry";
+        MethodCode methodCode = createToThriftCode("private static", entryName);
+        createToThriftBody(classCode, methodCode.lineCodes, ImmutableList.of(key, value), null, entryName);
+        classCode.methodCodes.add(methodCode);
+        lines.add(new LineCode(tab, "out.writeMapBegin(new TMap(TType." + makeWireType(key) + ", TType."
+                + makeWireType(value) + ", " + local + ".size()));"));
+        lines.add(new LineCode(tab, loop));
+        lines.add(new LineCode(tab + 1, HELPER + ".readMessage(" + element + ", out, " + classCode.name + "::"
+                + entryName + ");"));
+        lines.add(new LineCode(tab, "}"));
+        lines.add(new LineCode(tab, "out.writeMapEnd();"));
+        break;
+      case TType.SET:
+        lines.add(new LineCode(tab, "out.writeSetBegin(new TSet(TType." + makeWireType(type) + ", " + local
+                + ".size()));"));
+        lines.add(new LineCode(tab, loop));
+        lines.add(new LineCode(tab + 1, makeThriftWriteCode(type, element)));
+        lines.add(new LineCode(tab, "}"));
+        lines.add(new LineCode(tab, "out.writeSetEnd();"));
+        break;
+      default:
+        lines.add(new LineCode(tab, "out.writeListBegin(new TList(TType." + makeWireType(type) + ", " + local
+                + ".size()));"));
+        lines.add(new LineCode(tab, loop));
+        lines.add(new LineCode(tab + 1, makeThriftWriteCode(type, element)));
+        lines.add(new LineCode(tab, "}"));
+        lines.add(new LineCode(tab, "out.writeListEnd();"));
+    }
+  }
+
+  /**
+   * Create a empty method which transcode a gRPC message to thrift.
+   * @param mod   modifier
+   * @param name  method name
+   * @return  {@link MethodCode}
+   */
+  private static MethodCode createToThriftCode(String mod, String name) {
+    MethodCode methodCode = new MethodCode(TAB, mod, "void", name);
+    methodCode.parameters.add(new FieldCode("CodedInputStream", "in"));
+    methodCode.parameters.add(new FieldCode("TProtocol", "out"));
+    methodCode.exceptions.addAll(EXCEPTIONS);
+    return methodCode;
+  }
+
+  /**
+   * Make the local which keeps a gRPC field until it is written to thrift.
+   * @param fieldInfo field
+   * @param number    the field number of gRPC
+   * @return  code
+   */
+  private static String makeLocal(FieldInfo fieldInfo, int number) {
+    String local = " f" + number + " = ";
+    FieldType type = fieldInfo.getFirstType();
+    if (fieldInfo.isRepeated()) {
+      String collector = fieldInfo.getContainerType().thriftType == TType.MAP ?
+              "List<ByteString>" : makeCollectorType(type);
+      return makeCollector(collector, "f" + number);
+    }
+    if (!isScalar(type)) {
+      return "ByteString" + local + "ByteString.EMPTY;";
+    }
+    if (type.type.equals("bytes")) {
+      return "ByteBuffer" + local + HELPER + ".EMPTY_BUFFER;";
+    }
+    switch (type.thriftType) {
+      case TType.BOOL:
+        return "boolean" + local + "false;";
+      case TType.I64:
+        return "long" + local + "0L;";
+      case TType.DOUBLE:
+        return "double" + local + "0D;";
+      case TType.STRING:
+        return "String" + local + "\"\";";
+      default:
+        return "int" + local + "0;";
+    }
+  }
+
+  /**
+   * Make the local of a collector.
+   * @param collector collector type
+   * @param local     local name
+   * @return  code
+   */
+  private static String makeCollector(String collector, String local) {
+    return collector + " " + local + " = new " + (collector.startsWith("List") ? "ArrayList<>" : collector) + "();";
+  }
+
+  /**
+   * Make the type which collects the elements of a gRPC repeated field, the primitives are not boxed.
+   * @param type  element type
+   * @return  type
+   */
+  private static String makeCollectorType(FieldType type) {
+    if (type.type.equals("bytes")) {
+      return "List<ByteBuffer>";
+    }
+    switch (type.thriftType) {
+      case TType.BOOL:
+        return HELPER + ".Booleans";
+      case TType.I64:
+        return HELPER + ".Longs";
+      case TType.DOUBLE:
+        return HELPER + ".Doubles";
+      case TType.STRING:
+        return "List<String>";
+      case TType.STRUCT:
+        return "List<ByteString>";
+      default:
+        return HELPER + ".Ints";
+    }
+  }
+
+  /**
+   * Make the code which read a gRPC scalar, or the bytes of a gRPC message.
+   * @param type  value type
+   * @return  code
+   */
+  private static String makeGrpcReadCode(FieldType type) {
+    if (type.type.equals("bytes")) {
+      return "in.readByteBuffer()";
+    }
+    switch (type.thriftType) {
+      case TType.BOOL:
+        return "in.readBool()";
+      case TType.I64:
+        return "in.readInt64()";
+      case TType.DOUBLE:
+        return "in.readDouble()";
+      case TType.STRING:
+        return "in.readStringRequireUtf8()";
+      case TType.STRUCT:
+        return "in.readBytes()";
+      case TType.ENUM:
+        return "in.readEnum()";
+      default:
+        return "in.readInt32()";
+    }
+  }
+
+  /**
+   * Make the wire type of a gRPC scalar.
+   * @param type  scalar type
+   * @return  wire type
+   */
+  private static int makeGrpcWireType(FieldType type) {
+    if (type.type.equals("bytes") || type.thriftType == TType.STRING) {
+      return WIRETYPE_LENGTH_DELIMITED;
+    }
+    return type.thriftType == TType.DOUBLE ? WIRETYPE_FIXED64 : WIRETYPE_VARINT;
+  }
+
+  /**
+   * Make the tag of a gRPC field.
+   * @param number    the field number of gRPC
+   * @param wireType  wire type
+   * @return  tag
+   */
+  private static int makeTag(int number, int wireType) {
+    return number << 3 | wireType;
+  }
+
+  /**
+   * Make the code which write a value to thrift, the byte, short and enum are checked like the thrift marshaller.
+   * @param type  value type
+   * @param value the code of value
+   * @return  code
+   */
+  private String makeThriftWriteCode(FieldType type, String value) {
+    if (type.type.equals("bytes")) {
+      return "out.writeBinary(" + value + ");";
+    }
+    switch (type.thriftType) {
+      case TType.BOOL:
+        return "out.writeBool(" + value + ");";
+      case TType.BYTE:
+        return "out.writeByte(" + HELPER + ".checkByte(" + value + "));";
+      case TType.I16:
+        return "out.writeI16(" + HELPER + ".checkShort(" + value + "));";
+      case TType.I64:
+        return "out.writeI64(" + value + ");";
+      case TType.DOUBLE:
+        return "out.writeDouble(" + value + ");";
+      case TType.STRING:
+        return "out.writeString(" + value + ");";
+      case TType.STRUCT:
+        return HELPER + ".readMessage(" + value + ", out, " + makeToThriftReference(type) + ");";
+      case TType.ENUM:
+        String enumType = symbols.getStructInfo(type.type).getRefThriftType();
+        return "out.writeI32(" + HELPER + ".checkEnum(" + enumType + ".findByValue(" + value + ")).getValue());";
+      default:
+        return "out.writeI32(" + value + ");";
+    }
+  }
+
+  /**
+   * Make the method reference of the transcoder which transcode a gRPC message to thrift.
+   * @param type  message type
+   * @return  code
+   */
+  private String makeToThriftReference(FieldType type) {
+    return symbols.safeGetFileInfo(type.type).getName() + "Transcoder::" + makeToThriftName(type.type);
+  }
+
+  /**
+   * Make the name of the constant field of a struct.
+   * @param constant  the constant prefix of struct
+   * @param fieldInfo field
+   * @return  name
+   */
+  private static String makeFieldConstant(String constant, FieldInfo fieldInfo) {
+    return constant + "_" + CaseFormat.LOWER_CAMEL.to(CaseFormat.UPPER_UNDERSCORE, fieldInfo.getName()) + "_FIELD";
+  }
+
+  /**
+   * Make the code which read a thrift value and write it to the gRPC field.
+   * @param type    value type
+   * @param number  the field number of gRPC
+   * @return  code
+   */
+  private String makeValueCode(FieldType type, int number) {
+    if (isScalar(type)) {
+      return "out.write" + makeProtoType(type) + "(" + number + ", " + makeReadCode(type) + ");";
+    }
+    String className = symbols.safeGetFileInfo(type.type).getName() + "Transcoder";
+    return makeWriteMessage(number, className + "::" + makeMethodName(type.type));
+  }
+
+  /**
+   * Make the code which write a nested message by a transcoder.
+   * @param number      the field number of gRPC
+   * @param transcoder  the method reference of transcoder
+   * @return  code
+   */
+  private static String makeWriteMessage(int number, String transcoder) {
+    return HELPER + ".writeMessage(out, " + number + ", in, " + transcoder + ");";
+  }
+
+  /**
+   * Make the code which read a thrift scalar.
+   * @param type  scalar type
+   * @return  code
+   */
+  private static String makeReadCode(FieldType type) {
+    if (type.type.equals("bytes")) {
+      return "UnsafeByteOperations.unsafeWrap(in.readBinary())";
+    }
+    switch (type.thriftType) {
+      case TType.BOOL:
+        return "in.readBool()";
+      case TType.BYTE:
+        return "in.readByte()";
+      case TType.I16:
+        return "in.readI16()";
+      case TType.I64:
+        return "in.readI64()";
+      case TType.DOUBLE:
+        return "in.readDouble()";
+      case TType.STRING:
+        return "in.readString()";
+      default:
+        return "in.readI32()";
+    }
+  }
+
+  /**
+   * Make the type name of gRPC scalar which used by the methods of {@code CodedOutputStream}.
+   * @param type  scalar type
+   * @return  type name
+   */
+  private static String makeProtoType(FieldType type) {
+    if (type.type.equals("bytes")) {
+      return "Bytes";
+    }
+    switch (type.thriftType) {
+      case TType.BOOL:
+        return "Bool";
+      case TType.I64:
+        return "Int64";
+      case TType.DOUBLE:
+        return "Double";
+      case TType.STRING:
+        return "String";
+      default:
+        return "Int32";
+    }
+  }
+
+  /**
+   * Make the java type of gRPC scalar.
+   * @param type  scalar type
+   * @return  java type
+   */
+  private static String makeJavaType(FieldType type) {
+    if (type.type.equals("bytes")) {
+      return "ByteString";
+    }
+    switch (type.thriftType) {
+      case TType.BOOL:
+        return "boolean";
+      case TType.I64:
+        return "long";
+      case TType.DOUBLE:
+        return "double";
+      case TType.STRING:
+        return "String";
+      default:
+        return "int";
+    }
+  }
+
+  /**
+   * Make the name of thrift type which a field is written by.
+   * @param fieldInfo field
+   * @return  the name of thrift type
+   */
+  private String makeWireType(FieldInfo fieldInfo) {
+    return makeWireType(fieldInfo.isRepeated() ? fieldInfo.getContainerType() : fieldInfo.getFirstType());
+  }
+
+  /**
+   * Make the name of thrift type which a value is written by, a container struct is written by its container.
+   * @param type  value type
+   * @return  the name of thrift type
+   */
+  private String makeWireType(FieldType type) {
+    if (type.type.equals("bytes")) {
+      return "STRING";
+    }
+    switch (type.thriftType) {
+      case TType.BOOL:
+        return "BOOL";
+      case TType.BYTE:
+        return "BYTE";
+      case TType.I16:
+        return "I16";
+      case TType.I64:
+        return "I64";
+      case TType.DOUBLE:
+        return "DOUBLE";
+      case TType.STRING:
+        return "STRING";
+      case TType.STRUCT:
+        StructInfo struct = symbols.getStructInfo(type.type);
+        return struct != null && isContainer(struct) ? makeWireType(struct.getFieldInfos().get(0)) : "STRUCT";
+      case TType.MAP:
+        return "MAP";
+      case TType.SET:
+        return "SET";
+      case TType.LIST:
+        return "LIST";
+      default:
+        return "I32";
+    }
+  }
+
+  /**
+   * Check a field is it a scalar of gRPC.
+   * @param fieldInfo field
+   * @return  true if is a scalar else false
+   */
+  private static boolean isScalar(FieldInfo fieldInfo) {
+    return !fieldInfo.isRepeated() && isScalar(fieldInfo.getFirstType());
+  }
+
+  /**
+   * Check a type is it a scalar of gRPC, enum is int32 and binary is bytes.
+   * @param type  field type
+   * @return  true if is a scalar else false
+   */
+  private static boolean isScalar(FieldType type) {
+    return type.thriftType != TType.STRUCT || type.type.equals("bytes");
+  }
+
+  /**
+   * Get the key and value of a map, the map of gRPC or the list of entry struct.
+   * @param fieldInfo a map field
+   * @return  the key and value
+   */
+  private FieldInfo[] getEntry(FieldInfo fieldInfo) {
+    if (fieldInfo.getSecondType() == null) {
+      StructInfo entry = symbols.getStructInfo(fieldInfo.getFirstType().type);
+      return new FieldInfo[] {getFieldByName(entry, "key"), getFieldByName(entry, "value")};
+    }
+    return new FieldInfo[] {makeField("key", fieldInfo.getFirstType()), makeField("value", fieldInfo.getSecondType())};
+  }
+
+  /**
+   * Get the key and value of a map if both are scalars.
+   * @param fieldInfo field
+   * @return  the key and value, null if the field is not a map of scalars
+   */
+  private FieldInfo[] getScalarEntry(FieldInfo fieldInfo) {
+    if (!fieldInfo.isRepeated() || fieldInfo.getContainerType().thriftType != TType.MAP) {
+      return null;
+    }
+    FieldInfo[] entry = getEntry(fieldInfo);
+    return isScalar(entry[0]) && isScalar(entry[1]) ? entry : null;
+  }
+
+  /**
+   * Make a field of a type, it is the key or value of gRPC map.
+   * @param name  field name
+   * @param type  field type
+   * @return  field
+   */
+  private static FieldInfo makeField(String name, FieldType type) {
+    FieldInfo fieldInfo = new FieldInfo();
+    fieldInfo.setName(name);
+    fieldInfo.setFirstType(type);
+    return fieldInfo;
+  }
+
+  /**
+   * Make the loop code of a thrift container, the names of locals end with the field number, so the key and value
+   * of a entry method do not conflict.
+   * @param number    the field number of gRPC
+   * @param container the name prefix of container
+   * @return  code
+   */
+  private static String makeFor(int number, String container) {
+    String index = "i" + number;
+    return "for (int " + index + " = 0;" + index + " < " + container + number + ".size;" + index + "++) {";
+  }
+
+  /**
+   * Make the name of transcoder method.
+   * @param structName  name of struct
+   * @return  method name
+   */
+  private static String makeMethodName(String structName) {
+    return "toGrpc" + structName;
+  }
+
+  /**
+   * Make the name of the transcoder method which transcode a gRPC message to thrift.
+   * @param structName  name of struct
+   * @return  method name
+   */
+  private static String makeToThriftName(String structName) {
+    return "toThrift" + structName;
+  }
+
+  @Override
+  public void outputLog() {}
+}
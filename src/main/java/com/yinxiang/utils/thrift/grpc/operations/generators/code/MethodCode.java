@@ -15,6 +15,8 @@ public class MethodCode extends TypeCode {
   public final List<FieldCode> parameters = Lists.newLinkedList();
   /** The list of {@link LineCode}. */
   public final List<LineCode> lineCodes = Lists.newLinkedList();
+  /** The list of exceptions which thrown by method. */
+  public final List<String> exceptions = Lists.newLinkedList();
 
   public MethodCode(int tab, String mod, String type, String name) {
     super(tab, mod, type, name);
@@ -2,6 +2,7 @@ package com.yinxiang.utils.thrift.grpc.operations.generators.code.java;
 
 import com.google.common.base.Strings;
 import com.yinxiang.utils.thrift.grpc.operations.generators.CodeGenerator;
+import com.yinxiang.utils.thrift.grpc.operations.generators.CodeWriter;
 import com.yinxiang.utils.thrift.grpc.operations.generators.code.ClassCode;
 import com.yinxiang.utils.thrift.grpc.operations.generators.code.TypeCode;
 import com.yinxiang.utils.thrift.grpc.operations.generators.code.java.CodeGeneratorDecorator.*;
@@ -28,14 +29,14 @@ public class ClassGenerator implements CodeGenerator<ClassCode> {
     builder.append('\n');
     // generate methods
     info.methodCodes.forEach(methodCode -> METHOD_GENERATOR.generate(builder, methodCode));
-    builder.setLength(builder.length() - 1);
+    builder.trim(1);
     return builder;
   };
   /** The import code generator. */
   private static final CodeGenerator<ClassCode> BIG_CLOSE_GENERATOR = new BigCloseGenerator<>(BODY_GENERATOR);
 
   @Override
-  public StringBuilder generate(StringBuilder builder, ClassCode info) {
+  public CodeWriter generate(CodeWriter builder, ClassCode info) {
     // generate package
     builder.append("package ").append(info.pkg).append(";\n\n");
     // generate imports
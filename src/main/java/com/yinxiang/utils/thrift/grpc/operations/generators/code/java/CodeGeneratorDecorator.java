@@ -1,6 +1,7 @@
 package com.yinxiang.utils.thrift.grpc.operations.generators.code.java;
 
 import com.yinxiang.utils.thrift.grpc.operations.generators.CodeGenerator;
+import com.yinxiang.utils.thrift.grpc.operations.generators.CodeWriter;
 import com.yinxiang.utils.thrift.grpc.operations.generators.code.LineCode;
 import com.yinxiang.utils.thrift.grpc.operations.generators.code.TabCode;
 
@@ -28,7 +29,7 @@ public abstract class CodeGeneratorDecorator<T> implements CodeGenerator<T> {
     }
 
     @Override
-    public StringBuilder generate(StringBuilder builder, T info) {
+    public CodeWriter generate(CodeWriter builder, T info) {
       return delegate.generate(builder.append('('), info).append(')');
     }
   }
@@ -43,7 +44,7 @@ public abstract class CodeGeneratorDecorator<T> implements CodeGenerator<T> {
     }
 
     @Override
-    public StringBuilder generate(StringBuilder builder, T info) {
+    public CodeWriter generate(CodeWriter builder, T info) {
       return CodeGenerator.appendTabs(delegate.generate(builder.append(" {\n"), info), info.tab).append("}\n");
     }
   }
@@ -58,7 +59,7 @@ public abstract class CodeGeneratorDecorator<T> implements CodeGenerator<T> {
     }
 
     @Override
-    public StringBuilder generate(StringBuilder builder, T info) {
+    public CodeWriter generate(CodeWriter builder, T info) {
       return delegate.generate(builder, info).append("\n");
     }
   }
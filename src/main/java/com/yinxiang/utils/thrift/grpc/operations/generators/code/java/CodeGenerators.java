@@ -1,6 +1,7 @@
 package com.yinxiang.utils.thrift.grpc.operations.generators.code.java;
 
 import com.yinxiang.utils.thrift.grpc.operations.generators.CodeGenerator;
+import com.yinxiang.utils.thrift.grpc.operations.generators.CodeWriter;
 
 import java.util.List;
 
@@ -19,7 +20,7 @@ public class CodeGenerators<T> implements CodeGenerator<T> {
   }
 
   @Override
-  public StringBuilder generate(StringBuilder builder, T info) {
+  public CodeWriter generate(CodeWriter builder, T info) {
     list.forEach(e -> e.generate(builder, info));
     return builder;
   }
@@ -1,6 +1,7 @@
 package com.yinxiang.utils.thrift.grpc.operations.generators.code.java;
 
 import com.yinxiang.utils.thrift.grpc.operations.generators.CodeGenerator;
+import com.yinxiang.utils.thrift.grpc.operations.generators.CodeWriter;
 import com.yinxiang.utils.thrift.grpc.operations.generators.code.TypeCode;
 
 import static com.google.common.base.Strings.isNullOrEmpty;
@@ -13,7 +14,7 @@ import static com.google.common.base.Strings.isNullOrEmpty;
  */
 public class FieldGenerator implements CodeGenerator<TypeCode> {
   @Override
-  public StringBuilder generate(StringBuilder builder, TypeCode info) {
+  public CodeWriter generate(CodeWriter builder, TypeCode info) {
     int tab = info.tab;
     info.annotations.forEach(
             annotation -> CodeGenerator.appendTabs(builder, tab).append('@').append(annotation).append('\n'));
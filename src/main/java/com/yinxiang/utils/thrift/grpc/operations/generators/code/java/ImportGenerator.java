@@ -1,6 +1,7 @@
 package com.yinxiang.utils.thrift.grpc.operations.generators.code.java;
 
 import com.yinxiang.utils.thrift.grpc.operations.generators.CodeGenerator;
+import com.yinxiang.utils.thrift.grpc.operations.generators.CodeWriter;
 
 /**
  * The import code generator.
@@ -10,7 +11,7 @@ import com.yinxiang.utils.thrift.grpc.operations.generators.CodeGenerator;
  */
 public class ImportGenerator implements CodeGenerator<String> {
   @Override
-  public StringBuilder generate(StringBuilder builder, String info) {
+  public CodeWriter generate(CodeWriter builder, String info) {
     return builder.append("import ").append(info).append(";\n");
   }
 }
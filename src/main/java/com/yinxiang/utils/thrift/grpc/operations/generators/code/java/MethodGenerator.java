@@ -1,13 +1,11 @@
 package com.yinxiang.utils.thrift.grpc.operations.generators.code.java;
 
-import com.google.common.base.Joiner;
 import com.google.common.collect.Lists;
 import com.yinxiang.utils.thrift.grpc.operations.generators.CodeGenerator;
+import com.yinxiang.utils.thrift.grpc.operations.generators.CodeWriter;
+import com.yinxiang.utils.thrift.grpc.operations.generators.code.FieldCode;
 import com.yinxiang.utils.thrift.grpc.operations.generators.code.MethodCode;
 
-import java.util.List;
-import java.util.stream.Collectors;
-
 /**
  * The method code generator.
  * @author Huiyuan Fu
@@ -19,17 +17,21 @@ public class MethodGenerator extends CodeGeneratorDecorator<MethodCode> {
   private static final FieldGenerator TYPE_GENERATOR = new FieldGenerator();
   /** The parameters code generator. */
   private static final CodeGenerator<MethodCode> PARAMETERS_GENERATOR = (builder, info) -> {
-    List<String> parameters = info.parameters.stream()
-            .map(fieldCode -> TYPE_GENERATOR.generate(new StringBuilder(), fieldCode).toString())
-            .collect(Collectors.toList());
-    return builder.append(Joiner.on(',').join(parameters));
+    String separator = "";
+    for (FieldCode fieldCode : info.parameters) {
+      TYPE_GENERATOR.generate(builder.append(separator), fieldCode);
+      separator = ",";
+    }
+    return builder;
   };
   /** The small close code generator. */
   private static final CodeGenerator<MethodCode> SMALL_CLOSE_GENERATOR
           = new SmallCloseGenerator<>(PARAMETERS_GENERATOR);
   /** The method head code generator. */
-  private static final CodeGenerator<MethodCode> HEAD_GENERATOR =
-          (builder, info) -> SMALL_CLOSE_GENERATOR.generate(TYPE_GENERATOR.generate(builder, info), info);
+  private static final CodeGenerator<MethodCode> HEAD_GENERATOR = (builder, info) -> {
+    SMALL_CLOSE_GENERATOR.generate(TYPE_GENERATOR.generate(builder, info), info);
+    return info.exceptions.isEmpty() ? builder : builder.append(" throws ").append(String.join(", ", info.exceptions));
+  };
   /** The every line begin code generator. */
   private static final WithTabCodeGenerator LINE_BEGIN_GENERATOR = new WithTabCodeGenerator();
   /** The method body code generator. */
@@ -45,7 +47,7 @@ public class MethodGenerator extends CodeGeneratorDecorator<MethodCode> {
   }
 
   @Override
-  public StringBuilder generate(StringBuilder builder, MethodCode info) {
+  public CodeWriter generate(CodeWriter builder, MethodCode info) {
     return delegate.generate(builder, info).append('\n');
   }
 }
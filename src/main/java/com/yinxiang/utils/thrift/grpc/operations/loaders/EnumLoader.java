@@ -3,6 +3,7 @@ package com.yinxiang.utils.thrift.grpc.operations.loaders;
 import com.yinxiang.utils.thrift.grpc.infos.FieldInfo;
 import com.yinxiang.utils.thrift.grpc.infos.FileInfo;
 import com.yinxiang.utils.thrift.grpc.infos.StructInfo;
+import com.yinxiang.utils.thrift.grpc.infos.SymbolTable;
 
 import java.lang.reflect.Field;
 import java.util.function.Function;
@@ -18,12 +19,15 @@ import static com.yinxiang.utils.thrift.grpc.utils.StringUtils.firstUpper;
 public class EnumLoader implements Loader {
   /** The map of enum parent files, key is file name. */
   final Function<String, FileInfo> fileInfos;
+  /** The symbol table of structs. */
+  final SymbolTable symbols;
 
   /** Count of thrift enum. */
   private int count;
 
-  public EnumLoader(Function<String, FileInfo> fileInfos) {
+  public EnumLoader(Function<String, FileInfo> fileInfos, SymbolTable symbols) {
     this.fileInfos = fileInfos;
+    this.symbols = symbols;
   }
 
   @Override
@@ -47,7 +51,7 @@ public class EnumLoader implements Loader {
    * @return  enum struct
    */
   StructInfo createEnum(Class<?> clz, FileInfo fileInfo) {
-    StructInfo structInfo = Loader.createStruct(fileInfo, firstUpper(clz.getSimpleName()), true);
+    StructInfo structInfo = Loader.createStruct(symbols, fileInfo, firstUpper(clz.getSimpleName()), true);
     for (Field field : clz.getFields()) {
       FieldInfo fieldInfo = new FieldInfo();
       fieldInfo.setName(field.getName());
@@ -1,11 +1,15 @@
 package com.yinxiang.utils.thrift.grpc.operations.loaders;
 
+import com.google.common.collect.Maps;
 import com.yinxiang.utils.thrift.grpc.infos.FileInfo;
 import com.yinxiang.utils.thrift.grpc.infos.StructInfo;
+import com.yinxiang.utils.thrift.grpc.infos.SymbolTable;
 import com.yinxiang.utils.thrift.grpc.operations.Operation;
 
 import java.lang.reflect.Field;
+import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.util.Map;
 import java.util.function.BiConsumer;
 
 import static com.yinxiang.utils.thrift.grpc.utils.StringUtils.firstUpper;
@@ -17,6 +21,11 @@ import static com.yinxiang.utils.thrift.grpc.utils.StringUtils.firstUpper;
  * @see Operation
  */
 public interface Loader extends Operation<Class<?>> {
+  /** The prefix of the isset bit fields which generated by thrift compiler. */
+  String ISSET_PREFIX = "__isset";
+  /** The simple name of the field enum which generated by thrift compiler. */
+  String FIELDS_ENUM = "_Fields";
+
   /**
    * Format the package.
    * @param clz a class
@@ -38,7 +47,7 @@ public interface Loader extends Operation<Class<?>> {
   }
 
   /**
-   * Traversal all thrift fields.
+   * Traversal all thrift fields, the '__isset' bit fields of thrift compiler are skipped.
    * @param clz       a class
    * @param consumer  field consumer
    */
@@ -46,23 +55,49 @@ public interface Loader extends Operation<Class<?>> {
     int index = 0;
     for (Field field : clz.getDeclaredFields()) {
       Class type = field.getType();
-      if (isThriftField(field.getModifiers()) && (!type.isArray() || type.equals(byte[].class))) {
+      if (isThriftField(field.getModifiers())
+              && !field.getName().startsWith(ISSET_PREFIX)
+              && (!type.isArray() || type.equals(byte[].class))) {
         consumer.accept(index++, field);
       }
     }
   }
 
+  /**
+   * Get the field ids of a thrift class from its '_Fields' enum.
+   * @param clz a class
+   * @return  map of field ids, key is field name, empty if the class has no '_Fields'
+   */
+  static Map<String, Short> getThriftIds(Class<?> clz) {
+    Map<String, Short> thriftIds = Maps.newHashMap();
+    for (Class<?> inner : clz.getDeclaredClasses()) {
+      if (!inner.isEnum() || !FIELDS_ENUM.equals(inner.getSimpleName())) {
+        continue;
+      }
+      try {
+        Method getFieldName = inner.getMethod("getFieldName"), getThriftFieldId = inner.getMethod("getThriftFieldId");
+        for (Object constant : inner.getEnumConstants()) {
+          thriftIds.put((String) getFieldName.invoke(constant), (Short) getThriftFieldId.invoke(constant));
+        }
+      } catch (ReflectiveOperationException e) {
+        throw new RuntimeException(e);
+      }
+    }
+    return thriftIds;
+  }
+
   /**
    * Create a {@link StructInfo}.
+   * @param symbols   {@link SymbolTable}
    * @param fileInfo  parent proto file info
    * @param name      struct name
    * @param isEnum    is enum
    * @return  {@link StructInfo}
    */
-  static StructInfo createStruct(FileInfo fileInfo, String name, boolean isEnum) {
-    StructInfo structInfo = new StructInfo(firstUpper(name));
+  static StructInfo createStruct(SymbolTable symbols, FileInfo fileInfo, String name, boolean isEnum) {
+    StructInfo structInfo = new StructInfo(symbols, firstUpper(name));
     structInfo.setEnum(isEnum);
-    fileInfo.saveStruct(structInfo);
+    symbols.saveStruct(fileInfo, structInfo);
     return structInfo;
   }
 }
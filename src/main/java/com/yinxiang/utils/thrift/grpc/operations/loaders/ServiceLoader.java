@@ -5,6 +5,7 @@ import com.google.common.collect.LinkedListMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
+import com.google.common.primitives.Primitives;
 import com.yinxiang.utils.thrift.grpc.TType;
 import com.yinxiang.utils.thrift.grpc.infos.*;
 
@@ -15,6 +16,7 @@ import java.lang.reflect.Type;
 import java.text.Collator;
 import java.util.*;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import static com.yinxiang.utils.thrift.grpc.utils.StringUtils.firstUpper;
 import static com.yinxiang.utils.thrift.grpc.infos.StructInfo.EMPTY;
@@ -63,9 +65,10 @@ public class ServiceLoader implements Loader {
     ServiceInfo serviceInfo = new ServiceInfo(formatInterfaceName(clz.getSimpleName()));
     serviceInfo.setClz(clz);
     fileInfo.getServiceInfos().add(serviceInfo);
-    // get classes of args
+    // get classes of args, the service class is loaded by the class loader of interface
     Map<String, Class> argsClasses = Maps.newHashMap();
-    for (Class argsClass : Class.forName(formatInterfaceName(clz.getName())).getClasses()) {
+    Class<?> serviceClass = Class.forName(formatInterfaceName(clz.getName()), false, clz.getClassLoader());
+    for (Class argsClass : serviceClass.getClasses()) {
       argsClasses.put(argsClass.getSimpleName(), argsClass);
     }
     // generate all methods
@@ -77,6 +80,8 @@ public class ServiceLoader implements Loader {
       fileInfo.getDependencies().put(REQUEST_FILE, rpcInfo.getRequest().getName());
       // response
       rpcInfo.setResponse(createResponse(fileInfo, responseFile, method));
+      rpcInfo.setReturnType(makeReturnType(method));
+      rpcInfo.setParameterTypes(makeParameterTypes(method));
       fileInfo.getDependencies().put(RESPONSE_FILE, rpcInfo.getResponse().getName());
       // cache
       serviceInfo.getRpcInfos().add(rpcInfo);
@@ -144,7 +149,32 @@ public class ServiceLoader implements Loader {
     // create response
     Type type = method.getGenericReturnType();
     String structName = makeRequestName(returnType, type, "_Response");
-    return createStructForOneType(fileInfo, argFileInfo, structName, RETURN_DATA, returnType, type);
+    // the success field of result is 0
+    return createStructForOneType(fileInfo, argFileInfo, structName, RETURN_DATA, (short) 0, returnType, type);
+  }
+
+  /**
+   * Make the java type of return, it is the type of async callback.
+   * @param method  rpc method
+   * @return  java type, primitive is boxed
+   */
+  private static String makeReturnType(Method method) {
+    Class<?> returnType = method.getReturnType();
+    if (returnType.isPrimitive()) {
+      return Primitives.wrap(returnType).getName();
+    }
+    return method.getGenericReturnType().getTypeName().replace('$', '.');
+  }
+
+  /**
+   * Make the java types of the parameters of a rpc method.
+   * @param method  rpc method
+   * @return  types
+   */
+  private static List<String> makeParameterTypes(Method method) {
+    return Arrays.stream(method.getGenericParameterTypes())
+            .map(type -> type.getTypeName().replace('$', '.'))
+            .collect(Collectors.toList());
   }
 
   /**
@@ -170,7 +200,9 @@ public class ServiceLoader implements Loader {
       String fieldName = getFieldNames(argsClass).get(0);
       Type type = parameters[0].getParameterizedType();
       String structName = makeRequestName(parameters[0].getType(), type, firstUpper(fieldName + "_Request"));
-      return createStructForOneType(fileInfo, argFileInfo, structName, fieldName, parameters[0].getType(), type);
+      short thriftId = Loader.getThriftIds(argsClass).getOrDefault(fieldName, (short) 1);
+      return createStructForOneType(
+              fileInfo, argFileInfo, structName, fieldName, thriftId, parameters[0].getType(), type);
     }
     // more then one parameter
     return createRequest(method.getName(), argFileInfo, argsClass, parameters);
@@ -187,11 +219,15 @@ public class ServiceLoader implements Loader {
    */
   private StructInfo createRequest(String methodName, FileInfo argFileInfo, Class<?> argsClass, Parameter[] parameters)
           throws Exception {
-    List<FieldInfo> fieldInfos = Lists.newLinkedList();
+    List<FieldInfo> fieldInfos = Lists.newArrayList();
+    Map<String, Short> thriftIds = Loader.getThriftIds(argsClass);
     String aliasName = collectParameters(argsClass, parameters, (parameter, fieldName) -> {
       Type parameterizedType = parameter.getParameterizedType();
       // add a field to list
-      fieldInfos.add(structLoader.createFieldInfo(argFileInfo, fieldName, parameter.getType(), parameterizedType));
+      FieldInfo fieldInfo =
+              structLoader.createFieldInfo(argFileInfo, fieldName, parameter.getType(), parameterizedType);
+      fieldInfo.setThriftId(thriftIds.getOrDefault(fieldName, (short) (fieldInfos.size() + 1)));
+      fieldInfos.add(fieldInfo);
     });
     // return if exists
     if (alias.containsKey(aliasName)) {
@@ -200,7 +236,7 @@ public class ServiceLoader implements Loader {
     // make name
     String requestName = firstUpper(methodName + "_Request");
     // create
-    StructInfo ret = Loader.createStruct(argFileInfo, requestName, false);
+    StructInfo ret = Loader.createStruct(structLoader.symbols, argFileInfo, requestName, false);
     ret.getFieldInfos().addAll(fieldInfos);
     // record alias
     if (!Strings.isNullOrEmpty(aliasName)) {
@@ -342,6 +378,7 @@ public class ServiceLoader implements Loader {
    * @param argFileInfo arg file info
    * @param structName  struct name
    * @param fieldName   the only one field name
+   * @param thriftId    the thrift id of the only one field
    * @param clz         the only one field class
    * @param type        the only one field type
    * @return  {@link StructInfo}
@@ -352,10 +389,12 @@ public class ServiceLoader implements Loader {
           FileInfo argFileInfo,
           String structName,
           String fieldName,
+          short thriftId,
           Class<?> clz,
           Type type
   ) throws Exception {
     FieldInfo fieldInfo = structLoader.createFieldInfo(argFileInfo, fieldName, clz, type);
+    fieldInfo.setThriftId(thriftId);
     // struct
     if (fieldInfo.isStruct() && !clz.equals(byte[].class)) {
       return structLoader.createReference(fileInfo, clz);
@@ -369,7 +408,7 @@ public class ServiceLoader implements Loader {
       alias.put(structName.toLowerCase(), structName);
     }
     // create a struct for primitive type
-    StructInfo structInfo = Loader.createStruct(argFileInfo, structName, false);
+    StructInfo structInfo = Loader.createStruct(structLoader.symbols, argFileInfo, structName, false);
     structInfo.getFieldInfos().add(fieldInfo);
     return structInfo;
   }
@@ -5,9 +5,12 @@ import com.yinxiang.utils.thrift.grpc.infos.FieldInfo;
 import com.yinxiang.utils.thrift.grpc.infos.FieldType;
 import com.yinxiang.utils.thrift.grpc.infos.FileInfo;
 import com.yinxiang.utils.thrift.grpc.infos.StructInfo;
+import com.yinxiang.utils.thrift.grpc.infos.SymbolTable;
 
+import java.lang.reflect.Modifier;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -23,12 +26,15 @@ import static com.yinxiang.utils.thrift.grpc.utils.StringUtils.firstUpper;
  */
 public class StructLoader implements Loader, Function<String, FileInfo> {
   private final EnumLoader enumLoader;
+  /** The symbol table of structs. */
+  final SymbolTable symbols;
 
   /** Count of thrift struct. */
   private int count;
 
   public StructLoader(EnumLoader enumLoader) {
     this.enumLoader = enumLoader;
+    this.symbols = enumLoader.symbols;
   }
 
   @Override
@@ -52,18 +58,21 @@ public class StructLoader implements Loader, Function<String, FileInfo> {
    * @return  {@link StructInfo}
    */
   private StructInfo createStruct(FileInfo fileInfo, Class<?> clz) {
-    StructInfo structInfo = Loader.createStruct(fileInfo, clz.getSimpleName(), false);
-    // process all fields
+    StructInfo structInfo = Loader.createStruct(symbols, fileInfo, clz.getSimpleName(), false);
+    // add reference info first, the struct may be referenced by its fields in a cycle before they are done
+    structInfo.setRefInfo(structInfo.getName(), clz);
+    // process all fields, the field id is the position if the class has no ids
+    Map<String, Short> thriftIds = Loader.getThriftIds(clz);
     Loader.forEachThriftFields(clz, (index, field) -> {
        try {
         FieldInfo fieldInfo = createFieldInfo(fileInfo, field.getName(), field.getType(), field.getGenericType());
+        fieldInfo.setThriftId(thriftIds.getOrDefault(field.getName(), (short) (index + 1)));
+        fieldInfo.setPublicField(Modifier.isPublic(field.getModifiers()));
         structInfo.getFieldInfos().add(fieldInfo);
       } catch (Exception e) {
         throw new RuntimeException(e);
       }
     });
-    // add reference info
-    structInfo.setRefInfo(structInfo.getName(), clz);
     return structInfo;
   }
 
@@ -81,43 +90,44 @@ public class StructLoader implements Loader, Function<String, FileInfo> {
     fieldInfo.setName(name);
     if (clz.equals(List.class)) {
       fieldInfo.setFirstType(createSubType(fileInfo, name, type, 0));
-      fieldInfo.setContainerType(new FieldType(clz.getSimpleName(), TType.LIST));
+      fieldInfo.setContainerType(FieldType.LIST);
     } else if (clz.equals(Set.class)) {
       fieldInfo.setFirstType(createSubType(fileInfo, name, type, 0));
-      fieldInfo.setContainerType(new FieldType(clz.getSimpleName(), TType.SET));
+      fieldInfo.setContainerType(FieldType.SET);
     } else if (clz.equals(Map.class)) {
       FieldType firstType = createSubType(fileInfo, name, type, 0);
-      if (firstType.thriftType == TType.STRUCT) {
-        StructInfo entry = new StructInfo(firstUpper(name));
+      // bytes can not be the key of proto map
+      if (firstType.thriftType == TType.STRUCT || firstType == FieldType.BUFFER) {
+        StructInfo entry = new StructInfo(symbols, firstUpper(name));
         entry.getFieldInfos().add(createSubFiled(fileInfo, "key", type, 0));
         entry.getFieldInfos().add(createSubFiled(fileInfo, "value", type, 1));
-        fileInfo.saveStruct(entry);
-        fieldInfo.setFirstType(new FieldType(entry.getName(), TType.STRUCT));
+        symbols.saveStruct(fileInfo, entry);
+        fieldInfo.setFirstType(entry.getFieldType());
       } else {
         fieldInfo.setFirstType(firstType);
         fieldInfo.setSecondType(createSubType(fileInfo, name, type, 1));
       }
-      fieldInfo.setContainerType(new FieldType(clz.getSimpleName(), TType.MAP));
+      fieldInfo.setContainerType(FieldType.MAP);
     } else if (clz.equals(boolean.class) || clz.equals(Boolean.class)) {
-      fieldInfo.setFirstType(new FieldType("bool", TType.BOOL));
+      fieldInfo.setFirstType(FieldType.BOOL);
     } else if (clz.equals(byte.class) || clz.equals(Byte.class)) {
-      fieldInfo.setFirstType(new FieldType("int", TType.BYTE));
+      fieldInfo.setFirstType(FieldType.BYTE);
     } else if (clz.equals(short.class) || clz.equals(Short.class)) {
-      fieldInfo.setFirstType(new FieldType("int", TType.I16));
+      fieldInfo.setFirstType(FieldType.I16);
     } else if (clz.equals(int.class) || clz.equals(Integer.class)) {
-      fieldInfo.setFirstType(new FieldType("int", TType.I32));
+      fieldInfo.setFirstType(FieldType.I32);
     } else if (clz.equals(long.class) || clz.equals(Long.class)) {
-      fieldInfo.setFirstType(new FieldType("long", TType.I64));
+      fieldInfo.setFirstType(FieldType.I64);
     } else if (clz.equals(double.class) || clz.equals(Double.class)) {
-      fieldInfo.setFirstType(new FieldType("double", TType.DOUBLE));
+      fieldInfo.setFirstType(FieldType.DOUBLE);
     } else if (clz.equals(String.class)) {
-      fieldInfo.setFirstType(new FieldType("string", TType.STRING));
+      fieldInfo.setFirstType(FieldType.STRING);
     } else if (clz.equals(byte[].class)) {
-      fieldInfo.setFirstType(new FieldType("bytes", TType.STRUCT));
-    } else if (Enum.class.isAssignableFrom(clz)) {
-      fieldInfo.setFirstType(new FieldType(createReference(fileInfo, clz).getName(), TType.ENUM));
-    } else {
-      fieldInfo.setFirstType(new FieldType(createReference(fileInfo, clz).getName(), TType.STRUCT));
+      fieldInfo.setFirstType(FieldType.BYTES);
+    } else if (clz.equals(ByteBuffer.class)) {
+      fieldInfo.setFirstType(FieldType.BUFFER);
+    } else { // enum or struct
+      fieldInfo.setFirstType(createReference(fileInfo, clz).getFieldType());
     }
     return fieldInfo;
   }
@@ -140,11 +150,11 @@ public class StructLoader implements Loader, Function<String, FileInfo> {
     FieldInfo info = createSubFiled(fileInfo, name, genericType, index);
     // repeated struct
     if (info.isRepeated()) {
-      StructInfo subList = new StructInfo(firstUpper(name));
+      StructInfo subList = new StructInfo(symbols, firstUpper(name));
       subList.getFieldInfos().add(info);
       subList.setRefInfo(subList.getName(), subClass);
-      fileInfo.saveStruct(subList);
-      return new FieldType(subList.getName(), TType.STRUCT);
+      symbols.saveStruct(fileInfo, subList);
+      return subList.getFieldType();
     }
     return info.getFirstType();
   }
@@ -178,12 +188,12 @@ public class StructLoader implements Loader, Function<String, FileInfo> {
   StructInfo createReference(FileInfo fileInfo, Class refClass) {
     // byte[]
     if (refClass.equals(byte[].class)) {
-      return new StructInfo("bytes");
+      return new StructInfo(symbols, "bytes");
     }
     // get reference class name
     String name = refClass.getSimpleName();
     // get reference file info
-    FileInfo refFile = StructInfo.safeGetFileInfo(name);
+    FileInfo refFile = symbols.safeGetFileInfo(name);
     // try to get the reference struct info
     StructInfo ref = refFile.getStructInfos().get(name);
     // same name and not same package
@@ -0,0 +1,255 @@
+package com.yinxiang.utils.thrift.grpc.utils;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Modifier;
+
+/**
+ * The header of a class file, read from the bytes of class file without loading the class.
+ * <p>
+ *   Only the constant pool, access flags, super class, interfaces and the <code>InnerClasses</code> attribute are
+ *   parsed, the fields and methods are skipped.
+ * </p>
+ * @author Huiyuan Fu
+ * @since 1.0.0
+ */
+public final class ClassHeader {
+  /** The magic of class file. */
+  private static final int MAGIC = 0xCAFEBABE;
+  /** The name of thrift struct interface. */
+  private static final String TBASE = "org.apache.thrift.TBase";
+  /** The name of thrift enum interface. */
+  private static final String TENUM = "org.apache.thrift.TEnum";
+
+  /** The binary name of class, e.g: <code>com.test.Test$Inner</code>. */
+  private final String name;
+  /** The simple name of class, same with {@link Class#getSimpleName()}. */
+  private final String simpleName;
+  /** The access flags. */
+  private final int access;
+  /** The binary name of super class, null if is <code>java.lang.Object</code>. */
+  private final String superName;
+  /** The binary names of interfaces. */
+  private final String[] interfaces;
+  /** Note if is a member class. */
+  private final boolean memberClass;
+
+  private ClassHeader(
+          String name,
+          String simpleName,
+          int access,
+          String superName,
+          String[] interfaces,
+          boolean memberClass
+  ) {
+    this.name = name;
+    this.simpleName = simpleName;
+    this.access = access;
+    this.superName = superName;
+    this.interfaces = interfaces;
+    this.memberClass = memberClass;
+  }
+
+  /** @see #name */
+  public String getName() {
+    return name;
+  }
+
+  /** @see #simpleName */
+  public String getSimpleName() {
+    return simpleName;
+  }
+
+  /** @see #access */
+  public int getAccess() {
+    return access;
+  }
+
+  /** @see #superName */
+  public String getSuperName() {
+    return superName;
+  }
+
+  /** @see #interfaces */
+  public String[] getInterfaces() {
+    return interfaces;
+  }
+
+  /** @see #memberClass */
+  public boolean isMemberClass() {
+    return memberClass;
+  }
+
+  /**
+   * @return  true if is a interface else false.
+   */
+  public boolean isInterface() {
+    return Modifier.isInterface(access);
+  }
+
+  /**
+   * @return  true if is a thrift struct (implements TBase) else false.
+   */
+  public boolean isThriftStruct() {
+    return !isInterface() && hasInterface(TBASE);
+  }
+
+  /**
+   * @return  true if is a thrift enum (implements TEnum) else false.
+   */
+  public boolean isThriftEnum() {
+    return !isInterface() && hasInterface(TENUM);
+  }
+
+  /**
+   * Check is implements a interface.
+   * @param interfaceName the binary name of interface
+   * @return  true if implements else false
+   */
+  private boolean hasInterface(String interfaceName) {
+    for (String anInterface : interfaces) {
+      if (anInterface.equals(interfaceName)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Read a header from a class file.
+   * @param inputStream the stream of class file, will not be closed
+   * @return  {@link ClassHeader}
+   * @throws IOException  if is not a class file
+   */
+  public static ClassHeader read(InputStream inputStream) throws IOException {
+    DataInputStream in = new DataInputStream(inputStream);
+    if (in.readInt() != MAGIC) {
+      throw new IOException("Not a class file.");
+    }
+    // minor and major version
+    skipFully(in, 4);
+    // constant pool, record utf8 and class entries
+    int count = in.readUnsignedShort();
+    String[] utf8s = new String[count];
+    int[] classes = new int[count];
+    for (int i = 1;i < count;i++) {
+      int tag = in.readUnsignedByte();
+      switch (tag) {
+        case 1: // Utf8
+          utf8s[i] = in.readUTF();
+          break;
+        case 7: // Class
+          classes[i] = in.readUnsignedShort();
+          break;
+        case 8: // String
+        case 16: // MethodType
+        case 19: // Module
+        case 20: // Package
+          skipFully(in, 2);
+          break;
+        case 15: // MethodHandle
+          skipFully(in, 3);
+          break;
+        case 3: // Integer
+        case 4: // Float
+        case 9: // Fieldref
+        case 10: // Methodref
+        case 11: // InterfaceMethodref
+        case 12: // NameAndType
+        case 17: // Dynamic
+        case 18: // InvokeDynamic
+          skipFully(in, 4);
+          break;
+        case 5: // Long
+        case 6: // Double
+          skipFully(in, 8);
+          i++;
+          break;
+        default:
+          throw new IOException("Unknown constant pool tag: " + tag);
+      }
+    }
+    // class info
+    int access = in.readUnsignedShort();
+    int thisClass = in.readUnsignedShort();
+    int superClass = in.readUnsignedShort();
+    String[] interfaces = new String[in.readUnsignedShort()];
+    for (int i = 0;i < interfaces.length;i++) {
+      interfaces[i] = className(utf8s, classes, in.readUnsignedShort());
+    }
+    // skip fields and methods
+    skipMembers(in);
+    skipMembers(in);
+    // find self in InnerClasses
+    String name = className(utf8s, classes, thisClass);
+    String simpleName = name.substring(name.lastIndexOf('.') + 1);
+    boolean memberClass = false;
+    for (int i = in.readUnsignedShort();i > 0;i--) {
+      String attributeName = utf8s[in.readUnsignedShort()];
+      int length = in.readInt();
+      if (!"InnerClasses".equals(attributeName)) {
+        skipFully(in, length);
+        continue;
+      }
+      for (int j = in.readUnsignedShort();j > 0;j--) {
+        int innerClass = in.readUnsignedShort(), outerClass = in.readUnsignedShort();
+        int innerName = in.readUnsignedShort();
+        // inner access
+        skipFully(in, 2);
+        if (innerClass == thisClass) {
+          memberClass = outerClass != 0;
+          simpleName = innerName == 0 ? "" : utf8s[innerName];
+        }
+      }
+    }
+    String superName = superClass == 0 ? null : className(utf8s, classes, superClass);
+    return new ClassHeader(name, simpleName, access, superName, interfaces, memberClass);
+  }
+
+  /**
+   * Get a class name from constant pool.
+   * @param utf8s   the utf8 entries of constant pool
+   * @param classes the class entries of constant pool
+   * @param index   class entry index
+   * @return  the binary name of class
+   */
+  private static String className(String[] utf8s, int[] classes, int index) {
+    return utf8s[classes[index]].replace('/', '.');
+  }
+
+  /**
+   * Skip the fields or the methods.
+   * @param in  {@link DataInputStream}
+   * @throws IOException  IOException
+   */
+  private static void skipMembers(DataInputStream in) throws IOException {
+    for (int i = in.readUnsignedShort();i > 0;i--) {
+      // access, name and descriptor
+      skipFully(in, 6);
+      for (int j = in.readUnsignedShort();j > 0;j--) {
+        // attribute name
+        skipFully(in, 2);
+        skipFully(in, in.readInt());
+      }
+    }
+  }
+
+  /**
+   * Skip some bytes.
+   * @param in    {@link DataInputStream}
+   * @param count bytes count
+   * @throws IOException  IOException
+   */
+  private static void skipFully(DataInputStream in, int count) throws IOException {
+    while (count > 0) {
+      int skipped = in.skipBytes(count);
+      if (skipped <= 0) {
+        // skip may return 0 before EOF, read one byte to check
+        in.readByte();
+        skipped = 1;
+      }
+      count -= skipped;
+    }
+  }
+}
@@ -0,0 +1,77 @@
+package com.yinxiang.utils.thrift.grpc.utils;
+
+import com.google.common.collect.Lists;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * The utils for concurrent execute.
+ * @author Huiyuan Fu
+ * @since 1.0.0
+ */
+public class ConcurrentUtils {
+  /**
+   * Format a thread count.
+   * @param threads thread count, less than 1 means the count of processors
+   * @return  the thread count
+   */
+  public static int formatThreads(int threads) {
+    return threads < 1 ? Runtime.getRuntime().availableProcessors() : threads;
+  }
+
+  /**
+   * Execute a action for each element on a thread pool, sequential if only 1 thread.
+   * <p>
+   *   All actions are submitted in order and this method return after all done,
+   *   the first failure in order is thrown after all done.
+   * </p>
+   * @param elements  elements
+   * @param threads   thread count
+   * @param action    action, must be thread safe if more than 1 thread
+   * @param <T>       element type
+   */
+  public static <T> void forEach(Iterable<T> elements, int threads, Consumer<T> action) {
+    if (threads <= 1) {
+      elements.forEach(action);
+      return;
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      // submit
+      List<Future<?>> futures = Lists.newArrayList();
+      elements.forEach(element -> futures.add(executor.submit(() -> {
+        long allocated = Metrics.getThreadAllocatedBytes();
+        try {
+          action.accept(element);
+        } finally {
+          Metrics.addWorkerAllocated(Metrics.getThreadAllocatedBytes() - allocated);
+        }
+      })));
+      // wait all
+      RuntimeException failure = null;
+      for (Future<?> future : futures) {
+        try {
+          future.get();
+        } catch (ExecutionException e) {
+          if (failure == null) {
+            failure = e.getCause() instanceof RuntimeException
+                    ? (RuntimeException) e.getCause() : new RuntimeException(e.getCause());
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new RuntimeException(e);
+        }
+      }
+      if (failure != null) {
+        throw failure;
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
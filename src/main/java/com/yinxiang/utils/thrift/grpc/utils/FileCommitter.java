@@ -0,0 +1,104 @@
+package com.yinxiang.utils.thrift.grpc.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.io.Files.asByteSource;
+
+/**
+ * The committer of the written files of one run, it is shared by the operations of a maker by the symbol table.
+ * <p>
+ *   If {@link #skipUnchanged}, the file which content is same with the new content will not be rewritten, keep the
+ *   modified time of file for the incremental build of protoc and javac.
+ *   The new content is written to a temp file and compared with the file by {@link #commit(File, File)}.
+ *   The counts are of this run only, so the makers in one JVM do not share them. All methods are thread safe.
+ * </p>
+ * @author Huiyuan Fu
+ * @since 1.0.0
+ */
+public class FileCommitter {
+  /** Skip the unchanged files. */
+  private final boolean skipUnchanged;
+  /** The count of written files. */
+  private final AtomicInteger written = new AtomicInteger();
+  /** The count of skipped files. */
+  private final AtomicInteger skipped = new AtomicInteger();
+  /** The size of written files. */
+  private final AtomicLong writtenBytes = new AtomicLong();
+
+  public FileCommitter(boolean skipUnchanged) {
+    this.skipUnchanged = skipUnchanged;
+  }
+
+  /** @see #skipUnchanged */
+  public boolean isSkipUnchanged() {
+    return skipUnchanged;
+  }
+
+  /** @see #written */
+  public int getWrittenCount() {
+    return written.get();
+  }
+
+  /** @see #skipped */
+  public int getSkippedCount() {
+    return skipped.get();
+  }
+
+  /** @see #writtenBytes */
+  public long getWrittenBytes() {
+    return writtenBytes.get();
+  }
+
+  /**
+   * Commit a written file.
+   * <p>If the written file is a temp file, it will replace the target file, or be deleted if unchanged.</p>
+   * @param writtenFile the written file, the target file or a temp file
+   * @param file        the target file
+   * @return  true if written else false (skipped)
+   * @throws IOException  IOException
+   */
+  public boolean commit(File writtenFile, File file) throws IOException {
+    if (!writtenFile.equals(file)) {
+      // skip if same
+      if (isSame(writtenFile, file)) {
+        Files.delete(writtenFile.toPath());
+        skipped.incrementAndGet();
+        Metrics.addFile(false, 0);
+        return false;
+      }
+      Files.move(writtenFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+    long length = file.length();
+    written.incrementAndGet();
+    writtenBytes.addAndGet(length);
+    Metrics.addFile(true, length);
+    return true;
+  }
+
+  /**
+   * Check the contents of two files are same.
+   * @param file1 a file
+   * @param file2 another file
+   * @return  true if same else false
+   * @throws IOException  IOException
+   */
+  private static boolean isSame(File file1, File file2) throws IOException {
+    // check length first, avoid read the changed file
+    if (!file2.isFile() || file1.length() != file2.length()) {
+      return false;
+    }
+    return asByteSource(file1).contentEquals(asByteSource(file2));
+  }
+
+  /**
+   * Output the counts of written and skipped files.
+   */
+  public void outputLog() {
+    System.out.println("Write files: " + written.get() + ", skip unchanged files: " + skipped.get());
+  }
+}
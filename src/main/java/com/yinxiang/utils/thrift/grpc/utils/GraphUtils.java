@@ -0,0 +1,93 @@
+package com.yinxiang.utils.thrift.grpc.utils;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The utils of directed graph.
+ * @author Huiyuan Fu
+ * @since 1.0.0
+ */
+public final class GraphUtils {
+  /**
+   * Find the strongly connected components of a graph by Tarjan.
+   * <p>
+   *   A component is found after all components it can reach, so the result is in the reverse topological order,
+   *   the depended components first. The edges to a node which is not a key of graph are ignored.
+   * </p>
+   * @param graph the graph, key is node, value is the nodes which the node point to
+   * @param <T>   the type of node
+   * @return  the list of components
+   */
+  public static <T> List<Set<T>> stronglyConnectedComponents(Map<T, ? extends Collection<T>> graph) {
+    return new Tarjan<>(graph).components;
+  }
+
+  /**
+   * The strongly connected components finder of a graph.
+   * @param <T> the type of node
+   * @author Huiyuan Fu
+   * @since 1.0.0
+   */
+  private static class Tarjan<T> {
+    /** The graph, key is node. */
+    private final Map<T, ? extends Collection<T>> graph;
+    /** The index of visited nodes. */
+    private final Map<T, Integer> indexes = Maps.newHashMap();
+    /** The lowest index can reach of visited nodes. */
+    private final Map<T, Integer> lowLinks = Maps.newHashMap();
+    /** The stack of nodes. */
+    private final Deque<T> stack = new ArrayDeque<>();
+    /** The nodes on stack. */
+    private final Set<T> onStack = Sets.newHashSet();
+    /** The found components. */
+    private final List<Set<T>> components = Lists.newArrayList();
+
+    private Tarjan(Map<T, ? extends Collection<T>> graph) {
+      this.graph = graph;
+      graph.keySet().forEach(node -> {
+        if (!indexes.containsKey(node)) {
+          connect(node);
+        }
+      });
+    }
+
+    private void connect(T node) {
+      int index = indexes.size();
+      indexes.put(node, index);
+      lowLinks.put(node, index);
+      stack.push(node);
+      onStack.add(node);
+      for (T to : graph.get(node)) {
+        if (!graph.containsKey(to)) {
+          continue;
+        }
+        if (!indexes.containsKey(to)) {
+          connect(to);
+          lowLinks.put(node, Math.min(lowLinks.get(node), lowLinks.get(to)));
+        } else if (onStack.contains(to)) {
+          lowLinks.put(node, Math.min(lowLinks.get(node), indexes.get(to)));
+        }
+      }
+      // pop a component if node is root
+      if (lowLinks.get(node) == index) {
+        Set<T> component = Sets.newLinkedHashSet();
+        T top;
+        do {
+          top = stack.pop();
+          onStack.remove(top);
+          component.add(top);
+        } while (!top.equals(node));
+        components.add(component);
+      }
+    }
+  }
+}
@@ -0,0 +1,328 @@
+package com.yinxiang.utils.thrift.grpc.utils;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The metrics of generation phases: wall time, CPU time, allocated bytes, GC and output sizes.
+ * <p>
+ *   A phase is started by {@link #start(String)} and recorded when it is closed, the phases with same name are merged.
+ *   The name of a phase started in another phase of same thread is prefixed by the outer name and '/'.
+ *   The CPU time is of the process. The allocated bytes are of the current thread and the threads of
+ *   {@link ConcurrentUtils}. The written files and bytes are added by the {@link FileCommitter} of every run.
+ *   Nothing is recorded if not enabled.
+ * </p>
+ * @author Huiyuan Fu
+ * @since 1.0.0
+ */
+public final class Metrics {
+  /** Record the phases. */
+  private static volatile boolean enabled;
+  /** The records of phases in the order of first closed, key is full name. */
+  private static final Map<String, Record> RECORDS = Maps.newLinkedHashMap();
+  /** The stack of started phase names of current thread. */
+  private static final ThreadLocal<Deque<String>> NAMES = ThreadLocal.withInitial(ArrayDeque::new);
+  /** The allocated bytes of the threads of {@link ConcurrentUtils}. */
+  private static final LongAdder WORKER_ALLOCATED = new LongAdder();
+  /** The count of written files. */
+  private static final LongAdder WRITTEN_FILES = new LongAdder();
+  /** The count of skipped files. */
+  private static final LongAdder SKIPPED_FILES = new LongAdder();
+  /** The size of written files. */
+  private static final LongAdder WRITTEN_BYTES = new LongAdder();
+  /** The phase which records nothing. */
+  private static final Phase NOOP = new Phase(null);
+
+  private static final ThreadMXBean THREAD_BEAN = ManagementFactory.getThreadMXBean();
+  private static final OperatingSystemMXBean OS_BEAN = ManagementFactory.getOperatingSystemMXBean();
+
+  /** @see #enabled */
+  public static void setEnabled(boolean enabled) {
+    Metrics.enabled = enabled;
+  }
+
+  /** @see #enabled */
+  public static boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Start a phase.
+   * @param name  the name of phase
+   * @return  the phase, close it to record
+   */
+  public static Phase start(String name) {
+    if (!enabled) {
+      return NOOP;
+    }
+    Deque<String> names = NAMES.get();
+    String fullName = names.isEmpty() ? name : names.peek() + "/" + name;
+    names.push(fullName);
+    return new Phase(fullName);
+  }
+
+  /**
+   * Get the allocated bytes of current thread.
+   * @return  the allocated bytes, 0 if not enabled or not supported
+   */
+  public static long getThreadAllocatedBytes() {
+    if (enabled && THREAD_BEAN instanceof com.sun.management.ThreadMXBean) {
+      com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) THREAD_BEAN;
+      if (bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled()) {
+        return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Add the allocated bytes of a worker thread.
+   * @param bytes allocated bytes
+   */
+  public static void addWorkerAllocated(long bytes) {
+    WORKER_ALLOCATED.add(bytes);
+  }
+
+  /**
+   * Add a committed file.
+   * @param written true if written else false (skipped)
+   * @param bytes   the size of written file
+   */
+  public static void addFile(boolean written, long bytes) {
+    if (!enabled) {
+      return;
+    }
+    if (written) {
+      WRITTEN_FILES.increment();
+      WRITTEN_BYTES.add(bytes);
+    } else {
+      SKIPPED_FILES.increment();
+    }
+  }
+
+  /**
+   * Write all records to a json file.
+   * @param file  report file
+   * @param maker the name of maker
+   * @throws IOException  IOException
+   */
+  public static void writeReport(File file, String maker) throws IOException {
+    List<Record> records;
+    synchronized (RECORDS) {
+      records = Lists.newArrayList(RECORDS.values());
+    }
+    File parent = file.getAbsoluteFile().getParentFile();
+    System.out.print(parent.mkdirs() ? "[mkdir]" : "");
+    try (Writer out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+      out.append("{\n  \"maker\": ").append(quote(maker));
+      out.append(",\n  \"timestamp\": ").append(String.valueOf(System.currentTimeMillis()));
+      // memory
+      MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+      long peak = 0;
+      for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+        peak += pool.getType() == MemoryType.HEAP ? pool.getPeakUsage().getUsed() : 0;
+      }
+      out.append(",\n  \"memory\": {\"heapUsed\": ").append(String.valueOf(heap.getUsed()))
+              .append(", \"heapCommitted\": ").append(String.valueOf(heap.getCommitted()))
+              .append(", \"heapMax\": ").append(String.valueOf(heap.getMax()))
+              .append(", \"heapPeakUsed\": ").append(String.valueOf(peak)).append("}");
+      // phases
+      out.append(",\n  \"phases\": [");
+      for (int i = 0;i < records.size();i++) {
+        out.append(i == 0 ? "\n    " : ",\n    ");
+        records.get(i).write(out);
+      }
+      out.append("\n  ]\n}\n");
+    }
+    System.out.println("Write report: " + file);
+  }
+
+  /**
+   * Quote a json string.
+   * @param str string
+   * @return  json string
+   */
+  private static String quote(String str) {
+    StringBuilder builder = new StringBuilder(str.length() + 2).append('"');
+    for (int i = 0;i < str.length();i++) {
+      char c = str.charAt(i);
+      if (c == '"' || c == '\\') {
+        builder.append('\\').append(c);
+      } else if (c < 0x20) {
+        builder.append(String.format("\\u%04x", (int) c));
+      } else {
+        builder.append(c);
+      }
+    }
+    return builder.append('"').toString();
+  }
+
+  /**
+   * Get the CPU time of process.
+   * @return  CPU time in nanoseconds, the CPU time of current thread if not supported
+   */
+  private static long getCpuTime() {
+    if (OS_BEAN instanceof com.sun.management.OperatingSystemMXBean) {
+      long time = ((com.sun.management.OperatingSystemMXBean) OS_BEAN).getProcessCpuTime();
+      if (time >= 0) {
+        return time;
+      }
+    }
+    return THREAD_BEAN.isCurrentThreadCpuTimeSupported() ? THREAD_BEAN.getCurrentThreadCpuTime() : 0;
+  }
+
+  /**
+   * Get the count and time of all GC.
+   * @return  [count, milliseconds]
+   */
+  private static long[] getGc() {
+    long[] ret = new long[2];
+    for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+      ret[0] += Math.max(bean.getCollectionCount(), 0);
+      ret[1] += Math.max(bean.getCollectionTime(), 0);
+    }
+    return ret;
+  }
+
+  /**
+   * A started phase.
+   * @author Huiyuan Fu
+   * @since 1.0.0
+   */
+  public static final class Phase implements AutoCloseable {
+    private final String name;
+    private final long wall;
+    private final long cpu;
+    private final long allocated;
+    private final long workerAllocated;
+    private final long[] gc;
+    private final long writtenFiles;
+    private final long skippedFiles;
+    private final long writtenBytes;
+    /** The values of output sizes. */
+    private final Map<String, Long> values = Maps.newLinkedHashMap();
+
+    private Phase(String name) {
+      this.name = name;
+      boolean record = name != null;
+      allocated = record ? getThreadAllocatedBytes() : 0;
+      workerAllocated = record ? WORKER_ALLOCATED.sum() : 0;
+      gc = record ? getGc() : null;
+      writtenFiles = WRITTEN_FILES.sum();
+      skippedFiles = SKIPPED_FILES.sum();
+      writtenBytes = WRITTEN_BYTES.sum();
+      cpu = record ? getCpuTime() : 0;
+      wall = System.nanoTime();
+    }
+
+    /**
+     * Put a value of output size, the values of merged phases are summed.
+     * @param key   the name of value
+     * @param value value
+     * @return  this
+     */
+    public Phase put(String key, long value) {
+      if (name != null) {
+        values.merge(key, value, Long::sum);
+      }
+      return this;
+    }
+
+    @Override
+    public void close() {
+      if (name == null) {
+        return;
+      }
+      long wallTime = System.nanoTime() - wall;
+      long cpuTime = getCpuTime() - cpu;
+      long[] gcEnd = getGc();
+      Record record = new Record(name);
+      record.count = 1;
+      record.wallNanos = wallTime;
+      record.cpuNanos = cpuTime;
+      record.allocatedBytes = getThreadAllocatedBytes() - allocated + WORKER_ALLOCATED.sum() - workerAllocated;
+      record.gcCount = gcEnd[0] - gc[0];
+      record.gcMillis = gcEnd[1] - gc[1];
+      record.writtenFiles = WRITTEN_FILES.sum() - writtenFiles;
+      record.skippedFiles = SKIPPED_FILES.sum() - skippedFiles;
+      record.writtenBytes = WRITTEN_BYTES.sum() - writtenBytes;
+      record.values.putAll(values);
+      synchronized (RECORDS) {
+        RECORDS.merge(name, record, Record::merge);
+      }
+      NAMES.get().remove(name);
+    }
+  }
+
+  /**
+   * The record of a phase.
+   * @author Huiyuan Fu
+   * @since 1.0.0
+   */
+  private static final class Record {
+    private final String name;
+    private long count;
+    private long wallNanos;
+    private long cpuNanos;
+    private long allocatedBytes;
+    private long gcCount;
+    private long gcMillis;
+    private long writtenFiles;
+    private long skippedFiles;
+    private long writtenBytes;
+    private final Map<String, Long> values = Maps.newLinkedHashMap();
+
+    private Record(String name) {
+      this.name = name;
+    }
+
+    private Record merge(Record other) {
+      count += other.count;
+      wallNanos += other.wallNanos;
+      cpuNanos += other.cpuNanos;
+      allocatedBytes += other.allocatedBytes;
+      gcCount += other.gcCount;
+      gcMillis += other.gcMillis;
+      writtenFiles += other.writtenFiles;
+      skippedFiles += other.skippedFiles;
+      writtenBytes += other.writtenBytes;
+      other.values.forEach((key, value) -> values.merge(key, value, Long::sum));
+      return this;
+    }
+
+    private void write(Writer out) throws IOException {
+      out.append("{\"name\": ").append(quote(name))
+              .append(", \"count\": ").append(String.valueOf(count))
+              .append(", \"wallNanos\": ").append(String.valueOf(wallNanos))
+              .append(", \"cpuNanos\": ").append(String.valueOf(cpuNanos))
+              .append(", \"allocatedBytes\": ").append(String.valueOf(allocatedBytes))
+              .append(", \"gcCount\": ").append(String.valueOf(gcCount))
+              .append(", \"gcMillis\": ").append(String.valueOf(gcMillis))
+              .append(", \"writtenFiles\": ").append(String.valueOf(writtenFiles))
+              .append(", \"skippedFiles\": ").append(String.valueOf(skippedFiles))
+              .append(", \"writtenBytes\": ").append(String.valueOf(writtenBytes));
+      for (Map.Entry<String, Long> entry : values.entrySet()) {
+        out.append(", ").append(quote(entry.getKey())).append(": ").append(String.valueOf(entry.getValue()));
+      }
+      out.append("}");
+    }
+  }
+}
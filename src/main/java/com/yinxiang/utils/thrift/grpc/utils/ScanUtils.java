@@ -1,16 +1,26 @@
 package com.yinxiang.utils.thrift.grpc.utils;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.JarURLConnection;
 import java.net.URL;
 import java.net.URLDecoder;
+import java.util.Collection;
 import java.util.Enumeration;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
 import java.util.function.Function;
 import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
 
 import static java.lang.Thread.currentThread;
 
@@ -20,6 +30,9 @@ import static java.lang.Thread.currentThread;
  * @since 1.0.0
  */
 public class ScanUtils {
+  /** The max count of classes which load in one {@link LoadTask}. */
+  private static final int LOAD_THRESHOLD = 256;
+
   /**
    * Scan classes in a package.
    * @param packageName package name
@@ -30,11 +43,57 @@ public class ScanUtils {
    */
   public static Set<Class<?>> scanClass(String packageName, Function<Class<?>, Boolean> filter)
           throws IOException, ClassNotFoundException {
+    return scanClass(packageName, filter, false);
+  }
+
+  /**
+   * Scan classes in a package.
+   * @param packageName package name
+   * @param filter      class filter, must be thread safe if parallel
+   * @param parallel    scan in parallel
+   * @return  a set of classes
+   * @throws IOException            IOException
+   * @throws ClassNotFoundException ClassNotFoundException
+   * @see #scanClass(String, Function, Function, boolean)
+   */
+  public static Set<Class<?>> scanClass(String packageName, Function<Class<?>, Boolean> filter, boolean parallel)
+          throws IOException, ClassNotFoundException {
+    return scanClass(packageName, header -> true, filter, parallel);
+  }
+
+  /**
+   * Scan classes in a package.
+   * <p>
+   *   The header filter check the {@link ClassHeader} which read from the bytes of class file,
+   *   only the passed class will be loaded and check by the class filter.
+   * </p>
+   * <p>
+   *   When parallel, the resources, jars and sub directions are scanned in a {@link ForkJoinPool},
+   *   the order of result is same with the sequential scan.
+   * </p>
+   * @param packageName   package name
+   * @param headerFilter  class header filter, must be thread safe if parallel
+   * @param filter        class filter, must be thread safe if parallel
+   * @param parallel      scan in parallel
+   * @return  a set of classes
+   * @throws IOException            IOException
+   * @throws ClassNotFoundException ClassNotFoundException
+   */
+  public static Set<Class<?>> scanClass(
+          String packageName,
+          Function<ClassHeader, Boolean> headerFilter,
+          Function<Class<?>, Boolean> filter,
+          boolean parallel
+  ) throws IOException, ClassNotFoundException {
+    Loader loader = new Loader(currentThread().getContextClassLoader(), headerFilter, filter);
+    if (parallel) {
+      return parallelScanClass(packageName, loader);
+    }
     Set<Class<?>> classes = Sets.newLinkedHashSet();
     // format package
     String packagePath = packageName.replace(".", "/");
     // scan in resources
-    Enumeration<URL> resources = currentThread().getContextClassLoader().getResources(packagePath);
+    Enumeration<URL> resources = loader.classLoader.getResources(packagePath);
     while (resources.hasMoreElements()) {
       URL url = resources.nextElement();
       if (url.getProtocol().equals("file")) { // dir
@@ -42,30 +101,12 @@ public class ScanUtils {
         File dir = new File(URLDecoder.decode(url.getFile(), "UTF-8"));
         // scan in dir
         if (dir.exists() && dir.isDirectory()) {
-          scanInDir(classes, dir, packageName, filter);
+          scanInDir(classes, dir, packageName, loader);
         }
       } else if (url.getProtocol().equals("jar")){ // jar
         // scan in jar
-        Enumeration<JarEntry> entries = ((JarURLConnection) url.openConnection()).getJarFile().entries();
-        while (entries.hasMoreElements()) {
-          JarEntry entry = entries.nextElement();
-          if (entry.isDirectory()) {
-            continue;
-          }
-          String name = entry.getName();
-          // format name
-          if (name.charAt(0) == '/') {
-            name = name.substring(1);
-          }
-          // check package and '/'
-          int idx = name.lastIndexOf('/');
-          if (!name.startsWith(packagePath) || idx == -1) {
-            continue;
-          }
-          // load class
-          if (name.endsWith(".class")) {
-            load(classes, name.replace('/', '.'), filter);
-          }
+        for (ClassFile classFile : scanInJar(url, packagePath)) {
+          loader.load(classes, classFile);
         }
       }
     }
@@ -73,20 +114,91 @@ public class ScanUtils {
   }
 
   /**
-   * Filter class.
-   * @param classes   a set to add classes
-   * @param className class name
-   * @param filter    class filter
-   * @throws ClassNotFoundException
+   * Scan classes in a package by a {@link ForkJoinPool}.
+   * @param packageName package name
+   * @param loader      {@link Loader}
+   * @return  a set of classes
+   * @throws IOException            IOException
+   * @throws ClassNotFoundException ClassNotFoundException
+   */
+  private static Set<Class<?>> parallelScanClass(String packageName, Loader loader)
+          throws IOException, ClassNotFoundException {
+    // format package
+    String packagePath = packageName.replace(".", "/");
+    // create tasks of resources
+    List<RecursiveTask<List<Class<?>>>> tasks = Lists.newArrayList();
+    Enumeration<URL> resources = loader.classLoader.getResources(packagePath);
+    while (resources.hasMoreElements()) {
+      URL url = resources.nextElement();
+      if (url.getProtocol().equals("file")) { // dir
+        File dir = new File(URLDecoder.decode(url.getFile(), "UTF-8"));
+        if (dir.exists() && dir.isDirectory()) {
+          tasks.add(new DirTask(loader, dir, packageName));
+        }
+      } else if (url.getProtocol().equals("jar")) { // jar
+        tasks.add(new JarTask(loader, url, packagePath));
+      }
+    }
+    // execute all tasks and merge the results in order
+    ForkJoinPool pool = new ForkJoinPool();
+    try {
+      return pool.invoke(new RecursiveTask<Set<Class<?>>>() {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected Set<Class<?>> compute() {
+          Set<Class<?>> classes = Sets.newLinkedHashSet();
+          ForkJoinTask.invokeAll(tasks).forEach(task -> classes.addAll(task.join()));
+          return classes;
+        }
+      });
+    } catch (RuntimeException e) {
+      // unwrap the checked exception of tasks
+      for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+        if (cause instanceof ClassNotFoundException) {
+          throw (ClassNotFoundException) cause;
+        } else if (cause instanceof IOException) {
+          throw (IOException) cause;
+        }
+      }
+      throw e;
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  /**
+   * Scan the class files in a jar.
+   * @param url         the url of jar
+   * @param packagePath the path of package
+   * @return  the list of {@link ClassFile}
+   * @throws IOException  IOException
    */
-  private static void load(Set<Class<?>> classes, String className, Function<Class<?>, Boolean> filter)
-          throws ClassNotFoundException {
-    // load class by name
-    Class<?> clz = currentThread().getContextClassLoader().loadClass(className.substring(0, className.length() - 6));
-    // load
-    if (filter.apply(clz)) {
-      classes.add(clz);
+  private static List<ClassFile> scanInJar(URL url, String packagePath) throws IOException {
+    List<ClassFile> classFiles = Lists.newArrayList();
+    JarFile jarFile = ((JarURLConnection) url.openConnection()).getJarFile();
+    Enumeration<JarEntry> entries = jarFile.entries();
+    while (entries.hasMoreElements()) {
+      JarEntry entry = entries.nextElement();
+      if (entry.isDirectory()) {
+        continue;
+      }
+      String name = entry.getName();
+      // format name
+      if (name.charAt(0) == '/') {
+        name = name.substring(1);
+      }
+      // check package and '/'
+      int idx = name.lastIndexOf('/');
+      if (!name.startsWith(packagePath) || idx == -1) {
+        continue;
+      }
+      // record class
+      if (name.endsWith(".class")) {
+        classFiles.add(new ClassFile(name.replace('/', '.'), null, jarFile, entry));
+      }
     }
+    return classFiles;
   }
 
   /**
@@ -94,15 +206,12 @@ public class ScanUtils {
    * @param classes     a set to add classes
    * @param dir         a direction
    * @param packageName package name
-   * @param filter      class filter
+   * @param loader      {@link Loader}
+   * @throws IOException            IOException
    * @throws ClassNotFoundException exception
    */
-  private static void scanInDir(
-          Set<Class<?>> classes,
-          File dir,
-          String packageName,
-          Function<Class<?>, Boolean> filter
-  ) throws ClassNotFoundException {
+  private static void scanInDir(Set<Class<?>> classes, File dir, String packageName, Loader loader)
+          throws IOException, ClassNotFoundException {
     File[] files = dir.listFiles();
     if (files == null) {
       return;
@@ -112,10 +221,204 @@ public class ScanUtils {
       // make full name
       String fullName = packageName + "." + file.getName();
       if (file.isDirectory()) { // dir
-        scanInDir(classes, file, fullName, filter);
+        scanInDir(classes, file, fullName, loader);
       } else if (fullName.endsWith(".class")) { // class file
-        load(classes, fullName, filter);
+        loader.load(classes, new ClassFile(fullName, file, null, null));
+      }
+    }
+  }
+
+  /**
+   * A class file in a direction or a jar.
+   */
+  private static class ClassFile {
+    /** The class file name, e.g: <code>com.test.Test.class</code>. */
+    private final String name;
+    /** The file if in a direction. */
+    private final File file;
+    /** The jar if in a jar. */
+    private final JarFile jarFile;
+    /** The entry of jar if in a jar. */
+    private final JarEntry entry;
+
+    ClassFile(String name, File file, JarFile jarFile, JarEntry entry) {
+      this.name = name;
+      this.file = file;
+      this.jarFile = jarFile;
+      this.entry = entry;
+    }
+
+    /**
+     * @return  the class name
+     */
+    String getClassName() {
+      return name.substring(0, name.length() - 6);
+    }
+
+    /**
+     * Open the bytes of class file.
+     * @return  {@link InputStream}
+     * @throws IOException  IOException
+     */
+    InputStream open() throws IOException {
+      return new BufferedInputStream(file != null ? new FileInputStream(file) : jarFile.getInputStream(entry));
+    }
+  }
+
+  /**
+   * Filter and load {@link ClassFile}.
+   */
+  private static class Loader {
+    /** The class loader, the workers of pool do not have the context class loader of scan thread. */
+    private final ClassLoader classLoader;
+    /** The class header filter. */
+    private final Function<ClassHeader, Boolean> headerFilter;
+    /** The class filter. */
+    private final Function<Class<?>, Boolean> filter;
+
+    Loader(ClassLoader classLoader, Function<ClassHeader, Boolean> headerFilter, Function<Class<?>, Boolean> filter) {
+      this.classLoader = classLoader;
+      this.headerFilter = headerFilter;
+      this.filter = filter;
+    }
+
+    /**
+     * Filter class.
+     * @param classes   a collection to add classes
+     * @param classFile class file
+     * @throws IOException            IOException
+     * @throws ClassNotFoundException ClassNotFoundException
+     */
+    void load(Collection<Class<?>> classes, ClassFile classFile) throws IOException, ClassNotFoundException {
+      // filter by header
+      try (InputStream in = classFile.open()) {
+        if (!headerFilter.apply(ClassHeader.read(in))) {
+          return;
+        }
+      }
+      // load class by name
+      Class<?> clz = classLoader.loadClass(classFile.getClassName());
+      // load
+      if (filter.apply(clz)) {
+        classes.add(clz);
+      }
+    }
+  }
+
+  /**
+   * The task to scan classes in a direction, every sub direction will fork a new {@link DirTask}.
+   */
+  private static class DirTask extends RecursiveTask<List<Class<?>>> {
+    private static final long serialVersionUID = 1L;
+    private final Loader loader;
+    private final File dir;
+    private final String packageName;
+
+    DirTask(Loader loader, File dir, String packageName) {
+      this.loader = loader;
+      this.dir = dir;
+      this.packageName = packageName;
+    }
+
+    @Override
+    protected List<Class<?>> compute() {
+      File[] files = dir.listFiles();
+      if (files == null) {
+        return Lists.newArrayList();
+      }
+      // split to sub tasks, a run of class files is one task to keep the order
+      List<RecursiveTask<List<Class<?>>>> tasks = Lists.newArrayList();
+      List<ClassFile> classFiles = Lists.newArrayList();
+      for (File file : files) {
+        // make full name
+        String fullName = packageName + "." + file.getName();
+        if (file.isDirectory()) { // dir
+          if (!classFiles.isEmpty()) {
+            tasks.add(new LoadTask(loader, classFiles, 0, classFiles.size()));
+            classFiles = Lists.newArrayList();
+          }
+          tasks.add(new DirTask(loader, file, fullName));
+        } else if (fullName.endsWith(".class")) { // class file
+          classFiles.add(new ClassFile(fullName, file, null, null));
+        }
+      }
+      if (!classFiles.isEmpty()) {
+        tasks.add(new LoadTask(loader, classFiles, 0, classFiles.size()));
+      }
+      // merge in order
+      List<Class<?>> classes = Lists.newArrayList();
+      invokeAll(tasks).forEach(task -> classes.addAll(task.join()));
+      return classes;
+    }
+  }
+
+  /**
+   * The task to scan the class files in a jar, the entries are split by {@link LoadTask}, so the jars are read and
+   * loaded in parallel too.
+   */
+  private static class JarTask extends RecursiveTask<List<Class<?>>> {
+    private static final long serialVersionUID = 1L;
+    private final Loader loader;
+    private final URL url;
+    private final String packagePath;
+
+    JarTask(Loader loader, URL url, String packagePath) {
+      this.loader = loader;
+      this.url = url;
+      this.packagePath = packagePath;
+    }
+
+    @Override
+    protected List<Class<?>> compute() {
+      List<ClassFile> classFiles;
+      try {
+        classFiles = scanInJar(url, packagePath);
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+      return new LoadTask(loader, classFiles, 0, classFiles.size()).compute();
+    }
+  }
+
+  /**
+   * The task to load a range of class files, split in half while more than {@link #LOAD_THRESHOLD}.
+   */
+  private static class LoadTask extends RecursiveTask<List<Class<?>>> {
+    private static final long serialVersionUID = 1L;
+    private final Loader loader;
+    private final List<ClassFile> classFiles;
+    private final int from;
+    private final int to;
+
+    LoadTask(Loader loader, List<ClassFile> classFiles, int from, int to) {
+      this.loader = loader;
+      this.classFiles = classFiles;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected List<Class<?>> compute() {
+      List<Class<?>> classes = Lists.newArrayList();
+      // split
+      if (to - from > LOAD_THRESHOLD) {
+        int middle = (from + to) >>> 1;
+        LoadTask left = new LoadTask(loader, classFiles, from, middle);
+        LoadTask right = new LoadTask(loader, classFiles, middle, to);
+        invokeAll(left, right);
+        classes.addAll(left.join());
+        classes.addAll(right.join());
+        return classes;
+      }
+      // load
+      try {
+        for (int i = from;i < to;i++) {
+          loader.load(classes, classFiles.get(i));
+        }
+      } catch (IOException | ClassNotFoundException e) {
+        throw new RuntimeException(e);
       }
+      return classes;
     }
   }
 }
@@ -14,4 +14,13 @@ public final class StringUtils {
   public static String firstUpper(String str) {
     return str.length() > 0 ? str.substring(0, 1).toUpperCase() + (str.length() > 1 ? str.substring(1) : "") : str;
   }
+
+  /**
+   * Fix the first char lower case.
+   * @param str string
+   * @return  result
+   */
+  public static String firstLower(String str) {
+    return str.length() > 0 ? str.substring(0, 1).toLowerCase() + (str.length() > 1 ? str.substring(1) : "") : str;
+  }
 }
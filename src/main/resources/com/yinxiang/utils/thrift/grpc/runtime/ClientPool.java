@@ -0,0 +1,384 @@
+package com.yinxiang.utils.thrift.grpc.runtime;
+
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TBinaryProtocol;
+import org.apache.thrift.protocol.TCompactProtocol;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.protocol.TProtocolException;
+import org.apache.thrift.transport.TFramedTransport;
+import org.apache.thrift.transport.TSocket;
+import org.apache.thrift.transport.TTransport;
+import org.apache.thrift.transport.TTransportException;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The bounded pool of thrift clients.
+ * <p>
+ *   The count of clients is bounded by a semaphore, the lease waits a permit in the max wait time. The idle clients
+ *   are a stack, so the recently used clients are reused and the others are evicted after the idle time, except the
+ *   min idle clients which are created when the pool is created. The connection of an idle client may be closed by
+ *   the server, so a client which is idle longer than the validate time is checked before it is leased, it is closed
+ *   if the server closed the connection or sent something. A call is never retried by {@code call} because it may
+ *   be written, {@code callIdempotent} retries a call which fails by the transport (not a timeout) on an idle client
+ *   once by a new connection, only for the idempotent rpc. The connection is a socket, optionally framed, with the
+ *   binary or compact protocol of libthrift 0.13 or later, the framed transport is replaced by the one of the
+ *   libthrift which loads the services when generated. The waits of leases are counted as metrics, a lease is
+ *   counted when it gets a client.
+ * </p>
+ */
+public final class ClientPool<T> implements AutoCloseable {
+	private static final ScheduledExecutorService EVICTOR =
+			Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread thread = new Thread(r, "thrift-client-pool-evictor");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final String name;
+	private final Options options;
+	private final Factory<T> factory;
+	private final Semaphore permits;
+	private final LinkedBlockingDeque<Client<T>> idle = new LinkedBlockingDeque<>();
+	private final ScheduledFuture<?> eviction;
+	private final LongAdder leases = new LongAdder();
+	private final LongAdder waits = new LongAdder();
+	private final LongAdder waitNanos = new LongAdder();
+	private final AtomicLong maxWaitNanos = new AtomicLong();
+	private final LongAdder timeouts = new LongAdder();
+	private final LongAdder created = new LongAdder();
+	private final LongAdder closed = new LongAdder();
+	private final LongAdder failures = new LongAdder();
+	private final LongAdder retries = new LongAdder();
+	private final LongAdder stale = new LongAdder();
+	private volatile boolean shutdown;
+
+	@FunctionalInterface
+	public interface Factory<T> {
+		T create(TProtocol protocol);
+	}
+
+	@FunctionalInterface
+	public interface Call<T, V, E extends Exception> {
+		V call(T client) throws E;
+	}
+
+	public ClientPool(String name, Options options, Factory<T> factory) {
+		this.name = name;
+		this.options = options;
+		this.factory = factory;
+		permits = new Semaphore(options.maxSize);
+		for (int i = 0;i < Math.min(options.minIdle, options.maxSize);i++) {
+			try {
+				idle.offerLast(create());
+			} catch (TTransportException e) {
+				break;
+			}
+		}
+		long period = Math.max(options.idleMillis / 2, 1);
+		eviction = EVICTOR.scheduleWithFixedDelay(
+				this::evict, period, period, TimeUnit.MILLISECONDS);
+	}
+
+	public <V, E extends Exception> V call(Call<T, V, E> call) throws E, TTransportException {
+		return call(lease(true), call);
+	}
+
+	public <V, E extends Exception> V callIdempotent(Call<T, V, E> call) throws E, TTransportException {
+		Client<T> client = lease(true);
+		if (client.reused) {
+			try {
+				return call(client, call);
+			} catch (Exception e) {
+				if (!(e instanceof TTransportException)
+						|| ((TTransportException) e).getType() == TTransportException.TIMED_OUT) {
+					throw e;
+				}
+				retries.increment();
+			}
+			client = lease(false);
+		}
+		return call(client, call);
+	}
+
+	private <V, E extends Exception> V call(Client<T> client, Call<T, V, E> call) throws E {
+		boolean broken = true;
+		try {
+			V value = call.call(client.client);
+			broken = false;
+			return value;
+		} catch (Exception e) {
+			broken = isBroken(e);
+			throw e;
+		} finally {
+			release(client, broken);
+		}
+	}
+
+	public Client<T> lease() throws TTransportException {
+		return lease(true);
+	}
+
+	private Client<T> lease(boolean reuse) throws TTransportException {
+		if (!permits.tryAcquire()) {
+			long start = System.nanoTime();
+			boolean acquired;
+			try {
+				acquired = permits.tryAcquire(options.maxWaitMillis, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new TTransportException(TTransportException.UNKNOWN, e);
+			}
+			long wait = System.nanoTime() - start;
+			waits.increment();
+			waitNanos.add(wait);
+			maxWaitNanos.accumulateAndGet(wait, Math::max);
+			if (!acquired) {
+				timeouts.increment();
+				throw new TTransportException(TTransportException.TIMED_OUT,
+						"No client of " + name + " in " + options.maxWaitMillis + "ms.");
+			}
+		}
+		Client<T> client = reuse ? pollIdle() : null;
+		if (client != null) {
+			client.reused = true;
+		} else {
+			try {
+				client = create();
+			} catch (TTransportException | RuntimeException e) {
+				permits.release();
+				throw e;
+			}
+		}
+		leases.increment();
+		return client;
+	}
+
+	private Client<T> pollIdle() {
+		long validated = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(options.validateAfterMillis);
+		for (Client<T> client = idle.pollFirst();client != null;client = idle.pollFirst()) {
+			if (options.validateAfterMillis < 0 || client.lastUsed - validated > 0 || isOpen(client.socket)) {
+				return client;
+			}
+			stale.increment();
+			destroy(client);
+		}
+		return null;
+	}
+
+	private static boolean isOpen(TSocket transport) {
+		Socket socket = transport.getSocket();
+		try {
+			int timeout = socket.getSoTimeout();
+			socket.setSoTimeout(1);
+			try {
+				// the server sends nothing to an idle client, a byte or the end of stream means it is broken
+				socket.getInputStream().read();
+				return false;
+			} catch (SocketTimeoutException e) {
+				return true;
+			} finally {
+				socket.setSoTimeout(timeout);
+			}
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	public void release(Client<T> client, boolean broken) {
+		if (broken || shutdown) {
+			destroy(client);
+		} else {
+			client.lastUsed = System.nanoTime();
+			idle.offerFirst(client);
+		}
+		permits.release();
+	}
+
+	public static boolean isBroken(Exception e) {
+		return !(e instanceof TException)
+				|| e instanceof TTransportException || e instanceof TProtocolException;
+	}
+
+	public long getLeases() {
+		return leases.sum();
+	}
+
+	public long getWaits() {
+		return waits.sum();
+	}
+
+	public long getWaitNanos() {
+		return waitNanos.sum();
+	}
+
+	public long getMaxWaitNanos() {
+		return maxWaitNanos.get();
+	}
+
+	public long getTimeouts() {
+		return timeouts.sum();
+	}
+
+	public int getIdle() {
+		return idle.size();
+	}
+
+	public int getActive() {
+		return options.maxSize - permits.availablePermits();
+	}
+
+	@Override
+	public String toString() {
+		return name + " active=" + getActive() + " idle=" + getIdle()
+				+ " leases=" + getLeases() + " waits=" + getWaits()
+				+ " waitMillis=" + TimeUnit.NANOSECONDS.toMillis(getWaitNanos())
+				+ " maxWaitMillis=" + TimeUnit.NANOSECONDS.toMillis(getMaxWaitNanos())
+				+ " timeouts=" + getTimeouts() + " created=" + created.sum()
+				+ " closed=" + closed.sum()
+				+ " failures=" + failures.sum() + " stale=" + stale.sum() + " retries=" + retries.sum();
+	}
+
+	@Override
+	public void close() {
+		shutdown = true;
+		eviction.cancel(false);
+		for (Client<T> client = idle.pollFirst();client != null;client = idle.pollFirst()) {
+			destroy(client);
+		}
+	}
+
+	private Client<T> create() throws TTransportException {
+		TSocket socket = new TSocket(options.host, options.port, options.socketTimeoutMillis);
+		socket.setConnectTimeout(options.connectTimeoutMillis);
+		TTransport transport = options.framed ? new TFramedTransport(socket) : socket;
+		try {
+			transport.open();
+		} catch (TTransportException e) {
+			failures.increment();
+			transport.close();
+			throw e;
+		}
+		TProtocol protocol = options.compact
+				? new TCompactProtocol(transport) : new TBinaryProtocol(transport);
+		created.increment();
+		return new Client<>(socket, transport, factory.create(protocol));
+	}
+
+	private void destroy(Client<T> client) {
+		closed.increment();
+		client.transport.close();
+	}
+
+	private void evict() {
+		long deadline = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(options.idleMillis);
+		while (idle.size() > options.minIdle) {
+			Client<T> client = idle.pollLast();
+			if (client == null) {
+				return;
+			}
+			if (client.lastUsed - deadline > 0) {
+				idle.offerLast(client);
+				return;
+			}
+			destroy(client);
+		}
+	}
+
+	public static final class Client<T> {
+		private final TSocket socket;
+		private final TTransport transport;
+		private final T client;
+		private volatile long lastUsed = System.nanoTime();
+		private boolean reused;
+
+		private Client(TSocket socket, TTransport transport, T client) {
+			this.socket = socket;
+			this.transport = transport;
+			this.client = client;
+		}
+
+		public T get() {
+			return client;
+		}
+	}
+
+	public static final class Options {
+		private String host = "localhost";
+		private int port = 9090;
+		private int maxSize = 8;
+		private int minIdle = 1;
+		private long maxWaitMillis = 1000;
+		private long idleMillis = 60000;
+		private long validateAfterMillis = 2000;
+		private int connectTimeoutMillis = 1000;
+		private int socketTimeoutMillis = 5000;
+		private boolean framed;
+		private boolean compact;
+
+		public Options host(String host) {
+			this.host = host;
+			return this;
+		}
+
+		public Options port(int port) {
+			this.port = port;
+			return this;
+		}
+
+		public Options maxSize(int maxSize) {
+			this.maxSize = maxSize;
+			return this;
+		}
+
+		public Options minIdle(int minIdle) {
+			this.minIdle = minIdle;
+			return this;
+		}
+
+		public Options maxWaitMillis(long maxWaitMillis) {
+			this.maxWaitMillis = maxWaitMillis;
+			return this;
+		}
+
+		public Options idleMillis(long idleMillis) {
+			this.idleMillis = idleMillis;
+			return this;
+		}
+
+		public Options validateAfterMillis(long validateAfterMillis) {
+			this.validateAfterMillis = validateAfterMillis;
+			return this;
+		}
+
+		public Options connectTimeoutMillis(int connectTimeoutMillis) {
+			this.connectTimeoutMillis = connectTimeoutMillis;
+			return this;
+		}
+
+		public Options socketTimeoutMillis(int socketTimeoutMillis) {
+			this.socketTimeoutMillis = socketTimeoutMillis;
+			return this;
+		}
+
+		public Options framed(boolean framed) {
+			this.framed = framed;
+			return this;
+		}
+
+		public Options compact(boolean compact) {
+			this.compact = compact;
+			return this;
+		}
+	}
+}
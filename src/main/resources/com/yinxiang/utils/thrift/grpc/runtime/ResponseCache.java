@@ -0,0 +1,123 @@
+package com.yinxiang.utils.thrift.grpc.runtime;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.protobuf.MessageLite;
+import io.grpc.Drainable;
+import io.grpc.KnownLength;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerMethodDefinition;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.ServiceDescriptor;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache the responses of rpc.
+ * <p>
+ *   The cache is bounded by size (least recently used is evicted first) and expired after written. The version is
+ *   increased by every invalidation, the response is only put if the version is not changed after the thrift call
+ *   started, and removed if an invalidation happens while putting.
+ *   The bytes of a cached response are serialized once when it is put and kept by the identity of response (weak
+ *   keys), {@code bind} replaces the response marshaller of the cached rpc by one which sends these bytes, so a
+ *   hit is not serialized again, the other responses are serialized by the proto marshaller.
+ * </p>
+ */
+public final class ResponseCache<K, V extends MessageLite> {
+	private final AtomicLong version = new AtomicLong();
+	private final Cache<K, V> cache;
+	private final Cache<V, byte[]> serialized = CacheBuilder.newBuilder().weakKeys().build();
+
+	public ResponseCache(long maxSize, long ttlSeconds) {
+		cache = CacheBuilder.newBuilder()
+				.maximumSize(maxSize)
+				.expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+				.build();
+	}
+
+	public V get(K key) {
+		return cache.getIfPresent(key);
+	}
+
+	public long version() {
+		return version.get();
+	}
+
+	public V put(K key, V value, long version) {
+		if (this.version.get() == version) {
+			serialized.put(value, value.toByteArray());
+			cache.put(key, value);
+			if (this.version.get() != version) {
+				cache.invalidate(key);
+			}
+		}
+		return value;
+	}
+
+	public void invalidate() {
+		version.incrementAndGet();
+		cache.invalidateAll();
+	}
+
+	private MethodDescriptor.Marshaller<V> marshaller(MethodDescriptor.Marshaller<V> proto) {
+		return new MethodDescriptor.Marshaller<V>() {
+			@Override
+			public InputStream stream(V value) {
+				byte[] bytes = serialized.getIfPresent(value);
+				return bytes == null ? proto.stream(value) : new BytesStream(bytes);
+			}
+
+			@Override
+			public V parse(InputStream stream) {
+				return proto.parse(stream);
+			}
+		};
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public static ServerServiceDefinition bind(ServerServiceDefinition definition, Map<String, ResponseCache<?, ?>> caches) {
+		ServiceDescriptor service = definition.getServiceDescriptor();
+		ServiceDescriptor.Builder descriptor = ServiceDescriptor.newBuilder(service.getName())
+				.setSchemaDescriptor(service.getSchemaDescriptor());
+		ServerMethodDefinition<?, ?>[] methods = new ServerMethodDefinition<?, ?>[service.getMethods().size()];
+		int i = 0;
+		for (MethodDescriptor<?, ?> method : service.getMethods()) {
+			ServerMethodDefinition<?, ?> bound = definition.getMethod(method.getFullMethodName());
+			ResponseCache cache = caches.get(method.getFullMethodName().substring(service.getName().length() + 1));
+			if (cache != null) {
+				MethodDescriptor.Marshaller marshaller =
+						cache.marshaller(method.getResponseMarshaller());
+				bound = ServerMethodDefinition.create(
+						method.toBuilder().setResponseMarshaller(marshaller).build(), (io.grpc.ServerCallHandler) bound.getServerCallHandler());
+			}
+			descriptor.addMethod(bound.getMethodDescriptor());
+			methods[i++] = bound;
+		}
+		ServerServiceDefinition.Builder builder =
+				ServerServiceDefinition.builder(descriptor.build());
+		for (ServerMethodDefinition<?, ?> method : methods) {
+			builder.addMethod(method);
+		}
+		return builder.build();
+	}
+
+	private static final class BytesStream extends ByteArrayInputStream implements KnownLength, Drainable {
+		private BytesStream(byte[] bytes) {
+			super(bytes);
+		}
+
+		@Override
+		public int drainTo(OutputStream target) throws IOException {
+			int length = count - pos;
+			target.write(buf, pos, length);
+			pos = count;
+			return length;
+		}
+	}
+}
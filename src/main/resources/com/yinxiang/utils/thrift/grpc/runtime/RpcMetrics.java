@@ -0,0 +1,286 @@
+package com.yinxiang.utils.thrift.grpc.runtime;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The metrics of rpc.
+ * <p>
+ *   A call marks the end of every phase, the time from the last mark is recorded to the histogram of phase, the
+ *   waits of cache and single flight are skipped. The histograms are log-linear like HdrHistogram, 16 sub-buckets
+ *   of every power of 2 nanoseconds (about 6% error, the longer than 137s are in the last bucket), the buckets are
+ *   striped by the thread and the stripes are allocated when used, so the records are lock-free and the idle rpc
+ *   costs little. The registry is pluggable, the default one dumps the rpc as text, the rpc which spends most time
+ *   is the first.
+ * </p>
+ */
+public final class RpcMetrics {
+	public static final SimpleRegistry DEFAULT = new SimpleRegistry();
+	private static final int SUB_BITS = 4;
+	private static final int SUB_COUNT = 1 << SUB_BITS;
+	private static final int MAX_EXPONENT = 36;
+	private static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 2) * SUB_COUNT;
+	private static final int STRIPES =
+			Integer.highestOneBit(Math.min(Runtime.getRuntime().availableProcessors(), 8) * 2 - 1);
+
+	private RpcMetrics() {
+	}
+
+	public enum Phase {
+		MARSHAL, BACKEND, TO_GRPC, SERIALIZE, TOTAL
+	}
+
+	@FunctionalInterface
+	public interface Registry {
+		Rpc rpc(String service, String rpc);
+	}
+
+	public static final class SimpleRegistry implements Registry {
+		private final ConcurrentMap<String, Rpc> rpcs = new ConcurrentHashMap<>();
+
+		@Override
+		public Rpc rpc(String service, String rpc) {
+			return rpcs.computeIfAbsent(service + "." + rpc, Rpc::new);
+		}
+
+		public Collection<Rpc> getRpcs() {
+			return Collections.unmodifiableCollection(rpcs.values());
+		}
+
+		public String dump() {
+			return RpcMetrics.dump(rpcs.values());
+		}
+	}
+
+	public static final class Rpc {
+		private final String name;
+		private final Histogram[] histograms = new Histogram[Phase.values().length];
+		private final LongAdder inFlight = new LongAdder();
+		private final LongAdder errors = new LongAdder();
+
+		public Rpc(String name) {
+			this.name = name;
+			for (int i = 0;i < histograms.length;i++) {
+				histograms[i] = new Histogram();
+			}
+		}
+
+		public Call start() {
+			inFlight.increment();
+			return new Call(this);
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public long getInFlight() {
+			return inFlight.sum();
+		}
+
+		public long getErrors() {
+			return errors.sum();
+		}
+
+		public Histogram getHistogram(Phase phase) {
+			return histograms[phase.ordinal()];
+		}
+	}
+
+	public static final class Call {
+		private final Rpc rpc;
+		private final long start;
+		private long last;
+		private boolean failed;
+		private boolean ended;
+
+		private Call(Rpc rpc) {
+			this.rpc = rpc;
+			start = last = System.nanoTime();
+		}
+
+		public void marshaled() {
+			record(Phase.MARSHAL);
+		}
+
+		public <T> T called(T value) {
+			record(Phase.BACKEND);
+			return value;
+		}
+
+		public void called() {
+			record(Phase.BACKEND);
+		}
+
+		public <T> T converted(T value) {
+			record(Phase.TO_GRPC);
+			return value;
+		}
+
+		public <T> T waited(T value) {
+			last = System.nanoTime();
+			return value;
+		}
+
+		public void serialized() {
+			record(Phase.SERIALIZE);
+		}
+
+		public void failed() {
+			failed = true;
+		}
+
+		public void end() {
+			if (ended) {
+				return;
+			}
+			ended = true;
+			rpc.getHistogram(Phase.TOTAL).record(System.nanoTime() - start);
+			if (failed) {
+				rpc.errors.increment();
+			}
+			rpc.inFlight.decrement();
+		}
+
+		private void record(Phase phase) {
+			long now = System.nanoTime();
+			rpc.getHistogram(phase).record(now - last);
+			last = now;
+		}
+	}
+
+	public static final class Histogram {
+		private final AtomicReferenceArray<AtomicLongArray> stripes =
+				new AtomicReferenceArray<>(STRIPES);
+		private final LongAdder count = new LongAdder();
+		private final LongAdder sum = new LongAdder();
+
+		public void record(long nanos) {
+			long value = Math.max(nanos, 0);
+			int h = System.identityHashCode(Thread.currentThread());
+			int i = (h ^ (h >>> 16)) & (STRIPES - 1);
+			AtomicLongArray stripe = stripes.get(i);
+			if (stripe == null) {
+				stripes.compareAndSet(i, null, new AtomicLongArray(BUCKETS));
+				stripe = stripes.get(i);
+			}
+			stripe.incrementAndGet(index(value));
+			count.increment();
+			sum.add(value);
+		}
+
+		public long getCount() {
+			return count.sum();
+		}
+
+		public long getSum() {
+			return sum.sum();
+		}
+
+		public Snapshot snapshot() {
+			long[] counts = new long[BUCKETS];
+			for (int i = 0;i < STRIPES;i++) {
+				AtomicLongArray stripe = stripes.get(i);
+				for (int j = 0;stripe != null && j < BUCKETS;j++) {
+					counts[j] += stripe.get(j);
+				}
+			}
+			return new Snapshot(counts, sum.sum());
+		}
+	}
+
+	public static final class Snapshot {
+		private final long[] counts;
+		private final long count;
+		private final long sum;
+
+		private Snapshot(long[] counts, long sum) {
+			long count = 0;
+			for (long c : counts) {
+				count += c;
+			}
+			this.counts = counts;
+			this.count = count;
+			this.sum = sum;
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		public long getMean() {
+			return count == 0 ? 0 : sum / count;
+		}
+
+		public long getPercentile(double percentile) {
+			long rank = Math.max((long) Math.ceil(count * percentile / 100), 1), seen = 0;
+			for (int i = 0;i < BUCKETS && count > 0;i++) {
+				seen += counts[i];
+				if (seen >= rank) {
+					return highest(i);
+				}
+			}
+			return 0;
+		}
+
+		public long getMax() {
+			for (int i = BUCKETS - 1;i >= 0;i--) {
+				if (counts[i] > 0) {
+					return highest(i);
+				}
+			}
+			return 0;
+		}
+	}
+
+	public static String dump(Collection<Rpc> rpcs) {
+		List<Rpc> sorted = new ArrayList<>(rpcs);
+		sorted.sort(Comparator.comparingLong(
+				(Rpc rpc) -> rpc.getHistogram(Phase.TOTAL).getSum()).reversed());
+		StringBuilder builder = new StringBuilder();
+		for (Rpc rpc : sorted) {
+			builder.append(String.format(Locale.ROOT, "%s inFlight=%d errors=%d%n",
+					rpc.getName(), rpc.getInFlight(), rpc.getErrors()));
+			builder.append(String.format(Locale.ROOT, "  %-10s %10s %10s %10s %10s %10s %10s%n",
+					"phase", "count", "mean(us)",
+					"p50(us)", "p90(us)", "p99(us)", "max(us)"));
+			for (Phase phase : Phase.values()) {
+				Snapshot snapshot = rpc.getHistogram(phase).snapshot();
+				builder.append(String.format(Locale.ROOT,
+						"  %-10s %10d %10.1f %10.1f %10.1f %10.1f %10.1f%n",
+						phase, snapshot.getCount(), snapshot.getMean() / 1e3,
+						snapshot.getPercentile(50) / 1e3, snapshot.getPercentile(90) / 1e3,
+						snapshot.getPercentile(99) / 1e3, snapshot.getMax() / 1e3));
+			}
+		}
+		return builder.toString();
+	}
+
+	private static int index(long value) {
+		if (value < SUB_COUNT) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		if (exponent > MAX_EXPONENT) {
+			return BUCKETS - 1;
+		}
+		return (exponent - SUB_BITS) * SUB_COUNT + (int) (value >>> (exponent - SUB_BITS));
+	}
+
+	private static long highest(int index) {
+		if (index < SUB_COUNT) {
+			return index;
+		}
+		int shift = index / SUB_COUNT - 1;
+		return ((long) (index % SUB_COUNT + SUB_COUNT + 1) << shift) - 1;
+	}
+}
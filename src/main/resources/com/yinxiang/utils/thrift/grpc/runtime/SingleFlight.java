@@ -0,0 +1,126 @@
+package com.yinxiang.utils.thrift.grpc.runtime;
+
+import io.grpc.Context;
+import io.grpc.Contexts;
+import io.grpc.Deadline;
+import io.grpc.Status;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Coalesce the concurrent calls of an equal key.
+ * <p>
+ *   The first call of a key is the leader which calls thrift, the concurrent calls of an equal key wait the future
+ *   of leader, the key is removed when the leader is done, so the later calls never get an old response.
+ *   The gRPC messages are immutable and compared by value, so the request is the key and the response is shared.
+ *   A follower waits in the deadline of its gRPC context and stops waiting when its call is cancelled, the leader is
+ *   not affected. A blocking follower waits the future of leader with a timeout, an async follower gets a future of
+ *   its own which is failed by the cancellation or by a timer of the deadline.
+ * </p>
+ */
+public final class SingleFlight<K, V> {
+	private static final ScheduledExecutorService DEADLINES =
+			Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread thread = new Thread(r, "single-flight-deadline");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final ConcurrentHashMap<K, CompletableFuture<V>> calls = new ConcurrentHashMap<>();
+
+	@FunctionalInterface
+	public interface Call<V> {
+		V call() throws Exception;
+	}
+
+	@FunctionalInterface
+	public interface AsyncCall<V> {
+		void start(CompletableFuture<V> future) throws Exception;
+	}
+
+	public V execute(K key, Call<V> call) throws Exception {
+		CompletableFuture<V> future = new CompletableFuture<>();
+		CompletableFuture<V> leader = calls.putIfAbsent(key, future);
+		if (leader != null) {
+			return await(leader);
+		}
+		try {
+			V value = call.call();
+			future.complete(value);
+			return value;
+		} catch (Throwable t) {
+			future.completeExceptionally(t);
+			throw t;
+		} finally {
+			calls.remove(key, future);
+		}
+	}
+
+	public CompletableFuture<V> submit(K key, AsyncCall<V> call) {
+		CompletableFuture<V> future = new CompletableFuture<>();
+		CompletableFuture<V> leader = calls.putIfAbsent(key, future);
+		if (leader != null) {
+			return follow(leader);
+		}
+		future.whenComplete((v, t) -> calls.remove(key, future));
+		try {
+			call.start(future);
+		} catch (Throwable t) {
+			future.completeExceptionally(t);
+		}
+		return future;
+	}
+
+	private static <V> CompletableFuture<V> follow(CompletableFuture<V> leader) {
+		Context context = Context.current();
+		CompletableFuture<V> follower = new CompletableFuture<>();
+		Context.CancellationListener listener =
+				c -> follower.completeExceptionally(Contexts.statusFromCancelled(c).asException());
+		context.addListener(listener, Runnable::run);
+		Deadline deadline = context.getDeadline();
+		ScheduledFuture<?> timer = deadline == null ? null : deadline.runOnExpiration(
+				() -> follower.completeExceptionally(
+						Status.DEADLINE_EXCEEDED.withDescription("Wait the single flight timeout.").asException()),
+				DEADLINES);
+		follower.whenComplete((v, t) -> {
+			context.removeListener(listener);
+			if (timer != null) {
+				timer.cancel(false);
+			}
+		});
+		leader.whenComplete((v, t) -> {
+			if (t == null) {
+				follower.complete(v);
+			} else {
+				follower.completeExceptionally(t);
+			}
+		});
+		return follower;
+	}
+
+	private static <V> V await(CompletableFuture<V> leader) throws Exception {
+		Context context = Context.current();
+		CompletableFuture<V> follower = leader.thenApply(v -> v);
+		Context.CancellationListener listener =
+				c -> follower.completeExceptionally(Contexts.statusFromCancelled(c).asException());
+		context.addListener(listener, Runnable::run);
+		try {
+			Deadline deadline = context.getDeadline();
+			return deadline == null ? follower.get()
+					: follower.get(deadline.timeRemaining(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+		} catch (ExecutionException e) {
+			throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+		} catch (TimeoutException e) {
+			throw Status.DEADLINE_EXCEEDED.withDescription("Wait the single flight timeout.").asException();
+		} finally {
+			context.removeListener(listener);
+		}
+	}
+}